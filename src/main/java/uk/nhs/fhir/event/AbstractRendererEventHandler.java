@@ -11,8 +11,9 @@ public abstract class AbstractRendererEventHandler extends AbstractEventHandler
 	protected abstract void logImpl(String info, Optional<Exception> throwable);
 	protected abstract void errorImpl(Optional<String> info, Optional<Exception> error);
 
-	private boolean foundWarnings = false;
-	private boolean foundErrors = false;
+	// volatile since events may be raised by several rendering threads
+	private volatile boolean foundWarnings = false;
+	private volatile boolean foundErrors = false;
 	
 	public boolean foundErrors() {
 		return foundErrors;
@@ -23,7 +23,7 @@ public abstract class RendererEventAccumulator extends AbstractRendererEventHand
 	
 	private final Map<File, RendererEvents> events = Maps.newHashMap();
 	
-	public void addEvent(RendererEvent event) {
+	public synchronized void addEvent(RendererEvent event) {
 		File sourceFile = event.getSourceFile();
 		
 		if (events.containsKey(sourceFile)) {
@@ -33,7 +33,7 @@ public abstract class RendererEventAccumulator extends AbstractRendererEventHand
 		}
 	}
 	
-	public Map<File, RendererEvents> getEvents() {
+	public synchronized Map<File, RendererEvents> getEvents() {
 		return ImmutableMap.copyOf(events);
 	}
 
@@ -81,7 +81,7 @@ public abstract class RendererEventAccumulator extends AbstractRendererEventHand
 			}};
 	
 	@Override
-	public void displayOutstandingEvents() {
+	public synchronized void displayOutstandingEvents() {
 		List<RendererEvents> events = Lists.newArrayList(this.events.values());
 		
 		// sort first by resourceType, then by filename
@@ -2,20 +2,28 @@ package uk.nhs.fhir.render;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Sets;
+
 import uk.nhs.fhir.data.wrap.WrappedResource;
 import uk.nhs.fhir.load.FileLoader;
+import uk.nhs.fhir.render.format.ConceptPages;
 import uk.nhs.fhir.render.format.HTMLDocSection;
+import uk.nhs.fhir.render.format.NarrativeProfile;
 import uk.nhs.fhir.render.format.ResourceFormatter;
 import uk.nhs.fhir.render.format.ResourceFormatterFactory;
 import uk.nhs.fhir.render.format.SectionedHTMLDoc;
 import uk.nhs.fhir.render.html.Elements;
+import uk.nhs.fhir.render.html.HTMLOutputMode;
 import uk.nhs.fhir.render.html.HTMLUtil;
 import uk.nhs.fhir.util.FhirFileUtils;
 import uk.nhs.fhir.util.text.EscapeUtils;
@@ -26,6 +34,30 @@ public class FileProcessor {
     // private final FhirFileParser parser = new FhirFileParser();
     
     private final ResourceFormatterFactory resourceFormatterFactory = new ResourceFormatterFactory(); 
+    private final boolean spliceNarrative;
+    private final NarrativeProfile narrativeProfile;
+    private final Optional<String> pagesBaseUrl;
+    
+    public FileProcessor() {
+    	this(false);
+    }
+    
+    public FileProcessor(boolean spliceNarrative) {
+    	this(spliceNarrative, NarrativeProfile.FULL, Optional.empty());
+    }
+    
+    /**
+     * @param spliceNarrative write augmented resources by splicing the narrative into a copy of the input XML, rather
+     * than re-encoding the parsed resource
+     * @param narrativeProfile which views to embed in the narrative of each augmented resource
+     * @param pagesBaseUrl the URL at which the output directory is published, if summary narratives should link to the
+     * rendered pages by absolute URL
+     */
+    public FileProcessor(boolean spliceNarrative, NarrativeProfile narrativeProfile, Optional<String> pagesBaseUrl) {
+    	this.spliceNarrative = spliceNarrative;
+    	this.narrativeProfile = narrativeProfile;
+    	this.pagesBaseUrl = pagesBaseUrl;
+    }
     
 	public <T extends WrappedResource<T>> void processFile(RendererFileLocator rendererFileLocator, Optional<String> newBaseURL) throws Exception {
 		
@@ -36,9 +68,17 @@ public class FileProcessor {
 	    
 	    saveAugmentedResource(rendererFileLocator, newBaseURL);
 		
-		for (FormattedOutputSpec<?> formatter : resourceFormatterFactory.allFormatterSpecs(resource, rendererFileLocator)) {
+		List<FormattedOutputSpec<?>> formatters = resourceFormatterFactory.allFormatterSpecs(resource, rendererFileLocator);
+		Set<String> pageFileNames = Sets.newHashSet();
+		for (FormattedOutputSpec<?> formatter : formatters) {
 			LOG.debug("Generating " + formatter.getOutputPath(inFilePath).toString());
 			formatter.formatAndSave(inFilePath);
+			pageFileNames.add(formatter.getFilename());
+		}
+		
+		// the rendering directory may start with the pages of an earlier render (see StagedOutputDirectory)
+		if (!formatters.isEmpty()) {
+			ConceptPages.deleteStalePages(formatters.get(0).getOutputDirectory(inFilePath), pageFileNames);
 		}
 	}
 	
@@ -53,38 +93,61 @@ public class FileProcessor {
         }
 		Path outFilePath = outDirPath.resolve(RendererContext.forThread().getCurrentSource().getName());
 		
-		LOG.debug("Generating " + outFilePath.toString());	    
-		ResourceFormatter<?> defaultViewFormatter = resourceFormatterFactory.defaultFormatter(resource);		
-		HTMLDocSection defaultViewSection = defaultViewFormatter.makeSectionHTML();
+		LOG.debug("Generating " + outFilePath.toString());
+		
+		// before formatting, so that the narrative and the rendered pages show the new URL
+		Optional<String> newUrl = newBaseURL.map(baseUrl -> newUrl(resource, baseUrl));
+		RendererContext.forThread().setCurrentNewUrl(newUrl);
 		
-		SectionedHTMLDoc defaultView = new SectionedHTMLDoc();
-		defaultView.addSection(defaultViewSection);
+		ResourceFormatter<?> narrativeFormatter = resourceFormatterFactory.narrativeFormatter(resource, narrativeProfile, rendererFileLocator, pagesBaseUrl);
+		HTMLDocSection narrativeSection = narrativeFormatter.getSectionHTML();
 		
+		SectionedHTMLDoc narrativeView = new SectionedHTMLDoc();
+		narrativeView.addSection(narrativeSection);
+		
+		HTMLOutputMode mode = RendererContext.forThread().getHTMLOutputMode();
 		Element textSection = Elements.withChildren("div", 
-			defaultView.createStyleSection(),
-			Elements.withChildren("div", defaultView.getBodyElements()));
+			narrativeView.createStyleSection(mode),
+			Elements.withChildren("div", narrativeView.cloneBodyElements()));
 		
-	    String renderedTextSection = HTMLUtil.docToEscapedString(new Document(textSection), true, false);
-	    
-        String augmentedResource = prepareAndSerialise(resource, renderedTextSection, newBaseURL);
-        FhirFileUtils.writeFile(outFilePath.toFile(), augmentedResource.getBytes(FileLoader.DEFAULT_ENCODING));
+		if (spliceNarrative) {
+			String narrativeDiv = HTMLUtil.docToString(new Document(textSection), mode, false).trim();
+			new NarrativeSplicer(narrativeDiv, newUrl).splice(RendererContext.forThread().getCurrentSource(), outFilePath);
+		} else {
+		    String renderedTextSection = HTMLUtil.docToEscapedString(new Document(textSection), mode, false);
+		    
+	        String augmentedResource = prepareAndSerialise(resource, renderedTextSection, newUrl);
+	        FhirFileUtils.writeFile(outFilePath.toFile(), augmentedResource.getBytes(FileLoader.DEFAULT_ENCODING));
+		}
 	}
 	
-	public String prepareAndSerialise(WrappedResource<?> resource, String textSection, Optional<String> newBaseURL) {
+	/**
+	 * Serialises a copy of the resource with the narrative (and new URL, if any), leaving the registry's resource unchanged
+	 * for other resources which read it.
+	 */
+	public String prepareAndSerialise(WrappedResource<?> resource, String textSection, Optional<String> newUrl) throws Exception {
+		String original = resource.newXmlParser().encodeResourceToString(resource.getWrappedResource());
+		IBaseResource parsedCopy = resource.newXmlParser().parseResource(original);
+		WrappedResource<?> copy = WrappedResource.fromBaseResource(parsedCopy);
+		
 		textSection = EscapeUtils.escapeTextSection(textSection);
-		resource.addHumanReadableText(textSection);
+		copy.addHumanReadableText(textSection);
 		
-		if (newBaseURL.isPresent()) {
-			String replacementUrl = newBaseURL.get();
-			
-        	if (replacementUrl.endsWith("/")) {
-        		replacementUrl = replacementUrl.substring(0, replacementUrl.length()-1);
-        	}
-        	
-        	resource.setUrl(replacementUrl + "/" + resource.getOutputFolderName() + "/" + resource.getName());
+		if (newUrl.isPresent()) {
+			copy.setUrl(newUrl.get());
         }
 		
-		String serialised = resource.newXmlParser().setPrettyPrint(true).encodeResourceToString(resource.getWrappedResource());
+		String serialised = copy.newXmlParser().setPrettyPrint(RendererContext.forThread().getHTMLOutputMode().isPrettyPrint()).encodeResourceToString(copy.getWrappedResource());
         return serialised;
 	}
+	
+	private static String newUrl(WrappedResource<?> resource, String newBaseURL) {
+		String replacementUrl = newBaseURL;
+		
+    	if (replacementUrl.endsWith("/")) {
+    		replacementUrl = replacementUrl.substring(0, replacementUrl.length()-1);
+    	}
+    	
+    	return replacementUrl + "/" + resource.getOutputFolderName() + "/" + resource.getName();
+	}
 }
@@ -1,10 +1,13 @@
 package uk.nhs.fhir.render;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.file.Path;
-
-import javax.xml.parsers.ParserConfigurationException;
+import java.util.Map;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,7 +17,8 @@ import uk.nhs.fhir.load.FileLoader;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.ResourceFormatter;
 import uk.nhs.fhir.render.format.SectionedHTMLDoc;
-import uk.nhs.fhir.render.html.HTMLUtil;
+import uk.nhs.fhir.render.html.HTMLOutputMode;
+import uk.nhs.fhir.render.html.style.SharedStylesheet;
 import uk.nhs.fhir.util.FhirFileUtils;
 
 public class FormattedOutputSpec<T extends WrappedResource<T>> {
@@ -31,11 +35,11 @@ public class FormattedOutputSpec<T extends WrappedResource<T>> {
 		this.filename = filename;
 	}
 
-	public void formatAndSave(String inputPath) throws ParserConfigurationException, IOException {
+	public void formatAndSave(String inputPath) throws IOException {
 		ensureOutputDirectoryExists(inputPath);
 		Path outputPath = getOutputPath(inputPath);
 		
-		HTMLDocSection sectionHTML = formatter.makeSectionHTML();
+		HTMLDocSection sectionHTML = formatter.getSectionHTML();
 		
 		if (sectionHTML == null) {
 			LOG.debug("No section returned by formatter - skipping " + outputPath);
@@ -44,10 +48,22 @@ public class FormattedOutputSpec<T extends WrappedResource<T>> {
 		
 		SectionedHTMLDoc outputDoc = new SectionedHTMLDoc();
 		outputDoc.addSection(sectionHTML);
-		String outputString = HTMLUtil.docToString(outputDoc.getHTML(), true, false);
 		
-		if (!FhirFileUtils.writeFile(outputPath.toFile(), outputString.getBytes(FileLoader.DEFAULT_ENCODING))) {
-			throw new IllegalStateException("Failed to write file " + outputPath);
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(FhirFileUtils.newOutputStream(outputPath), FileLoader.DEFAULT_ENCODING))) {
+			HTMLOutputMode mode = RendererContext.forThread().getHTMLOutputMode();
+			Optional<SharedStylesheet> sharedStylesheet = RendererContext.forThread().getSharedStylesheet();
+			if (sharedStylesheet.isPresent()) {
+				outputDoc.writeHTML(writer, mode, sharedStylesheet.get(), sharedStylesheet.get().getHref(outputPath.getParent()));
+			} else {
+				outputDoc.writeHTML(writer, mode);
+			}
+		}
+		
+		for (Map.Entry<String, String> supportingFile : formatter.getSupportingFiles().entrySet()) {
+			Path supportingFilePath = getOutputDirectory(inputPath).resolve(supportingFile.getKey());
+			try (Writer writer = new BufferedWriter(new OutputStreamWriter(FhirFileUtils.newOutputStream(supportingFilePath), FileLoader.DEFAULT_ENCODING))) {
+				writer.write(supportingFile.getValue());
+			}
 		}
 	}
 
@@ -70,4 +86,8 @@ public class FormattedOutputSpec<T extends WrappedResource<T>> {
 	public ResourceFormatter<T> getFormatter() {
 		return formatter;
 	}
+	
+	public String getFilename() {
+		return filename;
+	}
 }
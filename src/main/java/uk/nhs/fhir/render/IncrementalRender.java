@@ -0,0 +1,120 @@
+package uk.nhs.fhir.render;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import uk.nhs.fhir.data.wrap.WrappedConceptMap;
+import uk.nhs.fhir.data.wrap.WrappedResource;
+import uk.nhs.fhir.data.wrap.WrappedValueSet;
+import uk.nhs.fhir.render.RenderManifest.RenderManifestEntry;
+import uk.nhs.fhir.util.FhirFileRegistry;
+
+/**
+ * Decides which registered files need rendering, based on the manifest left in the output directory by the previous run,
+ * and builds the manifest for this run.
+ */
+class IncrementalRender {
+	private static final Logger LOG = LoggerFactory.getLogger(IncrementalRender.class);
+
+	private final Path inputDirectory;
+	private final Map<File, String> hashes;
+	private final Map<File, Optional<String>> urls;
+	private final Set<String> filesToRender;
+	private final RenderManifest manifest;
+
+	private IncrementalRender(Path inputDirectory, Map<File, String> hashes, Map<File, Optional<String>> urls, Set<String> filesToRender, RenderManifest manifest) {
+		this.inputDirectory = inputDirectory;
+		this.hashes = hashes;
+		this.urls = urls;
+		this.filesToRender = filesToRender;
+		this.manifest = manifest;
+	}
+
+	static IncrementalRender plan(Path inputDirectory, Path outputDirectory, FhirFileRegistry fhirFileRegistry, RegistryIndex registryIndex, String settings) {
+		Map<File, String> hashes = Maps.newHashMap();
+		Map<File, Optional<String>> urls = Maps.newHashMap();
+
+		Map<String, String> currentHashes = Maps.newHashMap();
+		Map<String, Optional<String>> currentUrls = Maps.newHashMap();
+		Map<String, Set<String>> knownDependencies = Maps.newHashMap();
+
+		for (Map.Entry<File, WrappedResource<?>> e : fhirFileRegistry) {
+			File file = e.getKey();
+			WrappedResource<?> resource = e.getValue();
+			String relativePath = relativePath(inputDirectory, file);
+
+			String hash;
+			try {
+				hash = RenderManifest.hash(file);
+			} catch (IOException ioe) {
+				throw new IllegalStateException("Failed to hash " + file.getAbsolutePath(), ioe);
+			}
+
+			hashes.put(file, hash);
+			urls.put(file, resource.getUrl());
+			currentHashes.put(relativePath, hash);
+			currentUrls.put(relativePath, resource.getUrl());
+
+			// a new ConceptMap wouldn't appear in the dependencies recorded for its ValueSet last time
+			if (resource instanceof WrappedValueSet) {
+				Set<String> conceptMapUrls = Sets.newHashSet();
+				for (WrappedConceptMap conceptMap : registryIndex.getConceptMaps((WrappedValueSet)resource)) {
+					conceptMap.getUrl().ifPresent(conceptMapUrls::add);
+				}
+				knownDependencies.put(relativePath, conceptMapUrls);
+			}
+		}
+
+		Optional<RenderManifest> previousManifest =
+			RenderManifest.read(outputDirectory.resolve(RenderManifest.FILE_NAME))
+				.filter(previous -> previous.getSettings().equals(settings));
+
+		Set<String> filesToRender;
+		if (previousManifest.isPresent()) {
+			filesToRender = previousManifest.get().findFilesToRender(currentHashes, currentUrls, knownDependencies);
+			LOG.info("Incremental render - " + filesToRender.size() + " of " + currentHashes.size() + " files have changed or depend on changed resources");
+		} else {
+			filesToRender = currentHashes.keySet();
+			LOG.info("Incremental render - no usable manifest from a previous render with the same settings, rendering all files");
+		}
+
+		RenderManifest manifest = new RenderManifest(settings);
+
+		// files which aren't rendered this time keep their outputs (and manifest entries) from the last render
+		if (previousManifest.isPresent()) {
+			for (String relativePath : currentHashes.keySet()) {
+				if (!filesToRender.contains(relativePath)) {
+					previousManifest.get().getEntry(relativePath).ifPresent(entry -> manifest.addEntry(relativePath, entry));
+				}
+			}
+		}
+
+		return new IncrementalRender(inputDirectory, hashes, urls, filesToRender, manifest);
+	}
+
+	boolean shouldRender(File file) {
+		return filesToRender.contains(relativePath(inputDirectory, file));
+	}
+
+	void rendered(File file, Set<String> dependencies) {
+		manifest.addEntry(relativePath(inputDirectory, file), new RenderManifestEntry(hashes.get(file), urls.get(file), dependencies));
+	}
+
+	void writeManifest(Path outputDirectory) throws IOException {
+		manifest.write(outputDirectory.resolve(RenderManifest.FILE_NAME));
+	}
+
+	private static String relativePath(Path inputDirectory, File file) {
+		return inputDirectory.toAbsolutePath().relativize(file.toPath().toAbsolutePath()).toString().replace(File.separatorChar, '/');
+	}
+}
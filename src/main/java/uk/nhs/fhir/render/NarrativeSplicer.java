@@ -0,0 +1,326 @@
+package uk.nhs.fhir.render;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.DTD;
+import javax.xml.stream.events.EntityReference;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import com.google.common.collect.ImmutableSet;
+
+import uk.nhs.fhir.util.FhirFileUtils;
+
+/**
+ * Copies a resource from its input XML to the output, replacing only the text element (and the value of the url element,
+ * if a new URL is given). Unlike re-encoding the parsed resource, everything else in the file (element order, comments,
+ * formatting) is written as it was read.
+ */
+class NarrativeSplicer {
+
+	// elements which can precede text/url in the resources we render
+	private static final Set<String> BEFORE_TEXT = ImmutableSet.of("id", "meta", "implicitRules", "language");
+	private static final Set<String> BEFORE_URL = ImmutableSet.of("id", "meta", "implicitRules", "language", "text", "contained", "extension", "modifierExtension");
+
+	private static final String DEFAULT_ENCODING = "UTF-8";
+	private static final String DECLARATION_START = "<?xml";
+	private static final String DECLARATION_END = "?>";
+	private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+	private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	});
+	private static final ThreadLocal<XMLOutputFactory> OUTPUT_FACTORY = ThreadLocal.withInitial(XMLOutputFactory::newInstance);
+
+	private final String narrativeDiv;
+	private final Optional<String> newUrl;
+
+	/**
+	 * @param narrativeDiv the XHTML div to use as the narrative, serialised without an XML declaration
+	 * @param newUrl the value to give the resource's url element, if it should be changed
+	 */
+	NarrativeSplicer(String narrativeDiv, Optional<String> newUrl) {
+		this.narrativeDiv = narrativeDiv;
+		this.newUrl = newUrl;
+	}
+
+	void splice(File input, Path output) throws IOException {
+		try (InputStream in = Files.newInputStream(input.toPath())) {
+			XMLEventReader reader = INPUT_FACTORY.get().createXMLEventReader(in);
+			try {
+				String encoding = peekEncoding(reader);
+				Optional<String> declaration = readDeclaration(input, encoding);
+				try (Writer out = new BufferedWriter(new OutputStreamWriter(FhirFileUtils.newOutputStream(output), encoding))) {
+					copy(reader, out, declaration);
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to splice narrative into " + input.getAbsolutePath(), e);
+		}
+	}
+
+	private String peekEncoding(XMLEventReader reader) throws XMLStreamException {
+		XMLEvent first = reader.peek();
+		if (first != null
+		  && first.isStartDocument()
+		  && ((StartDocument)first).encodingSet()) {
+			return ((StartDocument)first).getCharacterEncodingScheme();
+		}
+
+		return DEFAULT_ENCODING;
+	}
+
+	/**
+	 * The StartDocument event can't distinguish a declaration without an encoding from no declaration at all, and doesn't
+	 * carry the standalone flag as written or the whitespace after the declaration, so the declaration is read from the file.
+	 * @return the XML declaration as written in the input, with any whitespace which follows it
+	 */
+	private Optional<String> readDeclaration(File input, String encoding) throws IOException {
+		try (Reader in = new BufferedReader(new InputStreamReader(Files.newInputStream(input.toPath()), encoding))) {
+			int c = in.read();
+			if (c == BYTE_ORDER_MARK) {
+				c = in.read();
+			}
+
+			StringBuilder declaration = new StringBuilder();
+			while (c != -1
+			  && declaration.length() <= DECLARATION_START.length()) {
+				declaration.append((char)c);
+				c = in.read();
+			}
+
+			// "<?xml" followed by a name character is a processing instruction (e.g. <?xml-stylesheet ...?>)
+			if (declaration.length() <= DECLARATION_START.length()
+			  || !declaration.toString().startsWith(DECLARATION_START)
+			  || !Character.isWhitespace(declaration.charAt(DECLARATION_START.length()))) {
+				return Optional.empty();
+			}
+
+			while (c != -1
+			  && !declaration.toString().endsWith(DECLARATION_END)) {
+				declaration.append((char)c);
+				c = in.read();
+			}
+
+			while (c != -1
+			  && Character.isWhitespace(c)) {
+				declaration.append((char)c);
+				c = in.read();
+			}
+
+			return Optional.of(declaration.toString());
+		}
+	}
+
+	private void copy(XMLEventReader reader, Writer out, Optional<String> declaration) throws XMLStreamException, IOException {
+		XMLStreamWriter writer = OUTPUT_FACTORY.get().createXMLStreamWriter(out);
+
+		int depth = 0;
+		StartElement root = null;
+		String childIndent = "";
+		boolean textWritten = false;
+		boolean urlWritten = !newUrl.isPresent();
+
+		while (reader.hasNext()) {
+			XMLEvent event = reader.nextEvent();
+
+			switch (event.getEventType()) {
+				case XMLStreamConstants.START_DOCUMENT:
+					if (declaration.isPresent()) {
+						writeRaw(writer, out, declaration.get());
+					}
+					break;
+				case XMLStreamConstants.START_ELEMENT:
+					StartElement start = event.asStartElement();
+					Optional<String> replacementValue = Optional.empty();
+					depth++;
+
+					if (depth == 1) {
+						root = start;
+					} else if (depth == 2) {
+						String name = start.getName().getLocalPart();
+
+						if (!textWritten
+						  && !BEFORE_TEXT.contains(name)) {
+							writeRaw(writer, out, narrativeElement(root));
+							textWritten = true;
+
+							if (name.equals("text")) {
+								skipElement(reader);
+								depth--;
+								break;
+							} else {
+								writeRaw(writer, out, childIndent);
+							}
+						}
+
+						if (!urlWritten
+						  && name.equals("url")) {
+							replacementValue = newUrl;
+							urlWritten = true;
+						} else if (!urlWritten
+						  && !BEFORE_URL.contains(name)) {
+							writeUrlElement(writer, root);
+							writeRaw(writer, out, childIndent);
+							urlWritten = true;
+						}
+					}
+
+					copyStartElement(writer, reader, start, replacementValue);
+					if (reader.peek().isEndElement()) {
+						reader.nextEvent();
+						depth--;
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (depth == 1) {
+						// no elements after the ones which precede text/url
+						if (!textWritten) {
+							writeRaw(writer, out, narrativeElement(root));
+							textWritten = true;
+						}
+						if (!urlWritten) {
+							writeUrlElement(writer, root);
+							urlWritten = true;
+						}
+					}
+					writer.writeEndElement();
+					depth--;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+					Characters characters = event.asCharacters();
+					if (depth == 1
+					  && characters.isWhiteSpace()) {
+						childIndent = characters.getData();
+					}
+					writer.writeCharacters(characters.getData());
+					break;
+				case XMLStreamConstants.CDATA:
+					writer.writeCData(event.asCharacters().getData());
+					break;
+				case XMLStreamConstants.COMMENT:
+					writer.writeComment(((Comment)event).getText());
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					ProcessingInstruction pi = (ProcessingInstruction)event;
+					writer.writeProcessingInstruction(pi.getTarget(), pi.getData());
+					break;
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					writer.writeEntityRef(((EntityReference)event).getName());
+					break;
+				case XMLStreamConstants.DTD:
+					writer.writeDTD(((DTD)event).getDocumentTypeDeclaration());
+					break;
+				case XMLStreamConstants.END_DOCUMENT:
+					writer.writeEndDocument();
+					break;
+				default:
+					throw new IllegalStateException("Unexpected XML event type " + event.getEventType());
+			}
+		}
+
+		writer.flush();
+		writer.close();
+	}
+
+	/**
+	 * Writes the start of an element, or the whole element if it has no content (so that empty elements stay self-closing).
+	 */
+	private void copyStartElement(XMLStreamWriter writer, XMLEventReader reader, StartElement start, Optional<String> replacementValue) throws XMLStreamException {
+		String prefix = start.getName().getPrefix();
+		String localName = start.getName().getLocalPart();
+		String namespace = start.getName().getNamespaceURI();
+
+		if (reader.peek().isEndElement()) {
+			writer.writeEmptyElement(prefix, localName, namespace);
+		} else {
+			writer.writeStartElement(prefix, localName, namespace);
+		}
+
+		for (Iterator<?> namespaces = start.getNamespaces(); namespaces.hasNext(); ) {
+			Namespace ns = (Namespace)namespaces.next();
+			if (ns.isDefaultNamespaceDeclaration()) {
+				writer.writeDefaultNamespace(ns.getNamespaceURI());
+			} else {
+				writer.writeNamespace(ns.getPrefix(), ns.getNamespaceURI());
+			}
+		}
+
+		for (Iterator<?> attributes = start.getAttributes(); attributes.hasNext(); ) {
+			Attribute attribute = (Attribute)attributes.next();
+			String value = attribute.getValue();
+			if (replacementValue.isPresent()
+			  && attribute.getName().getLocalPart().equals("value")) {
+				value = replacementValue.get();
+			}
+
+			writer.writeAttribute(attribute.getName().getPrefix(), attribute.getName().getNamespaceURI(), attribute.getName().getLocalPart(), value);
+		}
+	}
+
+	private void skipElement(XMLEventReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement()) {
+				depth++;
+			} else if (event.isEndElement()) {
+				depth--;
+			}
+		}
+	}
+
+	private void writeUrlElement(XMLStreamWriter writer, StartElement root) throws XMLStreamException {
+		writer.writeEmptyElement(root.getName().getPrefix(), "url", root.getName().getNamespaceURI());
+		writer.writeAttribute("value", newUrl.get());
+	}
+
+	private String narrativeElement(StartElement root) {
+		String prefix = root.getName().getPrefix();
+		String text = prefix.isEmpty() ? "text" : prefix + ":text";
+		String status = prefix.isEmpty() ? "status" : prefix + ":status";
+
+		return "<" + text + "><" + status + " value=\"generated\"/>" + narrativeDiv + "</" + text + ">";
+	}
+
+	/**
+	 * Writes straight to the output, after closing any start tag the XMLStreamWriter has left open.
+	 */
+	private void writeRaw(XMLStreamWriter writer, Writer out, String raw) throws XMLStreamException, IOException {
+		writer.writeCharacters("");
+		writer.flush();
+		out.write(raw);
+	}
+}
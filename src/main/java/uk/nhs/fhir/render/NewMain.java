@@ -17,11 +17,23 @@ package uk.nhs.fhir.render;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.FileUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -29,7 +41,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import uk.nhs.fhir.data.url.FhirURL;
 import uk.nhs.fhir.data.url.FullFhirURL;
@@ -40,7 +56,14 @@ import uk.nhs.fhir.event.EventHandlerContext;
 import uk.nhs.fhir.event.LoggedRenderingException;
 import uk.nhs.fhir.event.RendererLoggingEventHandler;
 import uk.nhs.fhir.load.FhirFileParser;
+import uk.nhs.fhir.load.FileLoader;
 import uk.nhs.fhir.load.RootedXmlFileFinder;
+import uk.nhs.fhir.render.format.ConceptPages;
+import uk.nhs.fhir.render.format.NarrativeProfile;
+import uk.nhs.fhir.render.format.ResourceFormatterFactory;
+import uk.nhs.fhir.render.html.HTMLOutputMode;
+import uk.nhs.fhir.render.html.style.SharedStylesheet;
+import uk.nhs.fhir.render.html.tree.TreeLineMode;
 import uk.nhs.fhir.util.FhirFileRegistry;
 import uk.nhs.fhir.util.FhirFileUtils;
 import uk.nhs.fhir.util.FhirVersion;
@@ -52,12 +75,26 @@ import uk.nhs.fhir.util.UrlValidator;
 public class NewMain {
     private static final Logger LOG = LoggerFactory.getLogger(NewMain.class.getName());
 	
-	private final RendererFileLocator rendererFileLocator;
+	private final Path inputDirectory;
+	private final Path outputDirectory;
+	private RendererFileLocator rendererFileLocator;
     private final Optional<String> newBaseURL;
     private final Set<String> permittedMissingExtensionPrefixes;
     private final AbstractRendererEventHandler eventHandler;
     private boolean continueOnFail = false;
     private boolean allowCopyOnError = false;
+    private int threads = 1;
+    private boolean incremental = false;
+    private Optional<Set<String>> only = Optional.empty();
+    private boolean spliceNarrative = false;
+    private boolean stagedPublish = false;
+    private TreeLineMode treeLineMode = TreeLineMode.PNG;
+    private Optional<Integer> conceptPageSize = Optional.empty();
+    private boolean lazyTrees = false;
+    private boolean sharedStylesheet = false;
+    private HTMLOutputMode htmlOutputMode = HTMLOutputMode.PRETTY;
+    private NarrativeProfile narrativeProfile = NarrativeProfile.FULL;
+    private Optional<String> pagesBaseUrl = Optional.empty();
     private final Optional<Set<String>> localQdomains;
     
     public void setContinueOnFail(boolean continueOnFail) {
@@ -67,6 +104,90 @@ public class NewMain {
     public void setAllowCopyOnError(boolean allowCopyOnError) {
     	this.allowCopyOnError = allowCopyOnError;
     }
+    
+    public void setThreads(int threads) {
+    	if (threads < 1) {
+    		throw new IllegalArgumentException("Thread count must be at least 1 but was " + threads);
+    	}
+    	this.threads = threads;
+    }
+    
+    public void setIncremental(boolean incremental) {
+    	this.incremental = incremental;
+    }
+    
+    /**
+     * Restrict rendering to resources with these URLs, or whose file paths match these globs. All files are still registered.
+     */
+    public void setOnly(Optional<Set<String>> only) {
+    	this.only = only.map(urlsOrGlobs -> (Set<String>)ImmutableSet.copyOf(urlsOrGlobs));
+    }
+    
+    /**
+     * Write augmented resources by copying the input XML with only the narrative (and URL) replaced, instead of re-encoding them.
+     */
+    public void setSpliceNarrative(boolean spliceNarrative) {
+    	this.spliceNarrative = spliceNarrative;
+    }
+    
+    /**
+     * Render into a staging directory beside the output directory and swap it in when complete, instead of rendering to a
+     * temp directory and copying.
+     */
+    public void setStagedPublish(boolean stagedPublish) {
+    	this.stagedPublish = stagedPublish;
+    }
+    
+    public void setTreeLineMode(TreeLineMode treeLineMode) {
+    	this.treeLineMode = treeLineMode;
+    }
+    
+    /**
+     * Split concept tables with more than this many concepts into numbered pages, linked from an index.
+     */
+    public void setConceptPageSize(Optional<Integer> conceptPageSize) {
+    	if (conceptPageSize.isPresent()
+    	  && conceptPageSize.get() < 1) {
+    		throw new IllegalArgumentException("Concepts per page must be at least 1 but was " + conceptPageSize.get());
+    	}
+    	this.conceptPageSize = conceptPageSize;
+    }
+    
+    /**
+     * Write snapshot and differential trees as a shell which loads the rest of their rows from a JSON file on demand.
+     */
+    public void setLazyTrees(boolean lazyTrees) {
+    	this.lazyTrees = lazyTrees;
+    }
+    
+    /**
+     * Link rendered pages to a single CSS file written to the root of the output directory, instead of writing their styles inline.
+     */
+    public void setSharedStylesheet(boolean sharedStylesheet) {
+    	this.sharedStylesheet = sharedStylesheet;
+    }
+    
+    /**
+     * Lay out rendered pages, narratives and augmented resources compactly instead of indenting them (see HTMLOutputMode).
+     */
+    public void setHTMLOutputMode(HTMLOutputMode htmlOutputMode) {
+    	this.htmlOutputMode = htmlOutputMode;
+    }
+    
+    /**
+     * Choose which views are embedded in the narrative of each augmented resource. All views are still rendered as pages.
+     */
+    public void setNarrativeProfile(NarrativeProfile narrativeProfile) {
+    	this.narrativeProfile = narrativeProfile;
+    }
+    
+    /**
+     * The URL at which the output directory is published. If set, summary narratives link to the rendered pages by absolute
+     * URL, so that the links still work when the augmented resource is served from somewhere else (e.g. a FHIR server).
+     */
+    public void setPagesBaseUrl(Optional<String> pagesBaseUrl) {
+    	this.pagesBaseUrl = pagesBaseUrl;
+    }
 
 	public NewMain(Path inputDirectory, Path outputDirectory, Optional<Set<String>> permittedMissingExtensionPrefixes, AbstractRendererEventHandler errorHandler) {
 		this(inputDirectory, outputDirectory, Optional.empty(), permittedMissingExtensionPrefixes, errorHandler, Optional.empty());
@@ -80,6 +201,25 @@ public class NewMain {
 			args.getAllowedMissingExtensionPrefixes(),
 			new RendererLoggingEventHandler(),
 			args.getLocalDomains());
+		
+		if (args.getThreads().isPresent()) {
+			setThreads(args.getThreads().get());
+		}
+		
+		setIncremental(args.isIncremental());
+		setOnly(args.getOnly());
+		setSpliceNarrative(args.isSpliceNarrative());
+		setStagedPublish(args.isStagedPublish());
+		setTreeLineMode(args.isCssTreeLines() ? TreeLineMode.CSS : TreeLineMode.PNG);
+		setConceptPageSize(args.getConceptPageSize());
+		setLazyTrees(args.isLazyTrees());
+		setSharedStylesheet(args.isSharedStylesheet());
+		setHTMLOutputMode(
+			args.isShortClassNames() ? HTMLOutputMode.MINIFIED_SHORT_CLASS_NAMES :
+			args.isMinify() ? HTMLOutputMode.MINIFIED :
+			HTMLOutputMode.PRETTY);
+		setNarrativeProfile(args.getNarrativeProfile());
+		setPagesBaseUrl(args.getPagesBaseUrl());
 	}
     
 	public NewMain(
@@ -90,7 +230,8 @@ public class NewMain {
 		AbstractRendererEventHandler errorHandler, 
 		Optional<Set<String>> localQdomains) 
 	{
-		this.rendererFileLocator = new DefaultRendererFileLocator(inputDirectory, makeRenderedArtefactTempDirectory(), outPath);
+		this.inputDirectory = inputDirectory;
+		this.outputDirectory = outPath;
 		this.newBaseURL = newBaseURL;
 		this.permittedMissingExtensionPrefixes = permittedMissingExtensionPrefixes.orElse(Sets.newHashSet());
 		this.eventHandler = errorHandler;
@@ -108,11 +249,18 @@ public class NewMain {
     		return;
     	}
     	
-    	NewMain instance = new NewMain(cliArgs.getInputDir(), cliArgs.getOutputDir(), cliArgs.getNewBaseUrl(), cliArgs.getAllowedMissingExtensionPrefixes(), 
-    			new RendererLoggingEventHandler(), cliArgs.getLocalDomains());
+    	NewMain instance = new NewMain(cliArgs);
         instance.process();
     }
 
+	private StagedOutputDirectory stageOutput() {
+		try {
+			return StagedOutputDirectory.create(outputDirectory);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to create staging directory for " + outputDirectory, e);
+		}
+	}
+
 	private static Path makeRenderedArtefactTempDirectory() {
 		try {
 			return FhirFileUtils.makeTempDir("fhir-renderer-tmp-" + System.currentTimeMillis(), true);
@@ -127,6 +275,13 @@ public class NewMain {
      * @param directoryPath
      */
     public void process() {
+    	
+    	Optional<StagedOutputDirectory> stagedOutput = stagedPublish ? Optional.of(stageOutput()) : Optional.empty();
+    	Path renderingDirectory = 
+    		stagedOutput.isPresent() ? 
+    			stagedOutput.get().getStagingDirectory() : 
+    			makeRenderedArtefactTempDirectory();
+    	rendererFileLocator = new DefaultRendererFileLocator(inputDirectory, renderingDirectory, outputDirectory);
 
         if (newBaseURL.isPresent()) {
         	LOG.info("Using new base URL: " + newBaseURL.get());
@@ -140,8 +295,17 @@ public class NewMain {
     	if (localQdomains.isPresent()) {
     		FhirURL.setLocalQDomains(localQdomains.get());
     	}
-    	final Set<String> oldPermittedMissingExtensionPrefixes = RendererContext.forThread().getPermittedMissingExtensionPrefixes();
+		final RendererContext oldSettings = RendererContext.forThread().copySettings();
 		RendererContext.forThread().setPermittedMissingExtensionPrefixes(permittedMissingExtensionPrefixes);
+		RendererContext.forThread().setTreeLineMode(treeLineMode);
+		RendererContext.forThread().setConceptPageSize(conceptPageSize);
+		RendererContext.forThread().setLazyTrees(lazyTrees);
+		RendererContext.forThread().setHTMLOutputMode(htmlOutputMode);
+		final Optional<SharedStylesheet> stylesheet = 
+			sharedStylesheet ? 
+				Optional.of(new SharedStylesheet(rendererFileLocator.getRenderingTempOutputDirectory(), ResourceFormatterFactory.getSharedStyles(), htmlOutputMode)) :
+				Optional.empty();
+		RendererContext.forThread().setSharedStylesheet(stylesheet);
     	
     	try {
 	    	FhirFileRegistry fhirFileRegistry = new FhirFileRegistry();
@@ -150,26 +314,43 @@ public class NewMain {
 			EventHandler oldEventHandler = EventHandlerContext.forThread();
 	    	EventHandlerContext.setForThread(eventHandler);
 			List<File> potentialFhirFiles = new RootedXmlFileFinder(rawArtefactDirectory).findFilesRecursively();
-	    	
-			FhirFileParser parser = new FhirFileParser();
 			
+			// files which won't be rendered only need parsing if we can't otherwise tell which FHIR version they are
+			Map<File, FhirVersion> unparsedExamples = Maps.newLinkedHashMap();
+			List<File> filesToParse = Lists.newArrayList();
 			for (File potentialFhirFile : potentialFhirFiles) {
+				Optional<FhirVersion> exampleVersion = SniffedFhirFile.sniff(potentialFhirFile).flatMap(SniffedFhirFile::getExampleVersion);
+				if (exampleVersion.isPresent()) {
+					unparsedExamples.put(potentialFhirFile, exampleVersion.get());
+				} else {
+					filesToParse.add(potentialFhirFile);
+				}
+			}
+			LOG.info("Parsing " + filesToParse.size() + " files (" + unparsedExamples.size() + " examples identified without parsing)");
+	    	
+			List<ParsedFhirFile> parsedFiles = 
+				threads > 1 ?
+					parseInParallel(filesToParse) :
+					parseSerially(filesToParse);
+			
+			// register in input order so that the registry and any events are the same however the files were parsed
+			for (ParsedFhirFile parsedFhirFile : parsedFiles) {
+				File potentialFhirFile = parsedFhirFile.getFile();
 				rendererContext.setCurrentSource(potentialFhirFile);
 				rendererContext.setCurrentParsedResource(Optional.empty());
 	
-				IBaseResource parsedFile;
-				try {
-					parsedFile = parser.parseFile(potentialFhirFile);
-				} catch (Exception e) {
+				if (parsedFhirFile.getParseError().isPresent()) {
+					Exception e = parsedFhirFile.getParseError().get();
 					eventHandler.log("Skipping file " + potentialFhirFile.getAbsolutePath() + " - HAPI parsing failed - " + e.getMessage(), Optional.of(e));
 					continue;
 				}
+				
+				IBaseResource parsedFile = parsedFhirFile.getParsedResource().get();
 	
-				try {
-					WrappedResource<?> wrappedResource = WrappedResource.fromBaseResource(parsedFile);
-					rendererContext.setCurrentParsedResource(Optional.of(wrappedResource));
-				} catch (Exception e) {
-					eventHandler.ignore("Failed to create WrappedResource from " + potentialFhirFile.getPath(), Optional.of(e));
+				if (parsedFhirFile.getWrappedResource().isPresent()) {
+					rendererContext.setCurrentParsedResource(parsedFhirFile.getWrappedResource());
+				} else {
+					eventHandler.ignore("Failed to create WrappedResource from " + potentialFhirFile.getPath(), parsedFhirFile.getWrapError());
 					// if wrapping failed, leave 'current parsed resource' as null
 				}
 	
@@ -182,38 +363,36 @@ public class NewMain {
 				}
 			}
 	    	
-	        FileProcessor fileProcessor = new FileProcessor();
+	        RegistryIndex registryIndex = RegistryIndex.build(fhirFileRegistry);
+	        rendererContext.setRegistryIndex(registryIndex);
+	    	
 	        try {
-	        	for (Map.Entry<File, WrappedResource<?>> e : fhirFileRegistry) {
-	        		rendererContext.setCurrentSource(e.getKey());
-	        		rendererContext.setCurrentParsedResource(Optional.of(e.getValue()));
-					
-	        		boolean causedException = false;
-	        		
-	        		try {
-	        			try {
-							fileProcessor.processFile(rendererFileLocator, newBaseURL);
-		        		} catch (LoggedRenderingException loggedError) {
-		        			// Already passed to the event handler - just rethrow
-		        			throw loggedError;
-		        		} catch (Exception error) {
-		        			// Needs to be passed to the event handler so that it can be logged.
-		        			eventHandler.error(Optional.empty(), Optional.of(error));
-		        		}
-	        		} catch (LoggedRenderingException loggedError) {
-	        			causedException = true;
-	        		} 
-	        			
-	        		
-	    			if (causedException 
-	    			  && !continueOnFail) {
-	    				break;
-	    			}
-	
-	        		rendererContext.clearCurrent();
-		        }
+	        	if (stylesheet.isPresent()) {
+	        		writeSharedStylesheet(stylesheet.get());
+	        	}
+	        	
+	        	Predicate<File> shouldRender = file -> true;
+	        	
+	        	Optional<IncrementalRender> incrementalRender = Optional.empty();
+	        	if (incremental) {
+	        		incrementalRender = Optional.of(
+	        			IncrementalRender.plan(rawArtefactDirectory, rendererFileLocator.getRenderingFinalOutputDirectory(), fhirFileRegistry, registryIndex, describeSettings()));
+	        		shouldRender = shouldRender.and(incrementalRender.get()::shouldRender);
+	        	}
+	        	
+	        	if (only.isPresent()) {
+	        		RenderSelection selection = RenderSelection.select(only.get(), rawArtefactDirectory, fhirFileRegistry, registryIndex);
+	        		shouldRender = shouldRender.and(selection::contains);
+	        	}
+	        	
+	        	if (threads > 1) {
+	        		renderInParallel(fhirFileRegistry, shouldRender, incrementalRender);
+	        	} else {
+	        		renderSerially(fhirFileRegistry, rendererContext, shouldRender, incrementalRender);
+	        	}
 	
 	    		boolean succeeded = !eventHandler.foundErrors();
+	    		boolean published = false;
 	        	
 	        	if (eventHandler.isDeferred() 
 	        	  && (!succeeded || eventHandler.foundWarnings())) {
@@ -229,22 +408,34 @@ public class NewMain {
 	        			LOG.info("Rendering failed for some files - copying rendered artefacts anyway since allowCopyOnError set");
 	        		}
 	        		
-	        		copyExamples(fhirFileRegistry);
-	        		copyGeneratedArtefacts();
+	        		copyExamples(fhirFileRegistry, unparsedExamples);
+	        		if (incrementalRender.isPresent()) {
+	        			incrementalRender.get().writeManifest(rendererFileLocator.getRenderingTempOutputDirectory());
+	        		}
+	        		if (stagedOutput.isPresent()) {
+	        			stagedOutput.get().publish();
+	        		} else {
+	        			copyGeneratedArtefacts();
+	        		}
+	        		published = true;
 	        	} else {
 	        		LOG.warn("At least one error was encountered and allowCopyOnError is not set - not copying rendered resources");
 	        	}
 	        	
 	        	// if an error is thrown while copying the files, this gets skipped so they can be recovered if necessary
-	        	LOG.info("Deleting temporary files");
-	        	deleteTempFiles();
+	        	if (!stagedOutput.isPresent()) {
+		        	LOG.info("Deleting temporary files");
+		        	deleteTempFiles();
+	        	} else if (!published) {
+	        		LOG.info("Discarding staged output");
+	        		stagedOutput.get().discard();
+	        	}
 	        	
 	        } catch (Exception e) {
 	        	throw new IllegalStateException("Renderer failed", e);
 	        } finally {
 	        	// reinstate the old event handler so we don't lose logging etc.
 	        	EventHandlerContext.setForThread(oldEventHandler);
-	        	RendererContext.forThread().setPermittedMissingExtensionPrefixes(oldPermittedMissingExtensionPrefixes);
 	        }
 	        
 	        
@@ -256,10 +447,211 @@ public class NewMain {
     	} finally {
             // restore previous state
             FhirURL.setLocalQDomains(originalQDomains);
+            RendererContext.forThread().setSettings(oldSettings);
     	}
     }
 
-	private void copyExamples(FhirFileRegistry fhirFileRegistry) {
+	private List<ParsedFhirFile> parseSerially(List<File> potentialFhirFiles) {
+		FhirFileParser parser = new FhirFileParser();
+		
+		List<ParsedFhirFile> parsedFiles = Lists.newArrayList();
+		for (File potentialFhirFile : potentialFhirFiles) {
+			parsedFiles.add(ParsedFhirFile.parse(parser, potentialFhirFile));
+		}
+		
+		return parsedFiles;
+	}
+
+	/**
+	 * Parses files on a fixed size pool, with a parser per worker thread. Results are returned in the same order as the input files.
+	 */
+	private List<ParsedFhirFile> parseInParallel(List<File> potentialFhirFiles) {
+		LOG.info("Parsing using " + threads + " threads");
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		ThreadLocal<FhirFileParser> parsers = ThreadLocal.withInitial(FhirFileParser::new);
+		
+		try {
+			List<Future<ParsedFhirFile>> parseTasks = Lists.newArrayList();
+			for (File potentialFhirFile : potentialFhirFiles) {
+				parseTasks.add(executor.submit(() -> ParsedFhirFile.parse(parsers.get(), potentialFhirFile)));
+			}
+			
+			List<ParsedFhirFile> parsedFiles = Lists.newArrayList();
+			for (Future<ParsedFhirFile> parseTask : parseTasks) {
+				parsedFiles.add(parseTask.get());
+			}
+			
+			return parsedFiles;
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Failed to parse input files", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Describes the settings which affect rendered output, so that an incremental render doesn't reuse output rendered
+	 * with different settings.
+	 */
+	private String describeSettings() {
+		return "version=" + NewMain.class.getPackage().getImplementationVersion()
+			+ ";build=" + describeRendererBuild()
+			+ ";baseUrl=" + newBaseURL.orElse("")
+			+ ";missingExtPrefixes=" + Sets.newTreeSet(permittedMissingExtensionPrefixes)
+			+ ";localDomains=" + localQdomains.map(Sets::newTreeSet).map(Object::toString).orElse("")
+			+ ";spliceNarrative=" + spliceNarrative
+			+ ";treeLines=" + treeLineMode
+			+ ";conceptsPerPage=" + conceptPageSize.map(Object::toString).orElse("")
+			+ ";lazyTrees=" + lazyTrees
+			+ ";sharedStylesheet=" + sharedStylesheet
+			+ ";htmlOutput=" + htmlOutputMode
+			+ ";narrative=" + narrativeProfile
+			+ ";pagesUrl=" + pagesBaseUrl.orElse("");
+	}
+	
+	/**
+	 * Identifies the renderer build, since the version is unchanged between builds of a snapshot. This is a hash of the jar
+	 * (or class directory) the renderer was loaded from. If that can't be read, a value which never matches a previous run is
+	 * used, so that output from another build is never reused.
+	 */
+	private static String describeRendererBuild() {
+		try {
+			Path codeSource = Paths.get(NewMain.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (!Files.isDirectory(codeSource)) {
+				return RenderManifest.hash(codeSource.toFile());
+			}
+			
+			List<Path> classFiles;
+			try (Stream<Path> files = Files.walk(codeSource)) {
+				classFiles = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+			}
+			
+			Hasher hasher = Hashing.sha256().newHasher();
+			for (Path classFile : classFiles) {
+				hasher.putString(codeSource.relativize(classFile).toString(), StandardCharsets.UTF_8);
+				hasher.putString(RenderManifest.hash(classFile.toFile()), StandardCharsets.UTF_8);
+			}
+			return hasher.hash().toString();
+		} catch (IOException | URISyntaxException | RuntimeException e) {
+			LOG.warn("Failed to identify the renderer build - output from previous renders won't be reused", e);
+			return "unknown-" + System.currentTimeMillis();
+		}
+	}
+	
+	private void writeSharedStylesheet(SharedStylesheet stylesheet) {
+		LOG.info("Writing shared stylesheet " + stylesheet.getPath().getFileName());
+		
+		if (!FhirFileUtils.writeFile(stylesheet.getPath().toFile(), stylesheet.getCSS().getBytes(FileLoader.DEFAULT_ENCODING))) {
+			throw new IllegalStateException("Failed to write shared stylesheet " + stylesheet.getPath());
+		}
+	}
+
+	private void renderSerially(FhirFileRegistry fhirFileRegistry, RendererContext rendererContext, Predicate<File> shouldRender, 
+			Optional<IncrementalRender> incrementalRender) {
+		FileProcessor fileProcessor = new FileProcessor(spliceNarrative, narrativeProfile, pagesBaseUrl);
+		
+		for (Map.Entry<File, WrappedResource<?>> e : fhirFileRegistry) {
+			if (!shouldRender.test(e.getKey())) {
+				continue;
+			}
+			
+			boolean causedException = renderEntry(fileProcessor, rendererContext, e);
+			
+			if (!causedException
+			  && incrementalRender.isPresent()) {
+				incrementalRender.get().rendered(e.getKey(), rendererContext.getCurrentDependencies());
+			}
+			
+			if (causedException 
+			  && !continueOnFail) {
+				break;
+			}
+
+			rendererContext.clearCurrent();
+		}
+	}
+
+	/**
+	 * Renders each registry entry as a separate task on a fixed size pool. Each worker is given its own RendererContext and
+	 * EventHandlerContext (both are thread local), with the settings, registry, index and event handler of the main thread.
+	 * When continueOnFail is not set, the first failure stops any tasks which haven't started yet.
+	 */
+	private void renderInParallel(FhirFileRegistry fhirFileRegistry, Predicate<File> shouldRender, 
+			Optional<IncrementalRender> incrementalRender) throws InterruptedException, ExecutionException {
+		LOG.info("Rendering using " + threads + " threads");
+		
+		RendererContext settings = RendererContext.forThread().copySettings();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		AtomicBoolean stopRendering = new AtomicBoolean(false);
+		List<Future<?>> renderTasks = Lists.newArrayList();
+		
+		try {
+			for (Map.Entry<File, WrappedResource<?>> e : fhirFileRegistry) {
+				if (!shouldRender.test(e.getKey())) {
+					continue;
+				}
+				
+				renderTasks.add(executor.submit(() -> {
+					if (stopRendering.get()) {
+						return;
+					}
+					
+					RendererContext workerContext = RendererContext.forThread();
+					workerContext.setSettings(settings);
+					EventHandlerContext.setForThread(eventHandler);
+					
+					try {
+						boolean causedException = renderEntry(new FileProcessor(spliceNarrative, narrativeProfile, pagesBaseUrl), workerContext, e);
+						
+						if (!causedException
+						  && incrementalRender.isPresent()) {
+							incrementalRender.get().rendered(e.getKey(), workerContext.getCurrentDependencies());
+						}
+						
+						if (causedException
+						  && !continueOnFail) {
+							stopRendering.set(true);
+						}
+					} finally {
+						workerContext.clearCurrent();
+					}
+				}));
+			}
+			
+			for (Future<?> renderTask : renderTasks) {
+				renderTask.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * @return true if rendering this entry caused an error
+	 */
+	private boolean renderEntry(FileProcessor fileProcessor, RendererContext rendererContext, Map.Entry<File, WrappedResource<?>> e) {
+		rendererContext.setCurrentSource(e.getKey());
+		rendererContext.setCurrentParsedResource(Optional.of(e.getValue()));
+		
+		try {
+			try {
+				fileProcessor.processFile(rendererFileLocator, newBaseURL);
+			} catch (LoggedRenderingException loggedError) {
+				// Already passed to the event handler - just rethrow
+				throw loggedError;
+			} catch (Exception error) {
+				// Needs to be passed to the event handler so that it can be logged.
+				eventHandler.error(Optional.empty(), Optional.of(error));
+			}
+		} catch (LoggedRenderingException loggedError) {
+			return true;
+		}
+		
+		return false;
+	}
+
+	private void copyExamples(FhirFileRegistry fhirFileRegistry, Map<File, FhirVersion> unparsedExamples) {
 		
 		for (Map.Entry<File, IBaseResource> entry : fhirFileRegistry.getUnsupportedFhirResources().entrySet()) {
 
@@ -275,28 +667,37 @@ public class NewMain {
 			}
 			
 			if (exampleVersion != null) {
-				
-				Path outputDir = 
-					rendererFileLocator.getRenderingTempOutputDirectory()
-						.resolve(exampleVersion.toString())
-						.resolve("Examples");
-				
-				File outputDirFile = outputDir.toFile();
-				if (!outputDirFile.exists() && !outputDirFile.mkdirs()) {
-		        	throw new IllegalStateException("Failed to create directory [" + outputDir.toString() + "]");
-		        }
-				
-				Path output = outputDir.resolve(entry.getKey().getName());
-		    	
-				LOG.debug("Copying example file to " + output.toString());
-		    	
-				try {
-					FileUtils.copyFile(entry.getKey(), output.toFile());
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+				copyExample(entry.getKey(), exampleVersion);
 			}
 		}
+		
+		for (Map.Entry<File, FhirVersion> entry : unparsedExamples.entrySet()) {
+			copyExample(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void copyExample(File example, FhirVersion exampleVersion) {
+		Path outputDir = 
+			rendererFileLocator.getRenderingTempOutputDirectory()
+				.resolve(exampleVersion.toString())
+				.resolve("Examples");
+		
+		File outputDirFile = outputDir.toFile();
+		if (!outputDirFile.exists() && !outputDirFile.mkdirs()) {
+        	throw new IllegalStateException("Failed to create directory [" + outputDir.toString() + "]");
+        }
+		
+		Path output = outputDir.resolve(example.getName());
+    	
+		LOG.debug("Copying example file to " + output.toString());
+    	
+		try {
+			// replace rather than overwrite, in case the file is linked to a published one
+			Files.deleteIfExists(output);
+			FileUtils.copyFile(example, output.toFile());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	private void copyGeneratedArtefacts() throws IOException {
@@ -304,6 +705,16 @@ public class NewMain {
 		Path outputDirectory = rendererFileLocator.getRenderingFinalOutputDirectory();
 		
 		FileUtils.copyDirectory(generationTempDirectory.toFile(), outputDirectory.toFile());
+		
+		// concept pages which resources rendered this time no longer have
+		List<Path> renderedDirectories;
+		try (Stream<Path> paths = Files.walk(generationTempDirectory)) {
+			renderedDirectories = paths.filter(Files::isDirectory).collect(Collectors.toList());
+		}
+		for (Path renderedDirectory : renderedDirectories) {
+			Set<String> renderedFileNames = Sets.newHashSet(renderedDirectory.toFile().list());
+			ConceptPages.deleteStalePages(outputDirectory.resolve(generationTempDirectory.relativize(renderedDirectory)), renderedFileNames);
+		}
 	}
 
 	private void deleteTempFiles() {
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 Health and Social Care Information Centre.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.nhs.fhir.render;
+
+import java.io.File;
+import java.util.Optional;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import uk.nhs.fhir.data.wrap.WrappedResource;
+import uk.nhs.fhir.load.FhirFileParser;
+
+/**
+ * Outcome of parsing and wrapping a single input file. Failures are held rather than reported so that files can be parsed
+ * on any thread, with events raised later in input order.
+ */
+class ParsedFhirFile {
+	private final File file;
+	private final Optional<IBaseResource> parsedResource;
+	private final Optional<Exception> parseError;
+	private final Optional<WrappedResource<?>> wrappedResource;
+	private final Optional<Exception> wrapError;
+	
+	private ParsedFhirFile(File file, Optional<IBaseResource> parsedResource, Optional<Exception> parseError, 
+			Optional<WrappedResource<?>> wrappedResource, Optional<Exception> wrapError) {
+		this.file = file;
+		this.parsedResource = parsedResource;
+		this.parseError = parseError;
+		this.wrappedResource = wrappedResource;
+		this.wrapError = wrapError;
+	}
+	
+	static ParsedFhirFile parse(FhirFileParser parser, File file) {
+		IBaseResource parsedResource;
+		try {
+			parsedResource = parser.parseFile(file);
+		} catch (Exception e) {
+			return new ParsedFhirFile(file, Optional.empty(), Optional.of(e), Optional.empty(), Optional.empty());
+		}
+		
+		try {
+			WrappedResource<?> wrappedResource = WrappedResource.fromBaseResource(parsedResource);
+			return new ParsedFhirFile(file, Optional.of(parsedResource), Optional.empty(), Optional.of(wrappedResource), Optional.empty());
+		} catch (Exception e) {
+			return new ParsedFhirFile(file, Optional.of(parsedResource), Optional.empty(), Optional.empty(), Optional.of(e));
+		}
+	}
+	
+	File getFile() {
+		return file;
+	}
+	
+	Optional<IBaseResource> getParsedResource() {
+		return parsedResource;
+	}
+	
+	Optional<Exception> getParseError() {
+		return parseError;
+	}
+	
+	Optional<WrappedResource<?>> getWrappedResource() {
+		return wrappedResource;
+	}
+	
+	Optional<Exception> getWrapError() {
+		return wrapError;
+	}
+}
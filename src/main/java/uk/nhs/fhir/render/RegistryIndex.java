@@ -0,0 +1,119 @@
+package uk.nhs.fhir.render;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import uk.nhs.fhir.data.codesystem.FhirCodeSystemConcepts;
+import uk.nhs.fhir.data.valueset.FhirValueSetComposeInclude;
+import uk.nhs.fhir.data.wrap.WrappedCodeSystem;
+import uk.nhs.fhir.data.wrap.WrappedConceptMap;
+import uk.nhs.fhir.data.wrap.WrappedResource;
+import uk.nhs.fhir.data.wrap.WrappedValueSet;
+import uk.nhs.fhir.util.FhirFileRegistry;
+
+/**
+ * Registry lookups made while rendering, resolved once for every registered resource after the parse phase, so that
+ * renders (and incremental/selective render planning) don't repeat the registry's scans. Immutable, so can be shared
+ * between render threads.
+ * Lookups for anything which wasn't indexed fall through to the registry.
+ */
+public class RegistryIndex {
+	private static final Logger LOG = LoggerFactory.getLogger(RegistryIndex.class);
+
+	private final FhirFileRegistry fhirFileRegistry;
+	// keyed by resource identity
+	private final Map<WrappedValueSet, List<WrappedConceptMap>> conceptMapsByValueSet;
+	private final Map<WrappedValueSet, Boolean> hasUnavailableCodeSystem;
+	private final Map<String, Optional<WrappedCodeSystem>> codeSystemsBySystem;
+
+	private RegistryIndex(FhirFileRegistry fhirFileRegistry, Map<WrappedValueSet, List<WrappedConceptMap>> conceptMapsByValueSet,
+			Map<WrappedValueSet, Boolean> hasUnavailableCodeSystem, Map<String, Optional<WrappedCodeSystem>> codeSystemsBySystem) {
+		this.fhirFileRegistry = fhirFileRegistry;
+		this.conceptMapsByValueSet = Collections.unmodifiableMap(conceptMapsByValueSet);
+		this.hasUnavailableCodeSystem = Collections.unmodifiableMap(hasUnavailableCodeSystem);
+		this.codeSystemsBySystem = codeSystemsBySystem;
+	}
+
+	/**
+	 * Must be built after every file has been registered.
+	 */
+	public static RegistryIndex build(FhirFileRegistry fhirFileRegistry) {
+		Map<WrappedValueSet, List<WrappedConceptMap>> conceptMapsByValueSet = Maps.newIdentityHashMap();
+		Map<WrappedValueSet, Boolean> hasUnavailableCodeSystem = Maps.newIdentityHashMap();
+		Set<String> systems = Sets.newHashSet();
+
+		for (Map.Entry<File, WrappedResource<?>> e : fhirFileRegistry) {
+			if (e.getValue() instanceof WrappedValueSet) {
+				WrappedValueSet valueSet = (WrappedValueSet)e.getValue();
+				try {
+					conceptMapsByValueSet.put(valueSet, ImmutableList.copyOf(valueSet.getConceptMaps(fhirFileRegistry)));
+					hasUnavailableCodeSystem.put(valueSet, valueSet.hasUnavailableCodeSystem(fhirFileRegistry));
+				} catch (RuntimeException re) {
+					// left unindexed, so that the error is reported against this ValueSet when it is rendered
+					conceptMapsByValueSet.remove(valueSet);
+					LOG.debug("Not indexing " + e.getKey().getAbsolutePath(), re);
+				}
+
+				Optional<FhirCodeSystemConcepts> inlineCodeSystem = valueSet.getCodeSystem();
+				if (inlineCodeSystem.isPresent()) {
+					systems.add(inlineCodeSystem.get().getSystem());
+				}
+				for (FhirValueSetComposeInclude include : valueSet.getCompose().getIncludes()) {
+					systems.add(include.getSystem());
+				}
+			}
+		}
+
+		ImmutableMap.Builder<String, Optional<WrappedCodeSystem>> codeSystemsBySystem = ImmutableMap.builder();
+		for (String system : systems) {
+			if (system != null) {
+				try {
+					codeSystemsBySystem.put(system, fhirFileRegistry.getCodeSystem(system));
+				} catch (RuntimeException re) {
+					LOG.debug("Not indexing CodeSystem " + system, re);
+				}
+			}
+		}
+
+		return new RegistryIndex(fhirFileRegistry, conceptMapsByValueSet, hasUnavailableCodeSystem, codeSystemsBySystem.build());
+	}
+
+	public List<WrappedConceptMap> getConceptMaps(WrappedValueSet valueSet) {
+		List<WrappedConceptMap> conceptMaps = conceptMapsByValueSet.get(valueSet);
+		if (conceptMaps != null) {
+			return conceptMaps;
+		}
+
+		return valueSet.getConceptMaps(fhirFileRegistry);
+	}
+
+	public boolean hasUnavailableCodeSystem(WrappedValueSet valueSet) {
+		Boolean unavailable = hasUnavailableCodeSystem.get(valueSet);
+		if (unavailable != null) {
+			return unavailable;
+		}
+
+		return valueSet.hasUnavailableCodeSystem(fhirFileRegistry);
+	}
+
+	public Optional<WrappedCodeSystem> getCodeSystem(String system) {
+		Optional<WrappedCodeSystem> codeSystem = codeSystemsBySystem.get(system);
+		if (codeSystem != null) {
+			return codeSystem;
+		}
+
+		return fhirFileRegistry.getCodeSystem(system);
+	}
+}
@@ -0,0 +1,217 @@
+package uk.nhs.fhir.render;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+
+/**
+ * Record of a previous render, written to the root of the output directory. For each rendered input file (keyed by its path
+ * relative to the input directory) it holds a hash of the file's content, the URL of the resource and the URLs of any registry
+ * resources which were read while rendering it. This allows a later run to only re-render files which have changed, or which
+ * depend on a resource which has changed.
+ *
+ * Files which failed to render are not included, so that they are always re-rendered.
+ */
+public class RenderManifest {
+	private static final Logger LOG = LoggerFactory.getLogger(RenderManifest.class);
+
+	public static final String FILE_NAME = ".render-manifest";
+
+	private static final String SETTINGS_LINE = "settings";
+	private static final String FILE_LINE = "file";
+	private static final String SEPARATOR = "\t";
+
+	private final String settings;
+	private final Map<String, RenderManifestEntry> entries = Maps.newTreeMap();
+
+	/**
+	 * @param settings a description of any renderer settings which affect the output. A previous manifest is only used if the
+	 * settings match.
+	 */
+	public RenderManifest(String settings) {
+		this.settings = settings;
+	}
+
+	public String getSettings() {
+		return settings;
+	}
+
+	public synchronized void addEntry(String relativePath, RenderManifestEntry entry) {
+		entries.put(relativePath, entry);
+	}
+
+	public synchronized Optional<RenderManifestEntry> getEntry(String relativePath) {
+		return Optional.ofNullable(entries.get(relativePath));
+	}
+
+	/**
+	 * Find which files need to be rendered.
+	 * @param currentHashes content hashes of all renderable input files, keyed by relative path
+	 * @param currentUrls URLs of the resources in those files (where present)
+	 * @param knownDependencies dependencies of the current files which can be determined before rendering. This covers
+	 * registry lookups whose results can change because of a new resource appearing (e.g. a new ConceptMap for a ValueSet).
+	 * @return the relative paths of files which are new, changed, or depend (directly or transitively) on a changed resource
+	 */
+	public synchronized Set<String> findFilesToRender(Map<String, String> currentHashes, Map<String, Optional<String>> currentUrls,
+			Map<String, Set<String>> knownDependencies) {
+		Set<String> toRender = Sets.newHashSet();
+		Set<String> changedUrls = Sets.newHashSet();
+
+		for (Map.Entry<String, String> current : currentHashes.entrySet()) {
+			String relativePath = current.getKey();
+			Optional<RenderManifestEntry> previous = getEntry(relativePath);
+
+			if (!previous.isPresent()
+			  || !previous.get().getHash().equals(current.getValue())) {
+				toRender.add(relativePath);
+				currentUrls.getOrDefault(relativePath, Optional.empty()).ifPresent(changedUrls::add);
+				previous.flatMap(RenderManifestEntry::getUrl).ifPresent(changedUrls::add);
+			}
+		}
+
+		for (Map.Entry<String, RenderManifestEntry> previous : entries.entrySet()) {
+			if (!currentHashes.containsKey(previous.getKey())) {
+				// removed since the last render
+				previous.getValue().getUrl().ifPresent(changedUrls::add);
+			}
+		}
+
+		// re-render anything which depends on a changed resource, and in turn anything which depends on that
+		Map<String, Set<String>> dependants = Maps.newHashMap();
+		for (String relativePath : currentHashes.keySet()) {
+			Set<String> dependencies = Sets.newHashSet(knownDependencies.getOrDefault(relativePath, Collections.emptySet()));
+			getEntry(relativePath).ifPresent(entry -> dependencies.addAll(entry.getDependencies()));
+
+			for (String dependency : dependencies) {
+				dependants.computeIfAbsent(dependency, url -> Sets.newHashSet()).add(relativePath);
+			}
+		}
+
+		Deque<String> urlsToCheck = new ArrayDeque<>(changedUrls);
+		while (!urlsToCheck.isEmpty()) {
+			String changedUrl = urlsToCheck.pop();
+
+			for (String dependant : dependants.getOrDefault(changedUrl, Collections.emptySet())) {
+				if (toRender.add(dependant)) {
+					Optional<String> dependantUrl = currentUrls.getOrDefault(dependant, Optional.empty());
+					if (dependantUrl.isPresent()
+					  && changedUrls.add(dependantUrl.get())) {
+						urlsToCheck.push(dependantUrl.get());
+					}
+				}
+			}
+		}
+
+		return toRender;
+	}
+
+	public static String hash(File file) throws IOException {
+		return com.google.common.io.Files.asByteSource(file).hash(Hashing.sha256()).toString();
+	}
+
+	/**
+	 * @return the manifest stored at this location, if present and readable
+	 */
+	public static Optional<RenderManifest> read(Path manifestPath) {
+		if (!manifestPath.toFile().isFile()) {
+			return Optional.empty();
+		}
+
+		try {
+			List<String> lines = Files.readAllLines(manifestPath, StandardCharsets.UTF_8);
+			RenderManifest manifest = null;
+
+			for (String line : lines) {
+				String[] fields = line.split(SEPARATOR, -1);
+
+				if (fields[0].equals(SETTINGS_LINE)
+				  && fields.length == 2) {
+					manifest = new RenderManifest(fields[1]);
+				} else if (fields[0].equals(FILE_LINE)
+				  && fields.length >= 4
+				  && manifest != null) {
+					Optional<String> url = fields[3].isEmpty() ? Optional.empty() : Optional.of(fields[3]);
+					Set<String> dependencies = Sets.newHashSet();
+					for (int i=4; i<fields.length; i++) {
+						dependencies.add(fields[i]);
+					}
+
+					manifest.addEntry(fields[1], new RenderManifestEntry(fields[2], url, dependencies));
+				} else {
+					LOG.warn("Ignoring render manifest " + manifestPath + " - unexpected line [" + line + "]");
+					return Optional.empty();
+				}
+			}
+
+			return Optional.ofNullable(manifest);
+		} catch (IOException e) {
+			LOG.warn("Failed to read render manifest " + manifestPath, e);
+			return Optional.empty();
+		}
+	}
+
+	public synchronized void write(Path manifestPath) throws IOException {
+		List<String> lines = Lists.newArrayList();
+		lines.add(SETTINGS_LINE + SEPARATOR + settings);
+
+		for (Map.Entry<String, RenderManifestEntry> entry : entries.entrySet()) {
+			RenderManifestEntry manifestEntry = entry.getValue();
+
+			StringBuilder line = new StringBuilder(FILE_LINE);
+			line.append(SEPARATOR).append(entry.getKey());
+			line.append(SEPARATOR).append(manifestEntry.getHash());
+			line.append(SEPARATOR).append(manifestEntry.getUrl().orElse(""));
+			for (String dependency : Sets.newTreeSet(manifestEntry.getDependencies())) {
+				line.append(SEPARATOR).append(dependency);
+			}
+
+			lines.add(line.toString());
+		}
+
+		// replace rather than overwrite, in case the file is linked to a published manifest
+		Files.deleteIfExists(manifestPath);
+		Files.write(manifestPath, lines, StandardCharsets.UTF_8);
+	}
+
+	public static class RenderManifestEntry {
+		private final String hash;
+		private final Optional<String> url;
+		private final Set<String> dependencies;
+
+		public RenderManifestEntry(String hash, Optional<String> url, Set<String> dependencies) {
+			this.hash = hash;
+			this.url = url;
+			this.dependencies = ImmutableSet.copyOf(dependencies);
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		public Optional<String> getUrl() {
+			return url;
+		}
+
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package uk.nhs.fhir.render;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import uk.nhs.fhir.data.valueset.FhirValueSetComposeInclude;
+import uk.nhs.fhir.data.wrap.WrappedConceptMap;
+import uk.nhs.fhir.data.wrap.WrappedResource;
+import uk.nhs.fhir.data.wrap.WrappedValueSet;
+import uk.nhs.fhir.util.FhirFileRegistry;
+
+/**
+ * A subset of the registered files to render, chosen by resource URL or by a glob matched against file paths (relative
+ * to the input directory) or file names. Resources whose pages embed a selected resource are selected too - i.e. ValueSets
+ * which display a selected ConceptMap or the concepts of a selected CodeSystem. Embedding is followed transitively, so
+ * anything embedding a resource selected this way is also selected.
+ */
+class RenderSelection {
+	private static final Logger LOG = LoggerFactory.getLogger(RenderSelection.class);
+
+	private final Set<File> selectedFiles;
+
+	private RenderSelection(Set<File> selectedFiles) {
+		this.selectedFiles = ImmutableSet.copyOf(selectedFiles);
+	}
+
+	static RenderSelection select(Set<String> urlsOrGlobs, Path inputDirectory, FhirFileRegistry fhirFileRegistry, RegistryIndex registryIndex) {
+		Map<File, Optional<String>> urls = Maps.newLinkedHashMap();
+		Map<File, Set<String>> embeddedUrls = Maps.newHashMap();
+
+		for (Map.Entry<File, WrappedResource<?>> e : fhirFileRegistry) {
+			urls.put(e.getKey(), e.getValue().getUrl());
+
+			if (e.getValue() instanceof WrappedValueSet) {
+				embeddedUrls.put(e.getKey(), embeddedUrls((WrappedValueSet)e.getValue(), registryIndex));
+			}
+		}
+
+		return select(urlsOrGlobs, inputDirectory, urls, embeddedUrls);
+	}
+
+	/**
+	 * @param urls the URL of each registered file
+	 * @param embeddedUrls the URLs of the resources displayed in the pages of each file, where there are any
+	 */
+	static RenderSelection select(Set<String> urlsOrGlobs, Path inputDirectory, Map<File, Optional<String>> urls, Map<File, Set<String>> embeddedUrls) {
+		Set<String> selectorUrls = Sets.newHashSet();
+		List<PathMatcher> globs = Lists.newArrayList();
+		for (String urlOrGlob : urlsOrGlobs) {
+			String trimmed = urlOrGlob.trim();
+			if (trimmed.contains("://")) {
+				selectorUrls.add(trimmed);
+			} else {
+				globs.add(FileSystems.getDefault().getPathMatcher("glob:" + trimmed));
+			}
+		}
+
+		Set<File> selectedFiles = Sets.newHashSet();
+		Set<String> selectedUrls = Sets.newHashSet();
+
+		for (Map.Entry<File, Optional<String>> e : urls.entrySet()) {
+			File file = e.getKey();
+			Optional<String> url = e.getValue();
+
+			if ((url.isPresent() && selectorUrls.contains(url.get()))
+			  || matchesAny(globs, inputDirectory, file)) {
+				selectedFiles.add(file);
+				url.ifPresent(selectedUrls::add);
+			}
+		}
+
+		// repeat until nothing more is selected, since a newly selected resource may itself be embedded
+		boolean selectedMore = true;
+		while (selectedMore) {
+			selectedMore = false;
+
+			for (Map.Entry<File, Set<String>> e : embeddedUrls.entrySet()) {
+				File file = e.getKey();
+				if (!selectedFiles.contains(file)
+				  && !Collections.disjoint(e.getValue(), selectedUrls)) {
+					selectedFiles.add(file);
+					urls.getOrDefault(file, Optional.empty()).ifPresent(selectedUrls::add);
+					selectedMore = true;
+				}
+			}
+		}
+
+		if (selectedFiles.isEmpty()) {
+			LOG.warn("No resources matched " + urlsOrGlobs);
+		} else {
+			LOG.info("Rendering " + selectedFiles.size() + " selected resources");
+		}
+
+		return new RenderSelection(selectedFiles);
+	}
+
+	private static boolean matchesAny(List<PathMatcher> globs, Path inputDirectory, File file) {
+		Path absolutePath = file.toPath().toAbsolutePath();
+		Path relativePath = inputDirectory.toAbsolutePath().relativize(absolutePath);
+		Path fileName = absolutePath.getFileName();
+
+		for (PathMatcher glob : globs) {
+			if (glob.matches(relativePath)
+			  || glob.matches(fileName)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static Set<String> embeddedUrls(WrappedValueSet valueSet, RegistryIndex registryIndex) {
+		Set<String> embeddedUrls = Sets.newHashSet();
+
+		for (WrappedConceptMap conceptMap : registryIndex.getConceptMaps(valueSet)) {
+			conceptMap.getUrl().ifPresent(embeddedUrls::add);
+		}
+
+		for (FhirValueSetComposeInclude include : valueSet.getCompose().getIncludes()) {
+			if (include.getSystem() != null) {
+				embeddedUrls.add(include.getSystem());
+			}
+		}
+
+		return embeddedUrls;
+	}
+
+	boolean contains(File file) {
+		return selectedFiles.contains(file);
+	}
+}
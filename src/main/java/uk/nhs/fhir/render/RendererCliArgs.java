@@ -4,19 +4,61 @@ import java.nio.file.Path;
 import java.util.Optional;
 import java.util.Set;
 
+import uk.nhs.fhir.render.format.NarrativeProfile;
+
 public class RendererCliArgs {
 	private final Path inputDir;
 	private final Path outputDir;
 	private final Optional<String> newBaseUrl;
 	private final Optional<Set<String>> allowedMissingExtensionPrefixes;
 	private final Optional<Set<String>> localDomains;
+	private final Optional<Integer> threads;
+	private final boolean incremental;
+	private final Optional<Set<String>> only;
+	private final boolean spliceNarrative;
+	private final boolean stagedPublish;
+	private final boolean cssTreeLines;
+	private final Optional<Integer> conceptPageSize;
+	private final boolean lazyTrees;
+	private final boolean sharedStylesheet;
+	private final boolean minify;
+	private final boolean shortClassNames;
+	private final NarrativeProfile narrativeProfile;
+	private final Optional<String> pagesBaseUrl;
 	
 	public RendererCliArgs(Path inputDir, Path outputDir, Optional<String> newBaseUrl, Optional<Set<String>> allowedMissingExtensionPrefixes, Optional<Set<String>> localDomains) {
-		this.inputDir = inputDir;
-		this.outputDir = outputDir;
-		this.newBaseUrl = newBaseUrl;
-		this.allowedMissingExtensionPrefixes = allowedMissingExtensionPrefixes;
-		this.localDomains = localDomains;
+		this(builder(inputDir, outputDir)
+			.newBaseUrl(newBaseUrl)
+			.allowedMissingExtensionPrefixes(allowedMissingExtensionPrefixes)
+			.localDomains(localDomains));
+	}
+	
+	private RendererCliArgs(Builder builder) {
+		this.inputDir = builder.inputDir;
+		this.outputDir = builder.outputDir;
+		this.newBaseUrl = builder.newBaseUrl;
+		this.allowedMissingExtensionPrefixes = builder.allowedMissingExtensionPrefixes;
+		this.localDomains = builder.localDomains;
+		this.threads = builder.threads;
+		this.incremental = builder.incremental;
+		this.only = builder.only;
+		this.spliceNarrative = builder.spliceNarrative;
+		this.stagedPublish = builder.stagedPublish;
+		this.cssTreeLines = builder.cssTreeLines;
+		this.conceptPageSize = builder.conceptPageSize;
+		this.lazyTrees = builder.lazyTrees;
+		this.sharedStylesheet = builder.sharedStylesheet;
+		this.minify = builder.minify;
+		this.shortClassNames = builder.shortClassNames;
+		this.narrativeProfile = builder.narrativeProfile;
+		this.pagesBaseUrl = builder.pagesBaseUrl;
+	}
+	
+	/**
+	 * Options which aren't set keep their defaults (unset, or off for flags, and the full narrative)
+	 */
+	public static Builder builder(Path inputDir, Path outputDir) {
+		return new Builder(inputDir, outputDir);
 	}
 
 	public Path getInputDir() {
@@ -38,4 +80,166 @@ public class RendererCliArgs {
 	public Optional<Set<String>> getLocalDomains() {
 		return localDomains;
 	}
+	
+	public Optional<Integer> getThreads() {
+		return threads;
+	}
+	
+	public boolean isIncremental() {
+		return incremental;
+	}
+	
+	public Optional<Set<String>> getOnly() {
+		return only;
+	}
+	
+	public boolean isSpliceNarrative() {
+		return spliceNarrative;
+	}
+	
+	public boolean isStagedPublish() {
+		return stagedPublish;
+	}
+	
+	public boolean isCssTreeLines() {
+		return cssTreeLines;
+	}
+	
+	public Optional<Integer> getConceptPageSize() {
+		return conceptPageSize;
+	}
+	
+	public boolean isLazyTrees() {
+		return lazyTrees;
+	}
+	
+	public boolean isSharedStylesheet() {
+		return sharedStylesheet;
+	}
+	
+	public boolean isMinify() {
+		return minify;
+	}
+	
+	public boolean isShortClassNames() {
+		return shortClassNames;
+	}
+	
+	public NarrativeProfile getNarrativeProfile() {
+		return narrativeProfile;
+	}
+	
+	public Optional<String> getPagesBaseUrl() {
+		return pagesBaseUrl;
+	}
+	
+	public static class Builder {
+		private final Path inputDir;
+		private final Path outputDir;
+		private Optional<String> newBaseUrl = Optional.empty();
+		private Optional<Set<String>> allowedMissingExtensionPrefixes = Optional.empty();
+		private Optional<Set<String>> localDomains = Optional.empty();
+		private Optional<Integer> threads = Optional.empty();
+		private boolean incremental = false;
+		private Optional<Set<String>> only = Optional.empty();
+		private boolean spliceNarrative = false;
+		private boolean stagedPublish = false;
+		private boolean cssTreeLines = false;
+		private Optional<Integer> conceptPageSize = Optional.empty();
+		private boolean lazyTrees = false;
+		private boolean sharedStylesheet = false;
+		private boolean minify = false;
+		private boolean shortClassNames = false;
+		private NarrativeProfile narrativeProfile = NarrativeProfile.FULL;
+		private Optional<String> pagesBaseUrl = Optional.empty();
+		
+		private Builder(Path inputDir, Path outputDir) {
+			this.inputDir = inputDir;
+			this.outputDir = outputDir;
+		}
+		
+		public Builder newBaseUrl(Optional<String> newBaseUrl) {
+			this.newBaseUrl = newBaseUrl;
+			return this;
+		}
+		
+		public Builder allowedMissingExtensionPrefixes(Optional<Set<String>> allowedMissingExtensionPrefixes) {
+			this.allowedMissingExtensionPrefixes = allowedMissingExtensionPrefixes;
+			return this;
+		}
+		
+		public Builder localDomains(Optional<Set<String>> localDomains) {
+			this.localDomains = localDomains;
+			return this;
+		}
+		
+		public Builder threads(Optional<Integer> threads) {
+			this.threads = threads;
+			return this;
+		}
+		
+		public Builder incremental(boolean incremental) {
+			this.incremental = incremental;
+			return this;
+		}
+		
+		public Builder only(Optional<Set<String>> only) {
+			this.only = only;
+			return this;
+		}
+		
+		public Builder spliceNarrative(boolean spliceNarrative) {
+			this.spliceNarrative = spliceNarrative;
+			return this;
+		}
+		
+		public Builder stagedPublish(boolean stagedPublish) {
+			this.stagedPublish = stagedPublish;
+			return this;
+		}
+		
+		public Builder cssTreeLines(boolean cssTreeLines) {
+			this.cssTreeLines = cssTreeLines;
+			return this;
+		}
+		
+		public Builder conceptPageSize(Optional<Integer> conceptPageSize) {
+			this.conceptPageSize = conceptPageSize;
+			return this;
+		}
+		
+		public Builder lazyTrees(boolean lazyTrees) {
+			this.lazyTrees = lazyTrees;
+			return this;
+		}
+		
+		public Builder sharedStylesheet(boolean sharedStylesheet) {
+			this.sharedStylesheet = sharedStylesheet;
+			return this;
+		}
+		
+		public Builder minify(boolean minify) {
+			this.minify = minify;
+			return this;
+		}
+		
+		public Builder shortClassNames(boolean shortClassNames) {
+			this.shortClassNames = shortClassNames;
+			return this;
+		}
+		
+		public Builder narrativeProfile(NarrativeProfile narrativeProfile) {
+			this.narrativeProfile = narrativeProfile;
+			return this;
+		}
+		
+		public Builder pagesBaseUrl(Optional<String> pagesBaseUrl) {
+			this.pagesBaseUrl = pagesBaseUrl;
+			return this;
+		}
+		
+		public RendererCliArgs build() {
+			return new RendererCliArgs(this);
+		}
+	}
 }
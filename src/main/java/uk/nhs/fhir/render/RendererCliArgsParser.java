@@ -3,6 +3,7 @@ package uk.nhs.fhir.render;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -18,6 +19,8 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
 
+import uk.nhs.fhir.render.format.NarrativeProfile;
+
 public class RendererCliArgsParser {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(RendererCliArgsParser.class);
@@ -30,6 +33,33 @@ public class RendererCliArgsParser {
 		"missing-ext-prefix", "p");
 	public static final CliStringSetArg ARG_LOCAL_DOMAINS = new CliStringSetArg("localdomain", 
 		"Local domains (for resources hosted on this FHIR server)", "local-domains", "l");
+	public static final CliIntArg ARG_THREADS = new CliIntArg("threads", 
+		"Number of worker threads used to render resources (default 1)", "threads", "t");
+	public static final CliFlagArg ARG_INCREMENTAL = new CliFlagArg("incremental", 
+		"Only re-render resources which have changed (or depend on changed resources) since the last run into the output directory", "incremental", "i");
+	public static final CliStringSetArg ARG_ONLY = new CliStringSetArg("only", 
+		"Only render resources with these URLs or whose file paths match these globs (plus any resources which embed them)", "only", "o");
+	public static final CliFlagArg ARG_SPLICE_NARRATIVE = new CliFlagArg("splice-narrative", 
+		"Write each augmented resource by copying the input XML and replacing only its text (and url, if a new base URL is set), instead of re-encoding it", "splice-narrative", "s");
+	public static final CliFlagArg ARG_STAGED_PUBLISH = new CliFlagArg("staged-publish", 
+		"Render into a staging directory beside the output directory and swap it in once complete, instead of copying from a temp directory. The output directory becomes a symlink to the latest staging directory (so the filesystem must support symlinks), and the previous one is kept until the next run", "staged-publish", "a");
+	public static final CliFlagArg ARG_CSS_TREE_LINES = new CliFlagArg("css-tree-lines", 
+		"Draw the lines in tree tables with CSS gradients instead of embedded PNG backgrounds", "css-tree-lines", "c");
+	public static final CliIntArg ARG_CONCEPT_PAGE_SIZE = new CliIntArg("concepts-per-page", 
+		"Split CodeSystem and ValueSet concept tables with more than this many concepts into numbered pages, linked from an index", "concepts-per-page", "n");
+	public static final CliFlagArg ARG_LAZY_TREES = new CliFlagArg("lazy-trees", 
+		"Write snapshot and differential trees as a shell which loads the rest of the rows from a JSON file as subtrees are expanded", "lazy-trees", "z");
+	public static final CliFlagArg ARG_SHARED_STYLESHEET = new CliFlagArg("shared-stylesheet", 
+		"Link rendered pages to a single shared CSS file instead of writing their styles inline (narratives keep inline styles)", "shared-stylesheet", "e");
+	public static final CliFlagArg ARG_MINIFY = new CliFlagArg("minify", 
+		"Write pages and narratives without indentation or line breaks, with whitespace collapsed and CSS minified", "minify", "m");
+	public static final CliFlagArg ARG_SHORT_CLASS_NAMES = new CliFlagArg("short-class-names", 
+		"With --minify, replace the renderer's CSS class names with short generated names", "short-class-names", "k");
+	public static final CliEnumArg<NarrativeProfile> ARG_NARRATIVE = new CliEnumArg<>("narrative", 
+		"Views to embed in the narrative of each augmented resource: full (default), main (metadata and main table) or summary (metadata and links to the pages). Summary links are relative to the augmented resource, so only resolve within the output directory, unless --pages-url is set", 
+		"narrative", "r", NarrativeProfile.class);
+	public static final CliStringArg ARG_PAGES_URL = new CliStringArg("pagesurl", 
+		"Base URL at which the output directory is published, used to make absolute links from summary narratives to the rendered pages", "pages-url", "u");
 	
 	private final RendererArgSpec spec = getArgSpec();
 	
@@ -46,8 +76,41 @@ public class RendererCliArgsParser {
         Optional<Set<String>> allowedMissingExtensionPrefixes = Optional.ofNullable(parsedArgs.get(ARG_MISSING_EXT));
         Optional<String> newBaseUrl = Optional.ofNullable(parsedArgs.get(ARG_NEW_PATH));
         Optional<Set<String>> localDomains = Optional.ofNullable(parsedArgs.get(ARG_LOCAL_DOMAINS));
+        Optional<Integer> threads = Optional.ofNullable(parsedArgs.get(ARG_THREADS));
+        boolean incremental = parsedArgs.isSet(ARG_INCREMENTAL);
+        Optional<Set<String>> only = Optional.ofNullable(parsedArgs.get(ARG_ONLY));
+        boolean spliceNarrative = parsedArgs.isSet(ARG_SPLICE_NARRATIVE);
+        boolean stagedPublish = parsedArgs.isSet(ARG_STAGED_PUBLISH);
+        boolean cssTreeLines = parsedArgs.isSet(ARG_CSS_TREE_LINES);
+        Optional<Integer> conceptPageSize = Optional.ofNullable(parsedArgs.get(ARG_CONCEPT_PAGE_SIZE));
+        boolean lazyTrees = parsedArgs.isSet(ARG_LAZY_TREES);
+        boolean sharedStylesheet = parsedArgs.isSet(ARG_SHARED_STYLESHEET);
+        boolean minify = parsedArgs.isSet(ARG_MINIFY);
+        boolean shortClassNames = parsedArgs.isSet(ARG_SHORT_CLASS_NAMES);
+        NarrativeProfile narrativeProfile = Optional.ofNullable(parsedArgs.get(ARG_NARRATIVE)).orElse(NarrativeProfile.FULL);
+        Optional<String> pagesBaseUrl = Optional.ofNullable(parsedArgs.get(ARG_PAGES_URL));
+        if (shortClassNames && !minify) {
+        	return error(ARG_SHORT_CLASS_NAMES.getLabel().get() + " can only be used with " + ARG_MINIFY.getLabel().get());
+        }
 		
-		return new RendererCliArgs(inputDir, outputDir, newBaseUrl, allowedMissingExtensionPrefixes, localDomains);
+		return RendererCliArgs.builder(inputDir, outputDir)
+			.newBaseUrl(newBaseUrl)
+			.allowedMissingExtensionPrefixes(allowedMissingExtensionPrefixes)
+			.localDomains(localDomains)
+			.threads(threads)
+			.incremental(incremental)
+			.only(only)
+			.spliceNarrative(spliceNarrative)
+			.stagedPublish(stagedPublish)
+			.cssTreeLines(cssTreeLines)
+			.conceptPageSize(conceptPageSize)
+			.lazyTrees(lazyTrees)
+			.sharedStylesheet(sharedStylesheet)
+			.minify(minify)
+			.shortClassNames(shortClassNames)
+			.narrativeProfile(narrativeProfile)
+			.pagesBaseUrl(pagesBaseUrl)
+			.build();
 	}
 	
 	private RendererArgSpec getArgSpec() {
@@ -59,6 +122,19 @@ public class RendererCliArgsParser {
 				.addArg(ARG_NEW_PATH)
 				.addArg(ARG_MISSING_EXT)
 				.addArg(ARG_LOCAL_DOMAINS)
+				.addArg(ARG_THREADS)
+				.addArg(ARG_INCREMENTAL)
+				.addArg(ARG_ONLY)
+				.addArg(ARG_SPLICE_NARRATIVE)
+				.addArg(ARG_STAGED_PUBLISH)
+				.addArg(ARG_CSS_TREE_LINES)
+				.addArg(ARG_CONCEPT_PAGE_SIZE)
+				.addArg(ARG_LAZY_TREES)
+				.addArg(ARG_SHARED_STYLESHEET)
+				.addArg(ARG_MINIFY)
+				.addArg(ARG_SHORT_CLASS_NAMES)
+				.addArg(ARG_NARRATIVE)
+				.addArg(ARG_PAGES_URL)
 				.build();
 	}
 
@@ -190,7 +266,9 @@ class RendererArgSpec {
 				usage.append(optionalArg.getLabel().get());
 			}
 			
-			usage.append(" ").append(optionalArg.example());
+			if (optionalArg.takesValue()) {
+				usage.append(" ").append(optionalArg.example());
+			}
 			usage.append("]");
 		}
 		
@@ -292,6 +370,11 @@ class RendererArgSpec {
 					throw new ArgParsingFailed("Unrecognised label " + arg);
 				}
 				
+				if (!labelSpec.takesValue()) {
+					parsedArgs.put(labelSpec, Boolean.TRUE.toString());
+					continue;
+				}
+				
 				if (ix >= args.length) {
 					throw new ArgParsingFailed("Expected a value for label " + arg + " but there was no more input");
 				}
@@ -308,6 +391,11 @@ class RendererArgSpec {
 					throw new ArgParsingFailed("Unrecognised flag " + arg);
 				}
 				
+				if (!flagSpec.takesValue()) {
+					parsedArgs.put(flagSpec, Boolean.TRUE.toString());
+					continue;
+				}
+				
 				if (ix >= args.length) {
 					throw new ArgParsingFailed("Expected a value for flag " + arg + " but there was no more input");
 				}
@@ -358,12 +446,23 @@ class ParsedArgs {
 			return null;
 		}
 	}
+	
+	public boolean isSet(RendererCliArg<?> argSpec) {
+		return map.containsKey(argSpec);
+	}
 }
 
 abstract class RendererCliArg<T> {
 	
 	public abstract T convert(String arg);
 	public abstract String example();
+	
+	/**
+	 * Whether the flag or label is followed by a value. If not, its presence alone is recorded.
+	 */
+	public boolean takesValue() {
+		return true;
+	}
 
 	private final String id;
 	private final String desc;
@@ -497,4 +596,68 @@ class CliStringSetArg extends RendererCliArg<Set<String>> {
 	public String example() {
 		return "string1;string2;string3";
 	}
-}
\ No newline at end of file
+}
+
+class CliIntArg extends RendererCliArg<Integer> {
+	public CliIntArg(String id, String desc) {
+		super(id, desc);
+	}
+	public CliIntArg(String id, String desc, String label, String flag) throws InvalidConfiguration {
+		super(id, desc, Optional.ofNullable(label), Optional.ofNullable(flag));
+	}
+	
+	@Override
+	public Integer convert(String arg) {
+		int value = Integer.parseInt(arg.trim());
+		if (value < 1) {
+			throw new IllegalArgumentException("Expected a positive integer but found " + value);
+		}
+		return value;
+	}
+	
+	@Override
+	public String example() {
+		return "4";
+	}
+}
+class CliEnumArg<E extends Enum<E>> extends RendererCliArg<E> {
+	private final Class<E> enumClass;
+	
+	public CliEnumArg(String id, String desc, String label, String flag, Class<E> enumClass) throws InvalidConfiguration {
+		super(id, desc, Optional.ofNullable(label), Optional.ofNullable(flag));
+		this.enumClass = enumClass;
+	}
+	
+	@Override
+	public E convert(String arg) {
+		return Enum.valueOf(enumClass, arg.trim().toUpperCase(Locale.ROOT));
+	}
+	
+	@Override
+	public String example() {
+		return Stream.of(enumClass.getEnumConstants())
+			.map(value -> value.name().toLowerCase(Locale.ROOT))
+			.collect(Collectors.joining("|"));
+	}
+}
+
+class CliFlagArg extends RendererCliArg<Boolean> {
+	public CliFlagArg(String id, String desc, String label, String flag) throws InvalidConfiguration {
+		super(id, desc, Optional.ofNullable(label), Optional.ofNullable(flag));
+	}
+	
+	@Override
+	public Boolean convert(String arg) {
+		return Boolean.valueOf(arg);
+	}
+	
+	@Override
+	public String example() {
+		return "";
+	}
+	
+	@Override
+	public boolean takesValue() {
+		return false;
+	}
+}
@@ -1,12 +1,19 @@
 package uk.nhs.fhir.render;
 
 import java.io.File;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import uk.nhs.fhir.data.wrap.WrappedResource;
+import uk.nhs.fhir.render.html.HTMLOutputMode;
+import uk.nhs.fhir.render.html.style.SharedStylesheet;
+import uk.nhs.fhir.render.html.tree.TreeLineMode;
 import uk.nhs.fhir.util.FhirFileRegistry;
 
 public class RendererContext {
@@ -18,9 +25,21 @@ public class RendererContext {
 	}
 	
 	private Set<String> permittedMissingExtensionPrefixes = Sets.newHashSet();
+	private TreeLineMode treeLineMode = TreeLineMode.PNG;
+	private Optional<Integer> conceptPageSize = Optional.empty();
+	private boolean lazyTrees = false;
+	private Optional<SharedStylesheet> sharedStylesheet = Optional.empty();
+	private HTMLOutputMode htmlOutputMode = HTMLOutputMode.PRETTY;
 	private FhirFileRegistry fhirFileRegistry = new FhirFileRegistry();
+	private Optional<RegistryIndex> registryIndex = Optional.empty();
 	private File currentSource = null;
 	private Optional<WrappedResource<?>> currentParsedResource = null;
+	// the URL the resource currently being rendered is published with, if it differs from its input file (see --base-url)
+	private Optional<String> currentNewUrl = Optional.empty();
+	// URLs of registry resources read while rendering the current resource
+	private final Set<String> currentDependencies = Sets.newHashSet();
+	// values derived from resources while rendering the current resource (e.g. StructureDefinition trees), keyed by resource identity
+	private final Map<Object, Map<String, Object>> currentResourceCache = Maps.newIdentityHashMap();
 	
 	// TODO migrate local domains to here from FhirURL. Will require passing into FullFhirURL.toLinkString() though.
 	// private DomainTrimmer localDomains = DomainTrimmer.nhsDomains();
@@ -33,12 +52,49 @@ public class RendererContext {
 		this.fhirFileRegistry = fhirFileRegistry;
 	}
 	
+	/**
+	 * A new context with the same settings, registry and registry index as this one, but nothing from the resource currently
+	 * being rendered. Used to set up render threads, and to save settings which are restored with setSettings.
+	 */
+	public RendererContext copySettings() {
+		RendererContext copy = new RendererContext(fhirFileRegistry);
+		copy.setSettings(this);
+		return copy;
+	}
+	
+	/**
+	 * Adopts the settings, registry and registry index of another context. Anything from the resource currently being rendered
+	 * is unchanged.
+	 */
+	public void setSettings(RendererContext settings) {
+		this.permittedMissingExtensionPrefixes = settings.permittedMissingExtensionPrefixes;
+		this.treeLineMode = settings.treeLineMode;
+		this.conceptPageSize = settings.conceptPageSize;
+		this.lazyTrees = settings.lazyTrees;
+		this.sharedStylesheet = settings.sharedStylesheet;
+		this.htmlOutputMode = settings.htmlOutputMode;
+		this.fhirFileRegistry = settings.fhirFileRegistry;
+		this.registryIndex = settings.registryIndex;
+	}
+	
 	public FhirFileRegistry getFhirFileRegistry() {
 		return fhirFileRegistry;
 	}
 	
 	public void setFhirFileRegistry(FhirFileRegistry fhirFileRegistry) {
 		this.fhirFileRegistry = fhirFileRegistry;
+		this.registryIndex = Optional.empty();
+	}
+	
+	/**
+	 * Present once the index has been built over the current registry (see NewMain)
+	 */
+	public Optional<RegistryIndex> getRegistryIndex() {
+		return registryIndex;
+	}
+	
+	public void setRegistryIndex(RegistryIndex registryIndex) {
+		this.registryIndex = Optional.of(registryIndex);
 	}
 
 	public File getCurrentSource() {
@@ -57,9 +113,63 @@ public class RendererContext {
 		currentParsedResource = newParsedResource;
 	}
 
+	public void setCurrentNewUrl(Optional<String> newUrl) {
+		currentNewUrl = newUrl;
+	}
+	
+	/**
+	 * The URL to display for a resource. Registry resources keep the URLs from their input files, since other resources look
+	 * them up by those URLs, so the new URL of the resource currently being rendered is only applied here.
+	 */
+	public Optional<String> getDisplayedUrl(WrappedResource<?> resource) {
+		if (currentNewUrl.isPresent()
+		  && currentParsedResource != null
+		  && currentParsedResource.isPresent()
+		  && currentParsedResource.get() == resource) {
+			return currentNewUrl;
+		}
+		
+		return resource.getUrl();
+	}
+
 	public void clearCurrent() {
 		setCurrentParsedResource(Optional.empty());
 		setCurrentSource(null);
+		setCurrentNewUrl(Optional.empty());
+		currentDependencies.clear();
+		currentResourceCache.clear();
+	}
+	
+	/**
+	 * Returns the value cached against this resource and key while rendering the current resource, computing it if necessary.
+	 * Cached values are shared between formatters, so must not be modified once computed.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getCached(Object resource, String key, Supplier<T> compute) {
+		Map<String, Object> resourceCache = currentResourceCache.computeIfAbsent(resource, r -> Maps.newHashMap());
+		
+		// not computeIfAbsent, since computing one value may cache others
+		if (resourceCache.containsKey(key)) {
+			return (T)resourceCache.get(key);
+		}
+		
+		T value = compute.get();
+		resourceCache.put(key, value);
+		return value;
+	}
+	
+	/**
+	 * Record that the resource currently being rendered read the registry resource with this URL (whether or not it was found),
+	 * so that it can be re-rendered when that resource changes.
+	 */
+	public void recordDependency(String url) {
+		if (url != null) {
+			currentDependencies.add(url);
+		}
+	}
+	
+	public Set<String> getCurrentDependencies() {
+		return ImmutableSet.copyOf(currentDependencies);
 	}
 	
 	public Set<String> getPermittedMissingExtensionPrefixes() {
@@ -70,6 +180,58 @@ public class RendererContext {
 		this.permittedMissingExtensionPrefixes = permittedMissingExtensionPrefixes;
 	}
 
+	public TreeLineMode getTreeLineMode() {
+		return treeLineMode;
+	}
+	
+	public void setTreeLineMode(TreeLineMode treeLineMode) {
+		this.treeLineMode = treeLineMode;
+	}
+	
+	/**
+	 * If present, concept tables with more concepts than this are split into pages (see ConceptPages)
+	 */
+	public Optional<Integer> getConceptPageSize() {
+		return conceptPageSize;
+	}
+	
+	public void setConceptPageSize(Optional<Integer> conceptPageSize) {
+		this.conceptPageSize = conceptPageSize;
+	}
+	
+	/**
+	 * If true, the snapshot and differential pages load their rows from JSON files as subtrees are expanded (see LazyTreeTable)
+	 */
+	public boolean isLazyTrees() {
+		return lazyTrees;
+	}
+	
+	public void setLazyTrees(boolean lazyTrees) {
+		this.lazyTrees = lazyTrees;
+	}
+	
+	/**
+	 * If present, rendered pages link to this stylesheet instead of writing its styles inline. Narratives are unaffected.
+	 */
+	public Optional<SharedStylesheet> getSharedStylesheet() {
+		return sharedStylesheet;
+	}
+	
+	public void setSharedStylesheet(Optional<SharedStylesheet> sharedStylesheet) {
+		this.sharedStylesheet = sharedStylesheet;
+	}
+	
+	/**
+	 * How rendered pages and narratives are laid out
+	 */
+	public HTMLOutputMode getHTMLOutputMode() {
+		return htmlOutputMode;
+	}
+	
+	public void setHTMLOutputMode(HTMLOutputMode htmlOutputMode) {
+		this.htmlOutputMode = htmlOutputMode;
+	}
+
 	/*public DomainTrimmer getLocalDomains() {
 		return localDomains;
 	}*/
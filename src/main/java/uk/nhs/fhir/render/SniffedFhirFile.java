@@ -0,0 +1,149 @@
+package uk.nhs.fhir.render;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.collect.ImmutableSet;
+
+import uk.nhs.fhir.util.FhirVersion;
+
+/**
+ * What can be found out about an input file from a StAX scan of its root element and meta, without parsing it with HAPI.
+ * Used to send files which won't be rendered (i.e. examples) straight to the example copy, when their FHIR version is clear.
+ */
+class SniffedFhirFile {
+
+	static final String FHIR_NAMESPACE = "http://hl7.org/fhir";
+
+	// resource types handled by ResourceFormatterFactory
+	private static final Set<String> RENDERABLE_TYPES = ImmutableSet.of(
+		"CodeSystem", "ConceptMap", "MessageDefinition", "OperationDefinition", "StructureDefinition", "ValueSet");
+
+	private static final Set<String> DSTU2_ONLY_TYPES = ImmutableSet.of(
+		"Conformance", "DeviceUseRequest", "DiagnosticOrder", "ImagingObjectSelection", "MedicationOrder", "Order", "OrderResponse");
+	private static final Set<String> STU3_ONLY_TYPES = ImmutableSet.of(
+		"ActivityDefinition", "AdverseEvent", "CapabilityStatement", "CareTeam", "CodeSystem", "Consent", "DeviceRequest", "Endpoint",
+		"ImagingManifest", "Library", "Measure", "MeasureReport", "MedicationRequest", "MessageDefinition", "PlanDefinition",
+		"RequestGroup", "ResearchStudy", "ResearchSubject", "StructureMap", "Task");
+
+	private static final String DSTU2_PATH_SEGMENT = "/DSTU2/";
+	private static final String STU3_PATH_SEGMENT = "/STU3/";
+
+	private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	});
+
+	private final String resourceType;
+	private final Optional<FhirVersion> fhirVersion;
+
+	private SniffedFhirFile(String resourceType, Optional<FhirVersion> fhirVersion) {
+		this.resourceType = resourceType;
+		this.fhirVersion = fhirVersion;
+	}
+
+	/**
+	 * @return empty if the file couldn't be read or doesn't have a FHIR root element, so that the full parse can report it
+	 */
+	static Optional<SniffedFhirFile> sniff(File file) {
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+			try {
+				return sniff(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException | XMLStreamException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static Optional<SniffedFhirFile> sniff(XMLStreamReader reader) throws XMLStreamException {
+		if (reader.nextTag() != XMLStreamConstants.START_ELEMENT
+		  || !FHIR_NAMESPACE.equals(reader.getNamespaceURI())) {
+			return Optional.empty();
+		}
+
+		String resourceType = reader.getLocalName();
+		if (DSTU2_ONLY_TYPES.contains(resourceType)) {
+			return Optional.of(new SniffedFhirFile(resourceType, Optional.of(FhirVersion.DSTU2)));
+		} else if (STU3_ONLY_TYPES.contains(resourceType)) {
+			return Optional.of(new SniffedFhirFile(resourceType, Optional.of(FhirVersion.STU3)));
+		}
+
+		return Optional.of(new SniffedFhirFile(resourceType, versionFromMetaProfiles(reader)));
+	}
+
+	/**
+	 * Looks for a version in the path of a profile the resource claims conformance to, e.g. https://fhir.hl7.org.uk/STU3/StructureDefinition/...
+	 * Stops at the first element after meta.
+	 */
+	private static Optional<FhirVersion> versionFromMetaProfiles(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		boolean inMeta = false;
+
+		while (reader.hasNext()) {
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				String name = reader.getLocalName();
+
+				if (depth == 2) {
+					if (name.equals("meta")) {
+						inMeta = true;
+					} else if (!name.equals("id")) {
+						return Optional.empty();
+					}
+				} else if (depth == 3
+				  && inMeta
+				  && name.equals("profile")) {
+					String profile = reader.getAttributeValue(null, "value");
+					if (profile != null && profile.contains(STU3_PATH_SEGMENT)) {
+						return Optional.of(FhirVersion.STU3);
+					} else if (profile != null && profile.contains(DSTU2_PATH_SEGMENT)) {
+						return Optional.of(FhirVersion.DSTU2);
+					}
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+
+				if (depth == 1 && inMeta) {
+					return Optional.empty();
+				}
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	String getResourceType() {
+		return resourceType;
+	}
+
+	Optional<FhirVersion> getFhirVersion() {
+		return fhirVersion;
+	}
+
+	boolean isRenderable() {
+		return RENDERABLE_TYPES.contains(resourceType);
+	}
+
+	/**
+	 * @return the version to copy this file as an example, if it won't be rendered and its version is clear
+	 */
+	Optional<FhirVersion> getExampleVersion() {
+		return isRenderable() ? Optional.empty() : fhirVersion;
+	}
+}
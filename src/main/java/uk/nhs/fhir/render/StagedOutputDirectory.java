@@ -0,0 +1,177 @@
+package uk.nhs.fhir.render;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A directory beside the output directory (so on the same filesystem) which is rendered into, then swapped in for the output
+ * directory once complete, so that nothing reading the output ever sees a partly written tree.
+ *
+ * The output directory is published as a symlink to the latest staging directory, so that each swap is a single atomic
+ * rename of the link. An output directory which is a real directory is moved aside and replaced by the link the first time.
+ * That first swap is not atomic: between moving the directory aside and creating the link, there is no output directory.
+ *
+ * The directory which was published before is kept after a swap, since readers may still be walking it, and is deleted
+ * when the next staging directory is created.
+ *
+ * The staging directory starts with hard links to the files already in the output directory, so that files which aren't
+ * rendered this time (e.g. in an incremental render) are still published. Rendered files must therefore be written as new
+ * files rather than by truncating existing ones (see FhirFileUtils.newOutputStream).
+ */
+class StagedOutputDirectory {
+	private static final Logger LOG = LoggerFactory.getLogger(StagedOutputDirectory.class);
+
+	private static final String STAGING_INFIX = ".staged-";
+	private static final String PREVIOUS_INFIX = ".previous-";
+
+	private final Path outputDirectory;
+	private final Path stagingDirectory;
+
+	private StagedOutputDirectory(Path outputDirectory, Path stagingDirectory) {
+		this.outputDirectory = outputDirectory;
+		this.stagingDirectory = stagingDirectory;
+	}
+
+	static StagedOutputDirectory create(Path outputDirectory) throws IOException {
+		Path absoluteOutputDirectory = outputDirectory.toAbsolutePath();
+		Files.createDirectories(absoluteOutputDirectory.getParent());
+		deleteOldGenerations(absoluteOutputDirectory);
+		Path stagingDirectory = createStagingDirectory(absoluteOutputDirectory);
+
+		if (Files.isDirectory(absoluteOutputDirectory)) {
+			LOG.info("Staging output in " + stagingDirectory + ", starting from the contents of " + absoluteOutputDirectory);
+			linkContents(absoluteOutputDirectory.toRealPath(), stagingDirectory);
+		} else {
+			LOG.info("Staging output in " + stagingDirectory);
+		}
+
+		return new StagedOutputDirectory(absoluteOutputDirectory, stagingDirectory);
+	}
+
+	/**
+	 * Deletes the directories published before the current one (and any left by runs which didn't publish). The directory
+	 * the output currently links to is kept.
+	 */
+	private static void deleteOldGenerations(Path outputDirectory) throws IOException {
+		Optional<Path> currentTarget = 
+			Files.isSymbolicLink(outputDirectory) ? 
+				Optional.of(outputDirectory.resolveSibling(Files.readSymbolicLink(outputDirectory)).normalize()) : 
+				Optional.empty();
+		String stagingPrefix = outputDirectory.getFileName() + STAGING_INFIX;
+		String previousPrefix = outputDirectory.getFileName() + PREVIOUS_INFIX;
+		
+		List<Path> oldGenerations;
+		try (Stream<Path> siblings = Files.list(outputDirectory.getParent())) {
+			oldGenerations = siblings
+				.filter(sibling -> sibling.getFileName().toString().startsWith(stagingPrefix)
+				  || sibling.getFileName().toString().startsWith(previousPrefix))
+				.filter(sibling -> !currentTarget.equals(Optional.of(sibling.normalize())))
+				.collect(Collectors.toList());
+		}
+		
+		for (Path oldGeneration : oldGenerations) {
+			LOG.info("Deleting previously published output " + oldGeneration);
+			if (Files.isSymbolicLink(oldGeneration)) {
+				Files.delete(oldGeneration);
+			} else {
+				FileUtils.deleteDirectory(oldGeneration.toFile());
+			}
+		}
+	}
+
+	/**
+	 * Not a temp directory, since those are only accessible to the current user, and the published output needs the same
+	 * permissions as any other directory created here.
+	 */
+	private static Path createStagingDirectory(Path outputDirectory) throws IOException {
+		String prefix = outputDirectory.getFileName() + STAGING_INFIX + System.currentTimeMillis();
+		
+		for (int attempt = 0; ; attempt++) {
+			Path stagingDirectory = outputDirectory.resolveSibling(attempt == 0 ? prefix : prefix + "-" + attempt);
+			try {
+				return Files.createDirectory(stagingDirectory);
+			} catch (FileAlreadyExistsException e) {
+				// try the next name
+			}
+		}
+	}
+
+	private static void linkContents(Path from, Path to) throws IOException {
+		Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(to.resolve(from.relativize(dir)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Path link = to.resolve(from.relativize(file));
+				try {
+					Files.createLink(link, file);
+				} catch (UnsupportedOperationException | IOException e) {
+					Files.copy(file, link, StandardCopyOption.COPY_ATTRIBUTES);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	Path getStagingDirectory() {
+		return stagingDirectory;
+	}
+
+	/**
+	 * Swaps the staging directory in as the output directory.
+	 */
+	void publish() throws IOException {
+		if (Files.isSymbolicLink(outputDirectory)) {
+			Path newLink = outputDirectory.resolveSibling(stagingDirectory.getFileName() + ".link");
+			Files.createSymbolicLink(newLink, stagingDirectory.getFileName());
+			Files.move(newLink, outputDirectory, StandardCopyOption.ATOMIC_MOVE);
+			LOG.info("Published " + stagingDirectory + " to " + outputDirectory);
+		} else if (Files.exists(outputDirectory)) {
+			LOG.warn("Converting output directory " + outputDirectory + " to a link to " + stagingDirectory 
+				+ ". This first swap is not atomic - the output is briefly missing while the directory is replaced.");
+			
+			Path previousOutput = outputDirectory.resolveSibling(outputDirectory.getFileName() + PREVIOUS_INFIX + System.currentTimeMillis());
+			Files.move(outputDirectory, previousOutput, StandardCopyOption.ATOMIC_MOVE);
+			try {
+				Files.createSymbolicLink(outputDirectory, stagingDirectory.getFileName());
+			} catch (IOException | UnsupportedOperationException e) {
+				LOG.error("Failed to link " + outputDirectory + " to " + stagingDirectory + " - restoring the previous output directory");
+				try {
+					Files.move(previousOutput, outputDirectory, StandardCopyOption.ATOMIC_MOVE);
+				} catch (IOException restoreError) {
+					e.addSuppressed(restoreError);
+				}
+				throw e;
+			}
+			LOG.info("Published " + stagingDirectory + " to " + outputDirectory + ". Future swaps are atomic.");
+		} else {
+			Files.createSymbolicLink(outputDirectory, stagingDirectory.getFileName());
+			LOG.info("Published " + stagingDirectory + " to " + outputDirectory);
+		}
+	}
+
+	/**
+	 * Deletes the staging directory without publishing it, leaving the output directory unchanged.
+	 */
+	void discard() throws IOException {
+		FileUtils.deleteDirectory(stagingDirectory.toFile());
+	}
+}
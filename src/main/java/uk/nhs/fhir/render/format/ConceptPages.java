@@ -0,0 +1,140 @@
+package uk.nhs.fhir.render.format;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import uk.nhs.fhir.render.RendererContext;
+import uk.nhs.fhir.render.html.Elements;
+import uk.nhs.fhir.render.html.panel.FhirPanel;
+
+/**
+ * How a concepts table is split into numbered pages (concepts-1.html, concepts-2.html, ...) when a page size has been set
+ * (see RendererContext.getConceptPageSize) and there are too many concepts for one page. The page which would have held the
+ * whole table shows an index of the pages instead. The narrative always holds the whole table, since it is served without
+ * the pages.
+ */
+public class ConceptPages {
+	private static final Logger LOG = LoggerFactory.getLogger(ConceptPages.class);
+
+	private static final String PAGE_FILE_PREFIX = "concepts-";
+	private static final String PAGE_FILE_SUFFIX = ".html";
+	private static final Pattern PAGE_FILE_NAME = Pattern.compile(Pattern.quote(PAGE_FILE_PREFIX) + "[0-9]+" + Pattern.quote(PAGE_FILE_SUFFIX));
+
+	private final int conceptCount;
+	private final int pageSize;
+
+	private ConceptPages(int conceptCount, int pageSize) {
+		this.conceptCount = conceptCount;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Whether large concept tables are split into pages in this render
+	 */
+	public static boolean isEnabled() {
+		return RendererContext.forThread().getConceptPageSize().isPresent();
+	}
+
+	/**
+	 * @return empty if the concepts should all be displayed in one table
+	 */
+	public static Optional<ConceptPages> forConceptCount(int conceptCount) {
+		Optional<Integer> pageSize = RendererContext.forThread().getConceptPageSize();
+
+		if (pageSize.isPresent()
+		  && conceptCount > pageSize.get()) {
+			return Optional.of(new ConceptPages(conceptCount, pageSize.get()));
+		} else {
+			return Optional.empty();
+		}
+	}
+
+	public int getPageCount() {
+		return (conceptCount + pageSize - 1) / pageSize;
+	}
+
+	/**
+	 * Index of the first concept on the page (pages are numbered from 0)
+	 */
+	public int getPageStart(int page) {
+		return page * pageSize;
+	}
+
+	/**
+	 * Index after the last concept on the page
+	 */
+	public int getPageEnd(int page) {
+		return Math.min(conceptCount, (page + 1) * pageSize);
+	}
+
+	public boolean isLastPage(int page) {
+		return page == getPageCount() - 1;
+	}
+
+	public static String getFileName(int page) {
+		return PAGE_FILE_PREFIX + (page + 1) + PAGE_FILE_SUFFIX;
+	}
+
+	public static boolean isPageFileName(String fileName) {
+		return PAGE_FILE_NAME.matcher(fileName).matches();
+	}
+
+	/**
+	 * Deletes any pages in the directory other than those named, e.g. pages left by an earlier render of a larger table
+	 */
+	public static void deleteStalePages(Path directory, Set<String> currentFileNames) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				String fileName = file.getFileName().toString();
+				if (isPageFileName(fileName)
+				  && !currentFileNames.contains(fileName)) {
+					LOG.debug("Deleting stale concepts page " + file);
+					Files.delete(file);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Links to each page, labelled with the range of codes it holds.
+	 * @param codeAt the code of the concept at an index
+	 */
+	public Element makeIndexPanel(String heading, IntFunction<String> codeAt) {
+		List<Element> pageLinks = Lists.newArrayList();
+
+		for (int page = 0; page < getPageCount(); page++) {
+			int start = getPageStart(page);
+			int end = getPageEnd(page);
+			String label = "Concepts " + (start + 1) + " to " + end + " (" + codeAt.apply(start) + " to " + codeAt.apply(end - 1) + ")";
+
+			pageLinks.add(
+				Elements.withChild("li",
+					Elements.withAttributeAndText("a", new Attribute("href", getFileName(page)), label)));
+		}
+
+		Element index =
+			Elements.withChildren("div",
+				Elements.withText("div", conceptCount + " concepts, in " + getPageCount() + " pages"),
+				Elements.withChildren("ul", pageLinks));
+
+		return new FhirPanel(heading, index).makePanel();
+	}
+}
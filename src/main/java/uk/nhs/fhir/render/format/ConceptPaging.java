@@ -0,0 +1,49 @@
+package uk.nhs.fhir.render.format;
+
+import java.util.Optional;
+
+/**
+ * Which part of a paged concepts table (see ConceptPages) a formatter displays: the index of the pages, a single page, or
+ * the whole table unpaged (e.g. in the narrative, which is served without the pages). ResourceFormatter includes it in the
+ * key the formatter's section is cached under.
+ */
+public final class ConceptPaging {
+
+	public static final ConceptPaging PAGED = new ConceptPaging(true, Optional.empty());
+	public static final ConceptPaging UNPAGED = new ConceptPaging(false, Optional.empty());
+
+	private final boolean paged;
+	private final Optional<Integer> page;
+
+	private ConceptPaging(boolean paged, Optional<Integer> page) {
+		this.paged = paged;
+		this.page = page;
+	}
+
+	public static ConceptPaging of(boolean paged) {
+		return paged ? PAGED : UNPAGED;
+	}
+
+	public static ConceptPaging page(int page) {
+		return new ConceptPaging(true, Optional.of(page));
+	}
+
+	/**
+	 * If false, every concept is displayed in one table however many there are
+	 */
+	public boolean isPaged() {
+		return paged;
+	}
+
+	/**
+	 * If present, only this page of a paged table is displayed
+	 */
+	public Optional<Integer> getPage() {
+		return page;
+	}
+
+	String getCacheKeySuffix() {
+		// unpaged tables are the same as paged ones unless tables are split into pages in this render
+		return page.map(pageIndex -> ":" + pageIndex).orElse("") + (paged || !ConceptPages.isEnabled() ? "" : ":unpaged");
+	}
+}
@@ -7,6 +7,7 @@ import org.jdom2.Content;
 import com.google.common.collect.Lists;
 
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.CSSStyleSection;
 
 public class HTMLDocSection {
@@ -34,6 +35,10 @@ public class HTMLDocSection {
 		styles.addStyles(styleBlocks);
 	}
 	
+	public void addStyles(CSSStyleBundle styleBundle) {
+		styles.addBundle(styleBundle);
+	}
+	
 	public void addStyle(CSSStyleBlock style) {
 		styles.addBlock(style);
 	}
@@ -0,0 +1,73 @@
+package uk.nhs.fhir.render.format;
+
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import uk.nhs.fhir.data.wrap.WrappedResource;
+import uk.nhs.fhir.render.html.Elements;
+import uk.nhs.fhir.render.html.cell.LinkCell;
+import uk.nhs.fhir.render.html.panel.FhirPanel;
+import uk.nhs.fhir.render.html.style.FhirCSS;
+
+/**
+ * A narrative made up of some of the resource's views (see NarrativeProfile), optionally followed by a panel linking to
+ * the resource's rendered pages
+ */
+public class NarrativeFormatter<T extends WrappedResource<T>> extends ResourceFormatter<T> {
+
+	private static final String PAGE_FILE_EXTENSION = ".html";
+
+	private final List<ResourceFormatter<?>> viewFormatters;
+	private final List<String> linkedPages;
+
+	/**
+	 * @param linkedPages links to the pages, either absolute or relative to the augmented resource. Each is labelled with the
+	 * page's file name.
+	 */
+	public NarrativeFormatter(T wrappedResource, List<? extends ResourceFormatter<?>> viewFormatters, List<String> linkedPages) {
+		super(wrappedResource);
+		this.viewFormatters = ImmutableList.copyOf(viewFormatters);
+		this.linkedPages = ImmutableList.copyOf(linkedPages);
+	}
+
+	@Override
+	public HTMLDocSection makeSectionHTML() throws ParserConfigurationException {
+		HTMLDocSection section = new HTMLDocSection();
+
+		for (ResourceFormatter<?> viewFormatter : viewFormatters) {
+			section.addSection(viewFormatter.getSectionHTML());
+		}
+
+		if (!linkedPages.isEmpty()) {
+			section.addStyles(FhirPanel.getStyles());
+			section.addStyles(LinkCell.getStyles());
+			section.addBodyElement(new FhirPanel("Views", makePageLinks()).makePanel());
+		}
+
+		return section;
+	}
+
+	private Element makePageLinks() {
+		List<Element> items = Lists.newArrayList();
+		for (String page : linkedPages) {
+			String fileName = page.substring(page.lastIndexOf('/') + 1);
+			String label = fileName.endsWith(PAGE_FILE_EXTENSION) ? fileName.substring(0, fileName.length() - PAGE_FILE_EXTENSION.length()) : fileName;
+			items.add(
+				Elements.withChild("li",
+					Elements.withAttributesAndText("a",
+						Lists.newArrayList(
+							new Attribute("class", FhirCSS.LINK),
+							new Attribute("href", page)),
+						label)));
+		}
+
+		return Elements.withChildren("ul", items);
+	}
+}
@@ -0,0 +1,15 @@
+package uk.nhs.fhir.render.format;
+
+/**
+ * Which views are embedded in the narrative (text element) of each augmented resource. Every view is still rendered
+ * as a page, whichever profile is used.
+ */
+public enum NarrativeProfile {
+	// the resource's default view (e.g. metadata, snapshot, differential, details and bindings for a StructureDefinition)
+	FULL,
+	// the metadata and the resource's main table (e.g. the snapshot of a StructureDefinition)
+	MAIN,
+	// the metadata, followed by links to the rendered pages (only valid within the output directory, unless the URL it
+	// is published at is set)
+	SUMMARY;
+}
@@ -1,20 +1,69 @@
 package uk.nhs.fhir.render.format;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
 import javax.xml.parsers.ParserConfigurationException;
 
 import uk.nhs.fhir.data.wrap.WrappedResource;
+import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.util.FhirVersion;
 
 public abstract class ResourceFormatter<T extends WrappedResource<T>> {
 	
+	private static final String SECTION_CACHE_KEY_PREFIX = "section:";
+	
 	protected final T wrappedResource;
+	protected final ConceptPaging conceptPaging;
 	
 	public ResourceFormatter(T wrappedResource) {
+		this(wrappedResource, ConceptPaging.PAGED);
+	}
+	
+	/**
+	 * @param conceptPaging how any concepts tables in the section are split into pages
+	 */
+	public ResourceFormatter(T wrappedResource, ConceptPaging conceptPaging) {
 		this.wrappedResource = wrappedResource;
+		this.conceptPaging = conceptPaging;
 	}
 	
 	public abstract HTMLDocSection makeSectionHTML() throws ParserConfigurationException;
 	
+	/**
+	 * Returns this formatter's section for the resource, building it at most once while rendering the current resource.
+	 * The section is shared with any other views which include it (e.g. full pages and the narrative), so must not be modified.
+	 * @return null if the formatter has nothing to display
+	 */
+	public HTMLDocSection getSectionHTML() {
+		String key = SECTION_CACHE_KEY_PREFIX + getSectionCacheKey() + conceptPaging.getCacheKeySuffix();
+		
+		Optional<HTMLDocSection> section = RendererContext.forThread().getCached(wrappedResource, key, () -> {
+			try {
+				return Optional.ofNullable(makeSectionHTML());
+			} catch (ParserConfigurationException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		
+		return section.orElse(null);
+	}
+	
+	/**
+	 * Distinguishes this formatter's section from those of other formatters of the same resource
+	 */
+	protected String getSectionCacheKey() {
+		return getClass().getName();
+	}
+	
+	/**
+	 * Files to write into the same directory as this formatter's page, keyed by file name (e.g. data which the page loads)
+	 */
+	public Map<String, String> getSupportingFiles() {
+		return Collections.emptyMap();
+	}
+	
 	protected FhirVersion getResourceVersion() {
 		return wrappedResource.getImplicitFhirVersion();
 	}
@@ -2,7 +2,9 @@ package uk.nhs.fhir.render.format;
 
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 
 import uk.nhs.fhir.data.wrap.WrappedCodeSystem;
@@ -13,6 +15,7 @@ import uk.nhs.fhir.data.wrap.WrappedResource;
 import uk.nhs.fhir.data.wrap.WrappedStructureDefinition;
 import uk.nhs.fhir.data.wrap.WrappedValueSet;
 import uk.nhs.fhir.render.FormattedOutputSpec;
+import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.RendererFileLocator;
 import uk.nhs.fhir.render.format.codesys.CodeSystemConceptTableFormatter;
 import uk.nhs.fhir.render.format.codesys.CodeSystemFiltersTableFormatter;
@@ -26,23 +29,60 @@ import uk.nhs.fhir.render.format.message.MessageDefinitionFormatter;
 import uk.nhs.fhir.render.format.message.MessageDefinitionMetadataFormatter;
 import uk.nhs.fhir.render.format.opdef.OperationDefinitionFormatter;
 import uk.nhs.fhir.render.format.structdef.StructureDefinitionBindingsTableFormatter;
+import uk.nhs.fhir.render.format.structdef.StructureDefinitionDetails;
 import uk.nhs.fhir.render.format.structdef.StructureDefinitionDetailsFormatter;
 import uk.nhs.fhir.render.format.structdef.StructureDefinitionDifferentialFormatter;
 import uk.nhs.fhir.render.format.structdef.StructureDefinitionFormatter;
 import uk.nhs.fhir.render.format.structdef.StructureDefinitionMetadataFormatter;
 import uk.nhs.fhir.render.format.structdef.StructureDefinitionSnapshotFormatter;
+import uk.nhs.fhir.render.format.valueset.ConceptsValueSetTableFormatter;
 import uk.nhs.fhir.render.format.valueset.ValueSetFormatter;
+import uk.nhs.fhir.render.format.valueset.ValueSetMetadataFormatter;
+import uk.nhs.fhir.render.format.valueset.ValueSetTableFormatter;
+import uk.nhs.fhir.render.html.cell.LinkCell;
+import uk.nhs.fhir.render.html.cell.ResourceFlagsCell;
+import uk.nhs.fhir.render.html.cell.ValueWithInfoCell;
+import uk.nhs.fhir.render.html.panel.FhirPanel;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
+import uk.nhs.fhir.render.html.table.Table;
+import uk.nhs.fhir.render.html.tree.FhirTreeTable;
+import uk.nhs.fhir.render.html.tree.LazyTreeTable;
 
 public class ResourceFormatterFactory {
+	
+	/**
+	 * The style bundles used by the formatters' pages, for a shared stylesheet (see SharedStylesheet)
+	 */
+	public static List<CSSStyleBundle> getSharedStyles() {
+		return Lists.newArrayList(
+			TableFormatter.getStyles(),
+			FhirPanel.getStyles(),
+			Table.getStyles(),
+			LinkCell.getStyles(),
+			ValueWithInfoCell.getStyles(),
+			ResourceFlagsCell.getStyles(),
+			FhirTreeTable.getStyles(),
+			LazyTreeTable.getStyles(),
+			StructureDefinitionDetails.getStyles(),
+			StructureDefinitionDetailsFormatter.getStyles());
+	}
+	
 	public ResourceFormatter<?> defaultFormatter(WrappedResource<?> wrappedResource) {
+		return defaultFormatter(wrappedResource, true);
+	}
+	
+	/**
+	 * @param pagedConcepts false to display every concept in one table, even if the concepts are split into pages
+	 */
+	public ResourceFormatter<?> defaultFormatter(WrappedResource<?> wrappedResource, boolean pagedConcepts) {
 		if (wrappedResource instanceof WrappedConceptMap) {
 			return new ConceptMapFormatter((WrappedConceptMap) wrappedResource);
 		} else if (wrappedResource instanceof WrappedCodeSystem) {
-			return new CodeSystemFormatter((WrappedCodeSystem) wrappedResource);
+			return new CodeSystemFormatter((WrappedCodeSystem) wrappedResource, pagedConcepts);
 		} else if (wrappedResource instanceof WrappedOperationDefinition) {
 			return new OperationDefinitionFormatter((WrappedOperationDefinition) wrappedResource);
 		} else if (wrappedResource instanceof WrappedValueSet) {
-			return new ValueSetFormatter((WrappedValueSet) wrappedResource);
+			return new ValueSetFormatter((WrappedValueSet) wrappedResource, pagedConcepts);
 		} else if (wrappedResource instanceof WrappedStructureDefinition) {
 			return new StructureDefinitionFormatter((WrappedStructureDefinition) wrappedResource);
 		} else if (wrappedResource instanceof WrappedMessageDefinition) { 
@@ -52,6 +92,98 @@ public class ResourceFormatterFactory {
 		}
 	}
 	
+	/**
+	 * The formatter for the narrative embedded in the augmented resource. The narrative is served without the rendered pages,
+	 * so concept tables are never split into pages.
+	 * 
+	 * @param pagesBaseUrl the URL at which the output directory is published. If present, a summary narrative links to the
+	 * rendered pages by absolute URL. Otherwise the links are relative to the augmented resource, so only resolve within the
+	 * output directory.
+	 */
+	public ResourceFormatter<?> narrativeFormatter(WrappedResource<?> wrappedResource, NarrativeProfile profile, RendererFileLocator rendererFileLocator, 
+			Optional<String> pagesBaseUrl) {
+		switch (profile) {
+			case FULL:
+				return defaultFormatter(wrappedResource, false);
+			case MAIN:
+				return mainViewFormatter(wrappedResource);
+			case SUMMARY:
+				return summaryFormatter(wrappedResource, summaryPageLinks(wrappedResource, rendererFileLocator, pagesBaseUrl));
+			default:
+				throw new IllegalStateException("Unexpected narrative profile " + profile);
+		}
+	}
+	
+	/**
+	 * Links to each of the resource's pages, except the numbered concept pages, which are linked from the concepts index.
+	 */
+	private List<String> summaryPageLinks(WrappedResource<?> wrappedResource, RendererFileLocator rendererFileLocator, Optional<String> pagesBaseUrl) {
+		String inputPath = RendererContext.forThread().getCurrentSource().getPath();
+		Path linkedFrom = pagesBaseUrl.isPresent() ? 
+			rendererFileLocator.getRenderingTempOutputDirectory() : 
+			rendererFileLocator.getRenderingTempOutputDirectory(wrappedResource);
+		String prefix = pagesBaseUrl.map(baseUrl -> baseUrl.endsWith("/") ? baseUrl : baseUrl + "/").orElse("");
+		
+		List<String> links = Lists.newArrayList();
+		for (FormattedOutputSpec<?> spec : allFormatterSpecs(wrappedResource, rendererFileLocator)) {
+			if (!ConceptPages.isPageFileName(spec.getFilename())) {
+				Path relativePath = linkedFrom.relativize(spec.getOutputPath(inputPath));
+				links.add(prefix + Joiner.on('/').join(relativePath));
+			}
+		}
+		return links;
+	}
+	
+	/**
+	 * The metadata and the resource's main table
+	 */
+	private ResourceFormatter<?> mainViewFormatter(WrappedResource<?> wrappedResource) {
+		if (wrappedResource instanceof WrappedCodeSystem) {
+			WrappedCodeSystem wrappedCodeSystem = (WrappedCodeSystem)wrappedResource;
+			return new NarrativeFormatter<>(wrappedCodeSystem, 
+				Lists.newArrayList(new CodeSystemMetadataFormatter(wrappedCodeSystem), new CodeSystemConceptTableFormatter(wrappedCodeSystem, false)), 
+				Lists.newArrayList());
+		} else if (wrappedResource instanceof WrappedValueSet) {
+			WrappedValueSet wrappedValueSet = (WrappedValueSet)wrappedResource;
+			return new NarrativeFormatter<>(wrappedValueSet, 
+				Lists.newArrayList(new ValueSetMetadataFormatter(wrappedValueSet), new ValueSetTableFormatter(wrappedValueSet, false)), 
+				Lists.newArrayList());
+		} else if (wrappedResource instanceof WrappedStructureDefinition) {
+			WrappedStructureDefinition wrappedStructureDefinition = (WrappedStructureDefinition)wrappedResource;
+			return new NarrativeFormatter<>(wrappedStructureDefinition, 
+				Lists.newArrayList(new StructureDefinitionMetadataFormatter(wrappedStructureDefinition), new StructureDefinitionSnapshotFormatter(wrappedStructureDefinition)), 
+				Lists.newArrayList());
+		} else {
+			// the default views of the other resource types only hold their metadata and main table
+			return defaultFormatter(wrappedResource);
+		}
+	}
+	
+	/**
+	 * The metadata, followed by links to the pages
+	 */
+	private ResourceFormatter<?> summaryFormatter(WrappedResource<?> wrappedResource, List<String> pages) {
+		if (wrappedResource instanceof WrappedConceptMap) {
+			WrappedConceptMap wrappedConceptMap = (WrappedConceptMap)wrappedResource;
+			return new NarrativeFormatter<>(wrappedConceptMap, Lists.newArrayList(new ConceptMapMetadataFormatter(wrappedConceptMap)), pages);
+		} else if (wrappedResource instanceof WrappedCodeSystem) {
+			WrappedCodeSystem wrappedCodeSystem = (WrappedCodeSystem)wrappedResource;
+			return new NarrativeFormatter<>(wrappedCodeSystem, Lists.newArrayList(new CodeSystemMetadataFormatter(wrappedCodeSystem)), pages);
+		} else if (wrappedResource instanceof WrappedValueSet) {
+			WrappedValueSet wrappedValueSet = (WrappedValueSet)wrappedResource;
+			return new NarrativeFormatter<>(wrappedValueSet, Lists.newArrayList(new ValueSetMetadataFormatter(wrappedValueSet)), pages);
+		} else if (wrappedResource instanceof WrappedStructureDefinition) {
+			WrappedStructureDefinition wrappedStructureDefinition = (WrappedStructureDefinition)wrappedResource;
+			return new NarrativeFormatter<>(wrappedStructureDefinition, Lists.newArrayList(new StructureDefinitionMetadataFormatter(wrappedStructureDefinition)), pages);
+		} else if (wrappedResource instanceof WrappedMessageDefinition) {
+			WrappedMessageDefinition wrappedMessageDefinition = (WrappedMessageDefinition)wrappedResource;
+			return new NarrativeFormatter<>(wrappedMessageDefinition, Lists.newArrayList(new MessageDefinitionMetadataFormatter(wrappedMessageDefinition)), pages);
+		} else {
+			// OperationDefinitions are rendered as a single page, with no separate metadata
+			return defaultFormatter(wrappedResource);
+		}
+	}
+	
 	public List<FormattedOutputSpec<?>> allFormatterSpecs(WrappedResource<?> wrappedResource, RendererFileLocator rendererFileLocator) {
 		List<FormattedOutputSpec<?>> formatSpecs = Lists.newArrayList();
 		
@@ -67,6 +199,12 @@ public class ResourceFormatterFactory {
 			formatSpecs.add(new FormattedOutputSpec<>(new CodeSystemMetadataFormatter(wrappedCodeSystem), outputDirectory, "metadata.html"));
 			formatSpecs.add(new FormattedOutputSpec<>(new CodeSystemFiltersTableFormatter(wrappedCodeSystem), outputDirectory, "filters.html"));
 			formatSpecs.add(new FormattedOutputSpec<>(new CodeSystemConceptTableFormatter(wrappedCodeSystem), outputDirectory, "concepts.html"));
+			Optional<ConceptPages> conceptPages = CodeSystemConceptTableFormatter.getPages(wrappedCodeSystem);
+			if (conceptPages.isPresent()) {
+				for (int page = 0; page < conceptPages.get().getPageCount(); page++) {
+					formatSpecs.add(new FormattedOutputSpec<>(new CodeSystemConceptTableFormatter(wrappedCodeSystem, page), outputDirectory, ConceptPages.getFileName(page)));
+				}
+			}
 			formatSpecs.add(new FormattedOutputSpec<>(new CodeSystemFormatter(wrappedCodeSystem), outputDirectory, "codesystem-full.html"));
 		} else if (wrappedResource instanceof WrappedOperationDefinition) {
 			WrappedOperationDefinition wrappedOperationDefinition = (WrappedOperationDefinition)wrappedResource;
@@ -74,16 +212,26 @@ public class ResourceFormatterFactory {
 		} else if (wrappedResource instanceof WrappedValueSet) {
 			WrappedValueSet wrappedValueSet = (WrappedValueSet)wrappedResource;
 			formatSpecs.add(new FormattedOutputSpec<>(new ValueSetFormatter(wrappedValueSet), outputDirectory, "render.html"));
+			if (ValueSetTableFormatter.listsConcepts(wrappedValueSet)) {
+				Optional<ConceptPages> conceptPages = ConceptsValueSetTableFormatter.getPages(wrappedValueSet);
+				if (conceptPages.isPresent()) {
+					for (int page = 0; page < conceptPages.get().getPageCount(); page++) {
+						formatSpecs.add(new FormattedOutputSpec<>(new ConceptsValueSetTableFormatter(wrappedValueSet, page), outputDirectory, ConceptPages.getFileName(page)));
+					}
+				}
+			}
 		} else if (wrappedResource instanceof WrappedStructureDefinition) {
 			WrappedStructureDefinition wrappedStructureDefinition = (WrappedStructureDefinition)wrappedResource;
+			// full.html and the narrative always hold the whole of each tree
+			boolean lazyTrees = RendererContext.forThread().isLazyTrees();
 			formatSpecs.add(new FormattedOutputSpec<>(new StructureDefinitionMetadataFormatter(wrappedStructureDefinition), outputDirectory, "metadata.html"));
-			formatSpecs.add(new FormattedOutputSpec<>(new StructureDefinitionSnapshotFormatter(wrappedStructureDefinition), outputDirectory, "snapshot.html"));
+			formatSpecs.add(new FormattedOutputSpec<>(new StructureDefinitionSnapshotFormatter(wrappedStructureDefinition, lazyTrees), outputDirectory, "snapshot.html"));
 			formatSpecs.add(new FormattedOutputSpec<>(new StructureDefinitionBindingsTableFormatter(wrappedStructureDefinition), outputDirectory, "bindings.html"));
 			formatSpecs.add(new FormattedOutputSpec<>(new StructureDefinitionDetailsFormatter(wrappedStructureDefinition), outputDirectory, "details.html"));
 			formatSpecs.add(new FormattedOutputSpec<>(new StructureDefinitionFormatter(wrappedStructureDefinition), outputDirectory, "full.html"));
 			
 			if (!wrappedStructureDefinition.isExtension()) {
-				formatSpecs.add(new FormattedOutputSpec<>(new StructureDefinitionDifferentialFormatter(wrappedStructureDefinition), outputDirectory, "differential.html"));
+				formatSpecs.add(new FormattedOutputSpec<>(new StructureDefinitionDifferentialFormatter(wrappedStructureDefinition, lazyTrees), outputDirectory, "differential.html"));
 			}
 		} else if (wrappedResource instanceof WrappedMessageDefinition) {
 			WrappedMessageDefinition wrappedMessageDefinition = (WrappedMessageDefinition)wrappedResource;
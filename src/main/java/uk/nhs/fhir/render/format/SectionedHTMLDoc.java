@@ -1,9 +1,12 @@
 package uk.nhs.fhir.render.format;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.jdom2.Attribute;
 import org.jdom2.Content;
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -11,7 +14,10 @@ import org.jdom2.Element;
 import com.google.common.collect.Lists;
 
 import uk.nhs.fhir.render.html.Elements;
+import uk.nhs.fhir.render.html.HTMLOutputMode;
+import uk.nhs.fhir.render.html.StreamingHTMLOutputter;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.SharedStylesheet;
 
 public class SectionedHTMLDoc extends HTMLDocSection {
 	
@@ -22,22 +28,70 @@ public class SectionedHTMLDoc extends HTMLDocSection {
 	}
 	
 	public Document getHTML() throws ParserConfigurationException {
+		return getHTML(HTMLOutputMode.PRETTY);
+	}
+	
+	public Document getHTML(HTMLOutputMode mode) throws ParserConfigurationException {
 		return new Document(Elements.withChildren("html",
 			Lists.newArrayList(
-				Elements.withChildren("head", cloneHeadElementsWithStyle()),
+				Elements.withChildren("head", cloneHeadElementsWithStyle(mode)),
 				Elements.withChildren("body", cloneBodyElements()))));
 	}
 
-	public Element createStyleSection() {
-		List<String> formattedStyleBlocks = Lists.newArrayList();
-		styles.getBlocks().forEach((CSSStyleBlock block) -> formattedStyleBlocks.add(block.toFormattedString()));
-		Element styleSection = Elements.withText("style", "\n" + String.join("\n", formattedStyleBlocks) + "\n");
+	/**
+	 * Streams the page to the writer without building a Document, laid out for the output mode. Matches
+	 * HTMLUtil.docToString(getHTML(mode), mode, false).
+	 */
+	public void writeHTML(Writer out, HTMLOutputMode mode) throws IOException {
+		List<Content> head = Lists.newArrayList(headElements);
+		head.add(createStyleSection(mode));
+		
+		new StreamingHTMLOutputter(mode).writeHTML(out, head, bodyElements);
+	}
+
+	/**
+	 * Streams the page linking to the shared stylesheet, with only the styles which it doesn't hold written inline. If any
+	 * of those target a shared selector, linking would change their order, so all the styles are written inline instead.
+	 * @param stylesheetHref the URL of the shared stylesheet, relative to the page
+	 */
+	public void writeHTML(Writer out, HTMLOutputMode mode, SharedStylesheet sharedStylesheet, String stylesheetHref) throws IOException {
+		List<CSSStyleBlock> pageStyleBlocks = Lists.newArrayList();
+		for (CSSStyleBlock block : styles.getBlocks()) {
+			if (sharedStylesheet.contains(block)) {
+				continue;
+			} else if (sharedStylesheet.sharesSelectorWith(block)) {
+				writeHTML(out, mode);
+				return;
+			} else {
+				pageStyleBlocks.add(block);
+			}
+		}
+		
+		List<Content> head = Lists.newArrayList(headElements);
+		head.add(Elements.withAttributes("link", 
+			Lists.newArrayList(
+				new Attribute("rel", "stylesheet"),
+				new Attribute("href", stylesheetHref))));
+		
+		if (!pageStyleBlocks.isEmpty()) {
+			head.add(createStyleSection(pageStyleBlocks, mode));
+		}
+		
+		new StreamingHTMLOutputter(mode).writeHTML(out, head, bodyElements);
+	}
+
+	public Element createStyleSection(HTMLOutputMode mode) {
+		return createStyleSection(styles.getBlocks(), mode);
+	}
+
+	private static Element createStyleSection(List<CSSStyleBlock> blocks, HTMLOutputMode mode) {
+		Element styleSection = Elements.withText("style", mode.formatStyles(blocks));
 		return styleSection;
 	}
 	
-	public List<Content> cloneHeadElementsWithStyle() {
+	public List<Content> cloneHeadElementsWithStyle(HTMLOutputMode mode) {
 		List<Content> head = cloneHeadElements();
-		head.add(createStyleSection());
+		head.add(createStyleSection(mode));
 		return head;
 	}
 
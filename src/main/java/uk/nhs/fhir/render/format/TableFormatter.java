@@ -19,6 +19,7 @@ import uk.nhs.fhir.data.wrap.WrappedResource;
 import uk.nhs.fhir.render.html.Elements;
 import uk.nhs.fhir.render.html.style.CSSRule;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.CSSTag;
 import uk.nhs.fhir.render.html.style.FhirCSS;
 import uk.nhs.fhir.render.html.style.FhirColour;
@@ -31,6 +32,10 @@ public abstract class TableFormatter<T extends WrappedResource<T>> extends Resou
 	public TableFormatter(T wrappedResource) {
 		super(wrappedResource);
 	}
+	
+	public TableFormatter(T wrappedResource, ConceptPaging conceptPaging) {
+		super(wrappedResource, conceptPaging);
+	}
 
 	protected static final String VERSION_DATE = "Version date";
 	
@@ -159,7 +164,13 @@ public abstract class TableFormatter<T extends WrappedResource<T>> extends Resou
 		}
 	}
 	
-	public static List<CSSStyleBlock> getStyles() {
+	private static final CSSStyleBundle STYLES = CSSStyleBundle.of(makeStyles());
+	
+	public static CSSStyleBundle getStyles() {
+		return STYLES;
+	}
+	
+	private static List<CSSStyleBlock> makeStyles() {
 		List<CSSStyleBlock> styles = Lists.newArrayList();
 
 		styles.add(
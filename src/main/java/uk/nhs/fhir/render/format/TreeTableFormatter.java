@@ -3,16 +3,10 @@ package uk.nhs.fhir.render.format;
 import java.util.List;
 import java.util.Set;
 
-import org.jdom2.Attribute;
-import org.jdom2.Element;
-import org.jdom2.Namespace;
-import org.jdom2.filter.Filters;
-
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 
 import uk.nhs.fhir.data.wrap.WrappedResource;
-import uk.nhs.fhir.render.html.Elements;
+import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.html.cell.LinkCell;
 import uk.nhs.fhir.render.html.cell.ResourceFlagsCell;
 import uk.nhs.fhir.render.html.cell.ValueWithInfoCell;
@@ -21,49 +15,52 @@ import uk.nhs.fhir.render.html.style.CSSRule;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
 import uk.nhs.fhir.render.html.style.CSSTag;
 import uk.nhs.fhir.render.html.table.Table;
+import uk.nhs.fhir.render.html.tree.FhirTreeTable;
+import uk.nhs.fhir.render.html.tree.LazyTreeTable;
+import uk.nhs.fhir.render.html.tree.TableCSSLineGenerator;
 import uk.nhs.fhir.render.html.tree.TablePNGGenerator;
+import uk.nhs.fhir.render.html.tree.TreeLineMode;
 
 public abstract class TreeTableFormatter<T extends WrappedResource<T>> extends ResourceFormatter<T> {
 
+	private static final String LAZY_TREE_CACHE_KEY_PREFIX = "lazy-tree:";
+	
 	public TreeTableFormatter(T wrappedResource) {
 		super(wrappedResource);
 	}
+	
+	/**
+	 * Built once per view of the resource, and shared between the page shell and the JSON file holding its rows.
+	 */
+	protected LazyTreeTable getLazyTreeTable(String view, FhirTreeTable<?, ?> treeTable) {
+		return RendererContext.forThread().getCached(wrappedResource, LAZY_TREE_CACHE_KEY_PREFIX + view, treeTable::asLazyTable);
+	}
 
 	TablePNGGenerator backgrounds = new TablePNGGenerator();
+	TableCSSLineGenerator cssLines = new TableCSSLineGenerator();
 	
 	protected void addStyles(HTMLDocSection section) {
-		Table.getStyles().forEach(section::addStyle);
-		FhirPanel.getStyles().forEach(section::addStyle);
-		ValueWithInfoCell.getStyles().forEach(section::addStyle);
-		LinkCell.getStyles().forEach(section::addStyle);
-		ResourceFlagsCell.getStyles().forEach(section::addStyle);
+		section.addStyles(Table.getStyles());
+		section.addStyles(FhirPanel.getStyles());
+		section.addStyles(ValueWithInfoCell.getStyles());
+		section.addStyles(LinkCell.getStyles());
+		section.addStyles(ResourceFlagsCell.getStyles());
 	}
 
-	protected Set<String> getTableBackgroundStyleKeys(Element table) {
-		Set<String> tableBackgroundStyles = Sets.newHashSet();
-		
-		for (Element dataCell : table.getDescendants(Filters.element("td", Namespace.getNamespace(Elements.HTML_NS_URL)))) {
-			Attribute classAttribute = dataCell.getAttribute("class");
-			
-			if (classAttribute != null) {
-				Set<String> classes = Sets.newHashSet(classAttribute.getValue().split(" "));
-				for (String classProperty : classes) {
-					if (classProperty.startsWith("fhirtreebg-")) {
-						tableBackgroundStyles.add(classProperty);
-					}
-				}
-			}
-		}
-		
-		return tableBackgroundStyles;
-	}
-	
-	protected List<CSSStyleBlock> getTableBackgroundStyles(Element table) {
+	/**
+	 * @param backgroundKeys the row background classes used by a tree table (see FhirTreeTable.getBackgroundCSSClasses())
+	 */
+	protected List<CSSStyleBlock> getTableBackgroundStyles(Set<String> backgroundKeys) {
 		
 		List<CSSStyleBlock> backgroundStyles = Lists.newArrayList();
+		boolean cssLineMode = RendererContext.forThread().getTreeLineMode().equals(TreeLineMode.CSS);
 		
-		Set<String> backgroundKeys = getTableBackgroundStyleKeys(table);
 		for (String key : backgroundKeys) {
+			if (cssLineMode) {
+				backgroundStyles.add(new CSSStyleBlock(Lists.newArrayList("." + key), cssLines.getRules(key)));
+				continue;
+			}
+			
 			String backgroundBase64 = backgrounds.getBase64(key);
 			backgroundStyles.add(
 				new CSSStyleBlock(Lists.newArrayList("." + key),
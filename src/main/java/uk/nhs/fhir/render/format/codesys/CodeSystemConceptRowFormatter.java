@@ -1,18 +1,16 @@
 package uk.nhs.fhir.render.format.codesys;
 
-import java.util.List;
-
 import uk.nhs.fhir.render.format.TableFormatter;
 import uk.nhs.fhir.render.html.cell.SimpleTextCell;
 import uk.nhs.fhir.render.html.table.TableRow;
 
 public class CodeSystemConceptRowFormatter {
-	private final CodeSystemConceptsTableDataProvider tableData;
-	private final List<CodeSystemConceptTableRowData> rows;
+	private final boolean includeDescriptionColumn;
+	private final boolean includeDefinitionColumn;
 	
-	public CodeSystemConceptRowFormatter(CodeSystemConceptsTableDataProvider tableData, List<CodeSystemConceptTableRowData> rows) {
-		this.tableData = tableData;
-		this.rows = rows;
+	public CodeSystemConceptRowFormatter(CodeSystemConceptsTableDataProvider tableData) {
+		this.includeDescriptionColumn = tableData.includeDescriptionColumn();
+		this.includeDefinitionColumn = tableData.includeDefinitionColumn();
 	}
 
 	public TableRow formatRow(CodeSystemConceptTableRowData data) {
@@ -20,11 +18,11 @@ public class CodeSystemConceptRowFormatter {
 		
 		row.addCell(new SimpleTextCell(data.getCode(), true));
 		
-		if (tableData.includeDescriptionColumn(rows)) {
+		if (includeDescriptionColumn) {
 			row.addCell(new SimpleTextCell(data.getDescription().orElse(TableFormatter.BLANK), true));
 		}
 		
-		if (tableData.includeDefinitionColumn(rows)) {
+		if (includeDefinitionColumn) {
 			row.addCell(new SimpleTextCell(data.getDefinition().orElse(TableFormatter.BLANK), true));
 		}
 		
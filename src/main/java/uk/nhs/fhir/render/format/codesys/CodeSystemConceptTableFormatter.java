@@ -1,6 +1,7 @@
 package uk.nhs.fhir.render.format.codesys;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.jdom2.Element;
 
@@ -8,6 +9,8 @@ import com.google.common.collect.Lists;
 
 import uk.nhs.fhir.data.codesystem.FhirCodeSystemConcepts;
 import uk.nhs.fhir.data.wrap.WrappedCodeSystem;
+import uk.nhs.fhir.render.format.ConceptPages;
+import uk.nhs.fhir.render.format.ConceptPaging;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.TableFormatter;
 import uk.nhs.fhir.render.html.Elements;
@@ -18,7 +21,29 @@ import uk.nhs.fhir.render.html.table.TableRow;
 public class CodeSystemConceptTableFormatter extends TableFormatter<WrappedCodeSystem> {
 
 	public CodeSystemConceptTableFormatter(WrappedCodeSystem wrappedResource) {
-		super(wrappedResource);
+		this(wrappedResource, true);
+	}
+
+	/**
+	 * @param paged false to display every concept in one table, even if there are too many for one page (e.g. in the
+	 * narrative, which is served without the pages)
+	 */
+	public CodeSystemConceptTableFormatter(WrappedCodeSystem wrappedResource, boolean paged) {
+		super(wrappedResource, ConceptPaging.of(paged));
+	}
+
+	/**
+	 * Formats a single page of the concepts table (see getPages)
+	 */
+	public CodeSystemConceptTableFormatter(WrappedCodeSystem wrappedResource, int page) {
+		super(wrappedResource, ConceptPaging.page(page));
+	}
+
+	/**
+	 * @return the pages to split the concepts table into, if it is too large for one page
+	 */
+	public static Optional<ConceptPages> getPages(WrappedCodeSystem codeSystem) {
+		return ConceptPages.forConceptCount(codeSystem.getCodeSystemConcepts().getConcepts().size());
 	}
 
 	@Override
@@ -40,20 +65,34 @@ public class CodeSystemConceptTableFormatter extends TableFormatter<WrappedCodeS
 	}
 
 	private Element buildConceptsPanel(FhirCodeSystemConcepts codeSystemConcepts) {
-		CodeSystemConceptsTableDataProvider tableData = new CodeSystemConceptsTableDataProvider(codeSystemConcepts);
-		
+		CodeSystemConceptsTableDataProvider tableData = CodeSystemConceptsTableDataProvider.forCodeSystem(wrappedResource);
 		List<CodeSystemConceptTableRowData> rows = tableData.getRows();
-		CodeSystemConceptRowFormatter rowFormatter = new CodeSystemConceptRowFormatter(tableData, rows);
 		
-		List<TableRow> tableRows = Lists.newArrayList();
+		String heading = "Codes defined by " + wrappedResource.getUserFriendlyName();
+		
+		Optional<ConceptPages> pages = conceptPaging.isPaged() ? getPages(wrappedResource) : Optional.empty();
+		if (pages.isPresent()) {
+			if (conceptPaging.getPage().isPresent()) {
+				int pageIndex = conceptPaging.getPage().get();
+				rows = rows.subList(pages.get().getPageStart(pageIndex), pages.get().getPageEnd(pageIndex));
+				heading += " (page " + (pageIndex + 1) + " of " + pages.get().getPageCount() + ")";
+			} else {
+				List<CodeSystemConceptTableRowData> allRows = rows;
+				return pages.get().makeIndexPanel(heading, index -> allRows.get(index).getCode());
+			}
+		}
+
+		CodeSystemConceptRowFormatter rowFormatter = new CodeSystemConceptRowFormatter(tableData);
+
+		List<TableRow> tableRows = Lists.newArrayListWithCapacity(rows.size());
 		rows.forEach(data -> tableRows.add(rowFormatter.formatRow(data)));
 		
-		Element wrapperDiv = 
-			Elements.withChildren("div", 
+		Element wrapperDiv =
+			Elements.withChildren("div",
 				Elements.withText("div", "System: " + codeSystemConcepts.getSystem()),
 				Elements.newElement("br"),
 				new Table(tableData.getColumns(), tableRows).makeTable());
-		return new FhirPanel("Codes defined by " + wrappedResource.getUserFriendlyName(), wrapperDiv).makePanel();
+		return new FhirPanel(heading, wrapperDiv).makePanel();
 	}
 
 	private void addStyles(HTMLDocSection section) {
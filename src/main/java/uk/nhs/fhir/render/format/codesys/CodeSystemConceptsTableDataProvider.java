@@ -1,5 +1,6 @@
 package uk.nhs.fhir.render.format.codesys;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -7,14 +8,47 @@ import com.google.common.collect.Lists;
 
 import uk.nhs.fhir.data.codesystem.FhirCodeSystemConcept;
 import uk.nhs.fhir.data.codesystem.FhirCodeSystemConcepts;
+import uk.nhs.fhir.data.wrap.WrappedCodeSystem;
+import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.html.table.TableTitle;
 
 public class CodeSystemConceptsTableDataProvider {
 
-	private final FhirCodeSystemConcepts codeSystemConcepts;
+	private static final String CACHE_KEY = "codesystem-concepts-table";
 	
+	private final List<CodeSystemConceptTableRowData> rows;
+	private final boolean hasDescription;
+	private final boolean hasDefinition;
+	
+	/**
+	 * Builds the rows and decides which columns are needed in a single pass over the concepts.
+	 */
 	public CodeSystemConceptsTableDataProvider(FhirCodeSystemConcepts codeSystemConcepts) {
-		this.codeSystemConcepts = codeSystemConcepts;
+		List<CodeSystemConceptTableRowData> rows = Lists.newArrayListWithCapacity(codeSystemConcepts.getConcepts().size());
+		boolean hasDescription = false;
+		boolean hasDefinition = false;
+		
+		for (FhirCodeSystemConcept concept : codeSystemConcepts.getConcepts()) {
+			String code = concept.getCode();
+			Optional<String> description = concept.getDescription();
+			Optional<String> definition = concept.getDefinition();
+
+			CodeSystemConceptTableRowData row = new CodeSystemConceptTableRowData(code, description, definition);
+			rows.add(row);
+			hasDescription |= row.hasDescription();
+			hasDefinition |= row.hasDefinition();
+		}
+		
+		this.rows = Collections.unmodifiableList(rows);
+		this.hasDescription = hasDescription;
+		this.hasDefinition = hasDefinition;
+	}
+	
+	/**
+	 * The table data for this CodeSystem, shared between all the views of it (e.g. the pages of a paged table) while it is rendered
+	 */
+	public static CodeSystemConceptsTableDataProvider forCodeSystem(WrappedCodeSystem codeSystem) {
+		return RendererContext.forThread().getCached(codeSystem, CACHE_KEY, () -> new CodeSystemConceptsTableDataProvider(codeSystem.getCodeSystemConcepts()));
 	}
 
 	public List<TableTitle> getColumns() {
@@ -22,17 +56,15 @@ public class CodeSystemConceptsTableDataProvider {
 		int codePercent = 100;
 		int descriptionPercent = 0;
 		int definitionPercent = 0;
-
-		List<CodeSystemConceptTableRowData> rows = getRows();
 		
-		if (includeDescriptionColumn(rows)) {
+		if (hasDescription) {
 			if (codePercent > 25) {
 				descriptionPercent = codePercent - 25;
 				codePercent = 25;
 			}
 		}
 		
-		if (includeDefinitionColumn(rows)) {
+		if (hasDefinition) {
 			if (codePercent > 25) {
 				definitionPercent = codePercent - 25;
 				codePercent = 25;
@@ -57,33 +89,18 @@ public class CodeSystemConceptsTableDataProvider {
 		return columns;
 	}
 
+	/**
+	 * @return the rows, which are shared so can't be modified
+	 */
 	public List<CodeSystemConceptTableRowData> getRows() {
-		List<CodeSystemConceptTableRowData> data = Lists.newArrayList();
-		
-		for (FhirCodeSystemConcept concept : codeSystemConcepts.getConcepts()) {
-			String code = concept.getCode();
-			Optional<String> description = concept.getDescription();
-			Optional<String> definition = concept.getDefinition();
-
-			data.add(new CodeSystemConceptTableRowData(code, description, definition));
-		}
-		
-		return data;
+		return rows;
 	}
 	
 	public boolean includeDescriptionColumn() {
-		return includeDescriptionColumn(getRows());
-	}
-	
-	public boolean includeDescriptionColumn(List<CodeSystemConceptTableRowData> rows) {
-		return rows.stream().anyMatch(row -> row.hasDescription());
+		return hasDescription;
 	}
 	
 	public boolean includeDefinitionColumn() {
-		return includeDefinitionColumn(getRows());
-	}
-	
-	public boolean includeDefinitionColumn(List<CodeSystemConceptTableRowData> rows) {
-		return rows.stream().anyMatch(row -> row.hasDefinition());
+		return hasDefinition;
 	}
 }
@@ -3,21 +3,29 @@ package uk.nhs.fhir.render.format.codesys;
 import javax.xml.parsers.ParserConfigurationException;
 
 import uk.nhs.fhir.data.wrap.WrappedCodeSystem;
+import uk.nhs.fhir.render.format.ConceptPaging;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.ResourceFormatter;
 
 public class CodeSystemFormatter extends ResourceFormatter<WrappedCodeSystem> {
 
     public CodeSystemFormatter(WrappedCodeSystem wrappedResource) {
-		super(wrappedResource);
+		this(wrappedResource, true);
+	}
+
+	/**
+	 * @param pagedConcepts false to display every concept in one table (see CodeSystemConceptTableFormatter)
+	 */
+	public CodeSystemFormatter(WrappedCodeSystem wrappedResource, boolean pagedConcepts) {
+		super(wrappedResource, ConceptPaging.of(pagedConcepts));
 	}
 
 	@Override
 	public HTMLDocSection makeSectionHTML() throws ParserConfigurationException {
 		
-		HTMLDocSection metadataPanel = new CodeSystemMetadataFormatter(wrappedResource).makeSectionHTML();
-		HTMLDocSection conceptsPanel = new CodeSystemConceptTableFormatter(wrappedResource).makeSectionHTML();
-		HTMLDocSection filterRowsPanel = new CodeSystemFiltersTableFormatter(wrappedResource).makeSectionHTML();
+		HTMLDocSection metadataPanel = new CodeSystemMetadataFormatter(wrappedResource).getSectionHTML();
+		HTMLDocSection conceptsPanel = new CodeSystemConceptTableFormatter(wrappedResource, conceptPaging.isPaged()).getSectionHTML();
+		HTMLDocSection filterRowsPanel = new CodeSystemFiltersTableFormatter(wrappedResource).getSectionHTML();
 		
 		HTMLDocSection codeSystemSection = new HTMLDocSection();
 		
@@ -15,6 +15,7 @@ import com.google.common.collect.Lists;
 import uk.nhs.fhir.data.codesystem.FhirIdentifier;
 import uk.nhs.fhir.data.structdef.FhirContacts;
 import uk.nhs.fhir.data.wrap.WrappedCodeSystem;
+import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.format.FhirContactRenderer;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.TableFormatter;
@@ -37,7 +38,7 @@ public class CodeSystemMetadataFormatter extends TableFormatter<WrappedCodeSyste
 		
 		Element metadataPanel = getMetadataTable(wrappedResource);
 		section.addBodyElement(metadataPanel);
-		getStyles().forEach(section::addStyle);
+		section.addStyles(getStyles());
 
 		section.addStyles(TableFormatter.getStyles());
 		section.addStyles(Table.getStyles());
@@ -48,7 +49,7 @@ public class CodeSystemMetadataFormatter extends TableFormatter<WrappedCodeSyste
 	}
 
 	private Element getMetadataTable(WrappedCodeSystem codeSystem) {
-		String url = codeSystem.getUrl().get();
+		String url = RendererContext.forThread().getDisplayedUrl(codeSystem).get();
 		String name = codeSystem.getName();
 		Optional<String> title = codeSystem.getTitle();
 		
@@ -14,8 +14,8 @@ public class ConceptMapFormatter extends ResourceFormatter<WrappedConceptMap> {
 
 	@Override
 	public HTMLDocSection makeSectionHTML() throws ParserConfigurationException {
-		HTMLDocSection metadataPanel = new ConceptMapMetadataFormatter(wrappedResource).makeSectionHTML();
-		HTMLDocSection conceptTable = new ConceptMapTableFormatter(wrappedResource).makeSectionHTML();
+		HTMLDocSection metadataPanel = new ConceptMapMetadataFormatter(wrappedResource).getSectionHTML();
+		HTMLDocSection conceptTable = new ConceptMapTableFormatter(wrappedResource).getSectionHTML();
 		
 		HTMLDocSection valueSetSection = new HTMLDocSection();
 		
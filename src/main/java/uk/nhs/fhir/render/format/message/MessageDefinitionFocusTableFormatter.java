@@ -117,9 +117,9 @@ public class MessageDefinitionFocusTableFormatter extends TableFormatter<Wrapped
 	}
 
 	public void addStyles(HTMLDocSection section) {
-	    Table.getStyles().forEach(section::addStyle);
-	    FhirPanel.getStyles().forEach(section::addStyle);
-	    LinkCell.getStyles().forEach(section::addStyle);
+	    section.addStyles(Table.getStyles());
+	    section.addStyles(FhirPanel.getStyles());
+	    section.addStyles(LinkCell.getStyles());
     }
 
 }
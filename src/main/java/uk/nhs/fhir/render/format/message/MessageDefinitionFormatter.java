@@ -14,8 +14,8 @@ public class MessageDefinitionFormatter extends ResourceFormatter<WrappedMessage
 
 	@Override
 	public HTMLDocSection makeSectionHTML() throws ParserConfigurationException {
-		HTMLDocSection metadataPanel = new MessageDefinitionMetadataFormatter(wrappedResource).makeSectionHTML();
-		HTMLDocSection focusPanel = new MessageDefinitionFocusTableFormatter(wrappedResource).makeSectionHTML();
+		HTMLDocSection metadataPanel = new MessageDefinitionMetadataFormatter(wrappedResource).getSectionHTML();
+		HTMLDocSection focusPanel = new MessageDefinitionFocusTableFormatter(wrappedResource).getSectionHTML();
 		
 		HTMLDocSection messageDefinitionSection = new HTMLDocSection();
 		
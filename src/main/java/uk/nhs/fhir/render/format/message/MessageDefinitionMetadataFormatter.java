@@ -13,6 +13,7 @@ import com.google.common.collect.Lists;
 
 import uk.nhs.fhir.data.codesystem.FhirIdentifier;
 import uk.nhs.fhir.data.wrap.WrappedMessageDefinition;
+import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.TableFormatter;
 import uk.nhs.fhir.render.html.Elements;
@@ -33,15 +34,15 @@ public class MessageDefinitionMetadataFormatter extends TableFormatter<WrappedMe
 		Element metadataPanel = getMetadataTable(wrappedResource);
 		section.addBodyElement(metadataPanel);
 		
-		getStyles().forEach(section::addStyle);
-		Table.getStyles().forEach(section::addStyle);
-		FhirPanel.getStyles().forEach(section::addStyle);
+		section.addStyles(getStyles());
+		section.addStyles(Table.getStyles());
+		section.addStyles(FhirPanel.getStyles());
 		
 		return section;
 	}
 	
 	private Element getMetadataTable(WrappedMessageDefinition messageDefinition) {
-		String url = messageDefinition.getUrl().get();
+		String url = RendererContext.forThread().getDisplayedUrl(messageDefinition).get();
 		Optional<String> title = messageDefinition.getTitle();
 		String name = title.orElse(messageDefinition.getName());
 		
@@ -66,9 +66,9 @@ public class OperationDefinitionFormatter extends ResourceFormatter<WrappedOpera
 	}
 
 	private void addStyles(HTMLDocSection section) {
-		Table.getStyles().forEach(section::addStyle);
-		FhirPanel.getStyles().forEach(section::addStyle);
-		ValueWithInfoCell.getStyles().forEach(section::addStyle);
-		LinkCell.getStyles().forEach(section::addStyle);
+		section.addStyles(Table.getStyles());
+		section.addStyles(FhirPanel.getStyles());
+		section.addStyles(ValueWithInfoCell.getStyles());
+		section.addStyles(LinkCell.getStyles());
 	}
 }
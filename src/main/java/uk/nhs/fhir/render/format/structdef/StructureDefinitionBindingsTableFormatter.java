@@ -2,8 +2,6 @@ package uk.nhs.fhir.render.format.structdef;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -11,7 +9,6 @@ import org.jdom2.Element;
 
 import uk.nhs.fhir.data.structdef.tree.SnapshotTreeNode;
 import uk.nhs.fhir.data.wrap.WrappedStructureDefinition;
-import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.TableFormatter;
 import uk.nhs.fhir.render.html.cell.LinkCell;
@@ -20,7 +17,6 @@ import uk.nhs.fhir.render.html.cell.ValueWithInfoCell;
 import uk.nhs.fhir.render.html.panel.FhirPanel;
 import uk.nhs.fhir.render.html.table.Table;
 import uk.nhs.fhir.render.html.table.TableRow;
-import uk.nhs.fhir.util.FhirFileRegistry;
 
 public class StructureDefinitionBindingsTableFormatter extends TableFormatter<WrappedStructureDefinition> {
 	
@@ -47,15 +43,11 @@ public class StructureDefinitionBindingsTableFormatter extends TableFormatter<Wr
 	}
 	
 	private Map<SnapshotTreeNode, List<SnapshotTreeNode>> getExtensionsWithBindings(WrappedStructureDefinition wrappedResource) {
-		FhirFileRegistry fileRegistry = RendererContext.forThread().getFhirFileRegistry();
-		Set<String> permittedMissingExtensionPrefixes = RendererContext.forThread().getPermittedMissingExtensionPrefixes();
-		return wrappedResource.getExtensionsWithBindings(fileRegistry, permittedMissingExtensionPrefixes);
+		return StructureDefinitionTrees.extensionsWithBindings(wrappedResource);
 	}
 
 	private List<SnapshotTreeNode> getNodesWithBindings(WrappedStructureDefinition wrappedResource) {
-		Set<String> permittedMissingExtensionPrefixes = RendererContext.forThread().getPermittedMissingExtensionPrefixes();
-		return StreamSupport.stream(wrappedResource
-        	.getSnapshotTree(Optional.of(RendererContext.forThread().getFhirFileRegistry()), permittedMissingExtensionPrefixes)
+		return StreamSupport.stream(StructureDefinitionTrees.unprocessedSnapshotTree(wrappedResource)
         	.nodes().spliterator(), false)
         	.filter(node -> 
         		!node.isRemovedByProfile()
@@ -77,11 +69,11 @@ public class StructureDefinitionBindingsTableFormatter extends TableFormatter<Wr
 	}
 
     public void addStyles(HTMLDocSection section) {
-        Table.getStyles().forEach(section::addStyle);
-        FhirPanel.getStyles().forEach(section::addStyle);
-        ValueWithInfoCell.getStyles().forEach(section::addStyle);
-        LinkCell.getStyles().forEach(section::addStyle);
-        ResourceFlagsCell.getStyles().forEach(section::addStyle);
-        StructureDefinitionMetadataFormatter.getStyles().forEach(section::addStyle);
+        section.addStyles(Table.getStyles());
+        section.addStyles(FhirPanel.getStyles());
+        section.addStyles(ValueWithInfoCell.getStyles());
+        section.addStyles(LinkCell.getStyles());
+        section.addStyles(ResourceFlagsCell.getStyles());
+        section.addStyles(StructureDefinitionMetadataFormatter.getStyles());
     }
 }
@@ -25,6 +25,7 @@ import uk.nhs.fhir.render.html.cell.LinkCell;
 import uk.nhs.fhir.render.html.cell.TableCell;
 import uk.nhs.fhir.render.html.style.CSSRule;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.CSSTag;
 import uk.nhs.fhir.render.html.style.FhirCSS;
 import uk.nhs.fhir.util.FhirURLConstants;
@@ -464,7 +465,13 @@ public class StructureDefinitionDetails {
 		}
 	}
 
-	public static List<CSSStyleBlock> getStyles() {
+	private static final CSSStyleBundle STYLES = CSSStyleBundle.of(makeStyles());
+	
+	public static CSSStyleBundle getStyles() {
+		return STYLES;
+	}
+	
+	private static List<CSSStyleBlock> makeStyles() {
 		List<CSSStyleBlock> iconStyles = Lists.newArrayList();
 		
 		iconStyles.add(
@@ -2,8 +2,10 @@ package uk.nhs.fhir.render.format.structdef;
 
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -30,7 +32,6 @@ import uk.nhs.fhir.data.structdef.tree.tidy.RemovedElementStripper;
 import uk.nhs.fhir.data.structdef.tree.tidy.UnwantedConstraintRemover;
 import uk.nhs.fhir.data.url.LinkDatas;
 import uk.nhs.fhir.data.wrap.WrappedStructureDefinition;
-import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.ResourceFormatter;
 import uk.nhs.fhir.render.html.Elements;
@@ -38,6 +39,7 @@ import uk.nhs.fhir.render.html.cell.LinkCell;
 import uk.nhs.fhir.render.html.panel.FhirPanel;
 import uk.nhs.fhir.render.html.style.CSSRule;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.CSSTag;
 import uk.nhs.fhir.render.html.style.FhirCSS;
 import uk.nhs.fhir.render.html.style.FhirColour;
@@ -46,6 +48,9 @@ import uk.nhs.fhir.render.html.table.Table;
 import uk.nhs.fhir.util.ListUtils;
 
 public class StructureDefinitionDetailsFormatter extends ResourceFormatter<WrappedStructureDefinition> {
+	
+	private static final String DETAILS_DIFFERENTIAL_VIEW = "details-differential-view";
+	private static final String DETAILS_SNAPSHOT_VIEW = "details-snapshot-view";
 
 	public StructureDefinitionDetailsFormatter(WrappedStructureDefinition wrappedResource) {
 		super(wrappedResource);
@@ -58,29 +63,22 @@ public class StructureDefinitionDetailsFormatter extends ResourceFormatter<Wrapp
 		Element metadataPanel = getDetailsPanel();
 		section.addBodyElement(metadataPanel);
 
-		getStyles().forEach(section::addStyle);
-		Table.getStyles().forEach(section::addStyle);
-		FhirPanel.getStyles().forEach(section::addStyle);
-		LinkCell.getStyles().forEach(section::addStyle);
-		StructureDefinitionDetails.getStyles().forEach(section::addStyle);
+		section.addStyles(getStyles());
+		section.addStyles(Table.getStyles());
+		section.addStyles(FhirPanel.getStyles());
+		section.addStyles(LinkCell.getStyles());
+		section.addStyles(StructureDefinitionDetails.getStyles());
 		
 		return section;
 	}
 
 	private Element getDetailsPanel() {
-		Set<String> permittedMissingExtensionPrefixes = RendererContext.forThread().getPermittedMissingExtensionPrefixes();
-		FhirTreeData<SnapshotData, SnapshotTreeNode> snapshotTreeData = 
-			wrappedResource.getSnapshotTree(Optional.of(RendererContext.forThread().getFhirFileRegistry()), permittedMissingExtensionPrefixes);
 		FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData = 
-			wrappedResource.getDifferentialTree(Optional.of(RendererContext.forThread().getFhirFileRegistry()), permittedMissingExtensionPrefixes);
+			StructureDefinitionTrees.cachedView(wrappedResource, DETAILS_DIFFERENTIAL_VIEW, this::buildDifferentialView);
+		FhirTreeData<SnapshotData, SnapshotTreeNode> snapshotTreeData = 
+			StructureDefinitionTrees.cachedView(wrappedResource, DETAILS_SNAPSHOT_VIEW, () -> buildSnapshotView(differentialTreeData));
 		
-		new ChildlessDummyNodeRemover<>(differentialTreeData).process();
-
-		new RemovedElementStripper<>(snapshotTreeData).process();
-		new RedundantValueNodeRemover<>(differentialTreeData).process(snapshotTreeData);
-		new ExtensionsSlicingNodesRemover<>(snapshotTreeData).process();
-		new UnwantedConstraintRemover<>(snapshotTreeData).process();
-		new ComplexExtensionChildrenStripper<>(snapshotTreeData).process();
+		Map<String, Set<String>> differentialConstraintKeysByNodeKey = differentialConstraintKeysByNodeKey(differentialTreeData);
 		
 		LinkedHashMap<String, StructureDefinitionDetails> details = Maps.newLinkedHashMap();
 		
@@ -107,7 +105,7 @@ public class StructureDefinitionDetailsFormatter extends ResourceFormatter<Wrapp
 			
 			List<ConstraintInfo> inheritedConstraints = Lists.newArrayList();
 			List<ConstraintInfo> profileConstraints = Lists.newArrayList();
-			splitConstraints(node, differentialTreeData, inheritedConstraints, profileConstraints);
+			splitConstraints(node, differentialConstraintKeysByNodeKey, inheritedConstraints, profileConstraints);
 			
 			if (typeLinks.isEmpty()
 			  && !nodeData.isRoot()) {
@@ -141,19 +139,52 @@ public class StructureDefinitionDetailsFormatter extends ResourceFormatter<Wrapp
 		return panel.makePanel();
 	}
 
-	private void splitConstraints(SnapshotTreeNode node, FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData,
+	private FhirTreeData<DifferentialData, DifferentialTreeNode> buildDifferentialView() {
+		FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData = StructureDefinitionTrees.differentialTree(wrappedResource);
+		
+		new ChildlessDummyNodeRemover<>(differentialTreeData).process();
+		
+		return differentialTreeData;
+	}
+	
+	private FhirTreeData<SnapshotData, SnapshotTreeNode> buildSnapshotView(FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData) {
+		FhirTreeData<SnapshotData, SnapshotTreeNode> snapshotTreeData = StructureDefinitionTrees.snapshotTree(wrappedResource);
+
+		new RemovedElementStripper<>(snapshotTreeData).process();
+		new RedundantValueNodeRemover<>(differentialTreeData).process(snapshotTreeData);
+		new ExtensionsSlicingNodesRemover<>(snapshotTreeData).process();
+		new UnwantedConstraintRemover<>(snapshotTreeData).process();
+		new ComplexExtensionChildrenStripper<>(snapshotTreeData).process();
+		
+		return snapshotTreeData;
+	}
+
+	/**
+	 * Keys of the constraints on each differential node, by the key of the node it backs.
+	 * Where several differential nodes share a key, the first takes precedence.
+	 */
+	private Map<String, Set<String>> differentialConstraintKeysByNodeKey(FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData) {
+		Map<String, Set<String>> constraintKeysByNodeKey = Maps.newHashMap();
+		
+		StreamSupport.stream(differentialTreeData.spliterator(), false)
+			.forEach(differentialNode -> 
+				constraintKeysByNodeKey.computeIfAbsent(differentialNode.getBackupNode().getNodeKey(),
+					nodeKey -> differentialNode.getConstraints()
+						.stream()
+						.map(ConstraintInfo::getKey)
+						.collect(Collectors.toSet())));
+		
+		return constraintKeysByNodeKey;
+	}
+	
+	private void splitConstraints(SnapshotTreeNode node, Map<String, Set<String>> differentialConstraintKeysByNodeKey,
 			List<ConstraintInfo> inheritedConstraints, List<ConstraintInfo> profileConstraints) {
 		
-		Optional<DifferentialData> matchingDifferentialNode = StreamSupport.stream(differentialTreeData.spliterator(), false)
-			.filter(differentialNode -> differentialNode.getBackupNode().getNodeKey().equals(node.getNodeKey()))
-			.findFirst();
+		Set<String> differentialConstraintKeys = differentialConstraintKeysByNodeKey.get(node.getNodeKey());
 		
-		if (matchingDifferentialNode.isPresent()) {
-			List<ConstraintInfo> differentialConstraints = matchingDifferentialNode.get().getConstraints();
-			
+		if (differentialConstraintKeys != null) {
 			for (ConstraintInfo constraint : node.getData().getConstraints()) {
-				if (differentialConstraints.stream()
-						.anyMatch(diffConstraint -> diffConstraint.getKey().equals(constraint.getKey()))) {
+				if (differentialConstraintKeys.contains(constraint.getKey())) {
 					profileConstraints.add(constraint);
 				} else {
 					inheritedConstraints.add(constraint);
@@ -165,7 +196,13 @@ public class StructureDefinitionDetailsFormatter extends ResourceFormatter<Wrapp
 		}
 	}
 	
-	public static List<CSSStyleBlock> getStyles() {
+	private static final CSSStyleBundle STYLES = CSSStyleBundle.of(makeStyles());
+	
+	public static CSSStyleBundle getStyles() {
+		return STYLES;
+	}
+	
+	private static List<CSSStyleBlock> makeStyles() {
 		List<CSSStyleBlock> styles = Lists.newArrayList();
 		
 		styles.add(
@@ -1,12 +1,14 @@
 package uk.nhs.fhir.render.format.structdef;
 
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.jdom2.Element;
 
+import com.google.common.collect.ImmutableMap;
+
 import uk.nhs.fhir.data.structdef.tree.DifferentialData;
 import uk.nhs.fhir.data.structdef.tree.DifferentialTreeNode;
 import uk.nhs.fhir.data.structdef.tree.FhirTreeData;
@@ -21,39 +23,84 @@ import uk.nhs.fhir.render.format.TreeTableFormatter;
 import uk.nhs.fhir.render.html.panel.FhirPanel;
 import uk.nhs.fhir.render.html.table.Table;
 import uk.nhs.fhir.render.html.tree.FhirTreeTable;
-import uk.nhs.fhir.util.StructureDefinitionRepository;
+import uk.nhs.fhir.render.html.tree.LazyTreeTable;
 
 public class StructureDefinitionDifferentialFormatter extends TreeTableFormatter<WrappedStructureDefinition> {
+	
+	private static final String DIFFERENTIAL_VIEW = "differential-view";
+	private static final String DIFFERENTIAL_ROWS_FILE = "differential.json";
+	
+	private final boolean lazy;
 
 	public StructureDefinitionDifferentialFormatter(WrappedStructureDefinition wrappedResource) {
+		this(wrappedResource, false);
+	}
+	
+	/**
+	 * @param lazy display a shell which loads the rows below the first level from a JSON file (see LazyTreeTable)
+	 */
+	public StructureDefinitionDifferentialFormatter(WrappedStructureDefinition wrappedResource, boolean lazy) {
 		super(wrappedResource);
+		this.lazy = lazy;
 	}
 
 	@Override
 	public HTMLDocSection makeSectionHTML() throws ParserConfigurationException {
 		HTMLDocSection section = new HTMLDocSection();
 		
-		StructureDefinitionRepository structureDefinitions = RendererContext.forThread().getFhirFileRegistry();
-		Set<String> permittedMissingExtensionPrefixes = RendererContext.forThread().getPermittedMissingExtensionPrefixes();
-		FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData = wrappedResource.getDifferentialTree(Optional.of(structureDefinitions), permittedMissingExtensionPrefixes);
-		
-		new ExtensionsSlicingNodesRemover<>(differentialTreeData).process();
-		new ChildlessDummyNodeRemover<>(differentialTreeData).process();
-		new UnwantedConstraintRemover<>(differentialTreeData).process();
-		new ComplexExtensionChildrenStripper<>(differentialTreeData).process();
-		
-		FhirTreeTable<DifferentialData, DifferentialTreeNode> differentialTreeTable = new FhirTreeTable<>(differentialTreeData, getResourceVersion());
+		FhirTreeTable<DifferentialData, DifferentialTreeNode> differentialTreeTable = makeDifferentialTree();
 
-		Table differentialTable = differentialTreeTable.asTable();
-		
-		Element differentialHtmlTable = differentialTable.makeTable();
+		Element differentialHtmlTable;
+		Set<String> backgroundCSSClasses;
+		if (lazy) {
+			LazyTreeTable lazyTable = getLazyTreeTable(DIFFERENTIAL_VIEW, differentialTreeTable);
+			differentialHtmlTable = lazyTable.makeShell(DIFFERENTIAL_ROWS_FILE, RendererContext.forThread().getHTMLOutputMode());
+			backgroundCSSClasses = lazyTable.getBackgroundCSSClasses();
+			section.addStyles(LazyTreeTable.getStyles());
+		} else {
+			Table differentialTable = differentialTreeTable.asTable();
+			differentialHtmlTable = differentialTable.makeTable();
+			backgroundCSSClasses = differentialTreeTable.getBackgroundCSSClasses();
+		}
 		
-		getTableBackgroundStyles(differentialHtmlTable).forEach(section::addStyle);
+		getTableBackgroundStyles(backgroundCSSClasses).forEach(section::addStyle);
 		
 		addStyles(section);
-		differentialTreeTable.getStyles().forEach(section::addStyle);
+		section.addStyles(FhirTreeTable.getStyles());
 		section.addBodyElement(new FhirPanel(differentialHtmlTable).makePanel());
 		
 		return section;
 	}
+
+	@Override
+	protected String getSectionCacheKey() {
+		return super.getSectionCacheKey() + (lazy ? ":lazy" : "");
+	}
+	
+	@Override
+	public Map<String, String> getSupportingFiles() {
+		if (lazy) {
+			return ImmutableMap.of(DIFFERENTIAL_ROWS_FILE, getLazyTreeTable(DIFFERENTIAL_VIEW, makeDifferentialTree()).getRowsJSON(RendererContext.forThread().getHTMLOutputMode()));
+		} else {
+			return super.getSupportingFiles();
+		}
+	}
+	
+	private FhirTreeTable<DifferentialData, DifferentialTreeNode> makeDifferentialTree() {
+		FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData = 
+			StructureDefinitionTrees.cachedView(wrappedResource, DIFFERENTIAL_VIEW, this::buildDifferentialView);
+		
+		return new FhirTreeTable<>(differentialTreeData, getResourceVersion());
+	}
+
+	private FhirTreeData<DifferentialData, DifferentialTreeNode> buildDifferentialView() {
+		FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData = StructureDefinitionTrees.differentialTree(wrappedResource);
+		
+		new ExtensionsSlicingNodesRemover<>(differentialTreeData).process();
+		new ChildlessDummyNodeRemover<>(differentialTreeData).process();
+		new UnwantedConstraintRemover<>(differentialTreeData).process();
+		new ComplexExtensionChildrenStripper<>(differentialTreeData).process();
+		
+		return differentialTreeData;
+	}
 }
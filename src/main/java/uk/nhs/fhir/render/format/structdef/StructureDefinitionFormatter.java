@@ -14,11 +14,11 @@ public class StructureDefinitionFormatter extends ResourceFormatter<WrappedStruc
 
 	@Override
 	public HTMLDocSection makeSectionHTML() throws ParserConfigurationException {
-		HTMLDocSection metadataPanel = new StructureDefinitionMetadataFormatter(wrappedResource).makeSectionHTML();
-		HTMLDocSection snapshotTree = new StructureDefinitionSnapshotFormatter(wrappedResource).makeSectionHTML();
-		HTMLDocSection differentialTree = new StructureDefinitionDifferentialFormatter(wrappedResource).makeSectionHTML();
-		HTMLDocSection detailsTable = new StructureDefinitionDetailsFormatter(wrappedResource).makeSectionHTML();
-		HTMLDocSection bindingTable = new StructureDefinitionBindingsTableFormatter(wrappedResource).makeSectionHTML();
+		HTMLDocSection metadataPanel = new StructureDefinitionMetadataFormatter(wrappedResource).getSectionHTML();
+		HTMLDocSection snapshotTree = new StructureDefinitionSnapshotFormatter(wrappedResource).getSectionHTML();
+		HTMLDocSection differentialTree = new StructureDefinitionDifferentialFormatter(wrappedResource).getSectionHTML();
+		HTMLDocSection detailsTable = new StructureDefinitionDetailsFormatter(wrappedResource).getSectionHTML();
+		HTMLDocSection bindingTable = new StructureDefinitionBindingsTableFormatter(wrappedResource).getSectionHTML();
 		
 		HTMLDocSection structureDefinitionSection = new HTMLDocSection();
 		
@@ -15,6 +15,7 @@ import com.google.common.collect.Maps;
 
 import uk.nhs.fhir.data.structdef.FhirContacts;
 import uk.nhs.fhir.data.wrap.WrappedStructureDefinition;
+import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.format.FhirContactRenderer;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.TableFormatter;
@@ -37,9 +38,9 @@ public class StructureDefinitionMetadataFormatter extends TableFormatter<Wrapped
 		Element metadataPanel = getMetadataTable(wrappedResource);
 		section.addBodyElement(metadataPanel);
 		
-		getStyles().forEach(section::addStyle);
-		Table.getStyles().forEach(section::addStyle);
-		FhirPanel.getStyles().forEach(section::addStyle);
+		section.addStyles(getStyles());
+		section.addStyles(Table.getStyles());
+		section.addStyles(FhirPanel.getStyles());
 		
 		return section;
 	}
@@ -52,7 +53,7 @@ public class StructureDefinitionMetadataFormatter extends TableFormatter<Wrapped
 	public Element getMetadataTable(WrappedStructureDefinition structureDefinition) {
 		
 		String name = structureDefinition.getName();
-		String url = structureDefinition.getUrl().get();
+		String url = RendererContext.forThread().getDisplayedUrl(structureDefinition).get();
 		String kind = structureDefinition.getKindDisplay();
 		
 		String status = structureDefinition.getStatus();
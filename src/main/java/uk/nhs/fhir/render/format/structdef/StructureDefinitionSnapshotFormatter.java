@@ -1,12 +1,14 @@
 package uk.nhs.fhir.render.format.structdef;
 
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.jdom2.Element;
 
+import com.google.common.collect.ImmutableMap;
+
 import uk.nhs.fhir.data.structdef.tree.DifferentialData;
 import uk.nhs.fhir.data.structdef.tree.DifferentialTreeNode;
 import uk.nhs.fhir.data.structdef.tree.FhirTreeData;
@@ -27,11 +29,25 @@ import uk.nhs.fhir.render.format.TreeTableFormatter;
 import uk.nhs.fhir.render.html.panel.FhirPanel;
 import uk.nhs.fhir.render.html.table.Table;
 import uk.nhs.fhir.render.html.tree.FhirTreeTable;
+import uk.nhs.fhir.render.html.tree.LazyTreeTable;
 
 public class StructureDefinitionSnapshotFormatter extends TreeTableFormatter<WrappedStructureDefinition> {
 	
+	private static final String SNAPSHOT_VIEW = "snapshot-view";
+	private static final String SNAPSHOT_ROWS_FILE = "snapshot.json";
+	
+	private final boolean lazy;
+	
 	public StructureDefinitionSnapshotFormatter(WrappedStructureDefinition wrappedResource) {
+		this(wrappedResource, false);
+	}
+	
+	/**
+	 * @param lazy display a shell which loads the rows below the first level from a JSON file (see LazyTreeTable)
+	 */
+	public StructureDefinitionSnapshotFormatter(WrappedStructureDefinition wrappedResource, boolean lazy) {
 		super(wrappedResource);
+		this.lazy = lazy;
 	}
 
 	@Override
@@ -39,12 +55,57 @@ public class StructureDefinitionSnapshotFormatter extends TreeTableFormatter<Wra
 
 		HTMLDocSection section = new HTMLDocSection();
 
-		Set<String> permittedMissingExtensionPrefixes = RendererContext.forThread().getPermittedMissingExtensionPrefixes();
-		FhirTreeData<SnapshotData, SnapshotTreeNode> snapshotTreeData = wrappedResource.getSnapshotTree(Optional.of(RendererContext.forThread().getFhirFileRegistry()), permittedMissingExtensionPrefixes);
+		FhirTreeTable<SnapshotData, SnapshotTreeNode> snapshotTree = makeSnapshotTree();
+		
+		Element snapshotHtmlTable;
+		Set<String> backgroundCSSClasses;
+		if (lazy) {
+			LazyTreeTable lazyTable = getLazyTreeTable(SNAPSHOT_VIEW, snapshotTree);
+			snapshotHtmlTable = lazyTable.makeShell(SNAPSHOT_ROWS_FILE, RendererContext.forThread().getHTMLOutputMode());
+			backgroundCSSClasses = lazyTable.getBackgroundCSSClasses();
+			section.addStyles(LazyTreeTable.getStyles());
+		} else {
+			Table snapshotTable = snapshotTree.asTable();
+			snapshotHtmlTable = snapshotTable.makeTable();
+			backgroundCSSClasses = snapshotTree.getBackgroundCSSClasses();
+		}
+
+		addStyles(section);
+		getTableBackgroundStyles(backgroundCSSClasses).forEach(section::addStyle);
+		section.addStyles(FhirTreeTable.getStyles());
+		
+		section.addBodyElement(new FhirPanel(snapshotHtmlTable).makePanel());
+		
+		return section;
+	}
+
+	@Override
+	protected String getSectionCacheKey() {
+		return super.getSectionCacheKey() + (lazy ? ":lazy" : "");
+	}
+	
+	@Override
+	public Map<String, String> getSupportingFiles() {
+		if (lazy) {
+			return ImmutableMap.of(SNAPSHOT_ROWS_FILE, getLazyTreeTable(SNAPSHOT_VIEW, makeSnapshotTree()).getRowsJSON(RendererContext.forThread().getHTMLOutputMode()));
+		} else {
+			return super.getSupportingFiles();
+		}
+	}
+	
+	private FhirTreeTable<SnapshotData, SnapshotTreeNode> makeSnapshotTree() {
+		FhirTreeData<SnapshotData, SnapshotTreeNode> snapshotTreeData = 
+			StructureDefinitionTrees.cachedView(wrappedResource, SNAPSHOT_VIEW, this::buildSnapshotView);
+		
+		return new FhirTreeTable<>(snapshotTreeData, getResourceVersion());
+	}
+
+	private FhirTreeData<SnapshotData, SnapshotTreeNode> buildSnapshotView() {
+		FhirTreeData<SnapshotData, SnapshotTreeNode> snapshotTreeData = StructureDefinitionTrees.snapshotTree(wrappedResource);
 
 		boolean isExtension = wrappedResource.isExtension();
 		if (!isExtension) {
-			FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData = wrappedResource.getDifferentialTree(Optional.of(RendererContext.forThread().getFhirFileRegistry()), permittedMissingExtensionPrefixes);
+			FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTreeData = StructureDefinitionTrees.differentialTree(wrappedResource);
 			new DefaultElementStripper<>(differentialTreeData).process(snapshotTreeData);
 			new UnchangedSliceInfoRemover<>(differentialTreeData).process(snapshotTreeData);
 			new RedundantValueNodeRemover<>(differentialTreeData).process(snapshotTreeData);
@@ -56,22 +117,11 @@ public class StructureDefinitionSnapshotFormatter extends TreeTableFormatter<Wra
 		new UnwantedConstraintRemover<>(snapshotTreeData).process();
 		new ComplexExtensionChildrenStripper<>(snapshotTreeData).process();
 		
-		FhirTreeTable<SnapshotData, SnapshotTreeNode> snapshotTree = new FhirTreeTable<>(snapshotTreeData, getResourceVersion());
-		
-		Table snapshotTable = snapshotTree.asTable();
-		Element snapshotHtmlTable = snapshotTable.makeTable();
-
-		addStyles(section);
-		getTableBackgroundStyles(snapshotHtmlTable).forEach(section::addStyle);
-		snapshotTree.getStyles().forEach(section::addStyle);
-		
-		section.addBodyElement(new FhirPanel(snapshotHtmlTable).makePanel());
-		
-		return section;
+		return snapshotTreeData;
 	}
 
 	protected void addStyles(HTMLDocSection section) {
 		super.addStyles(section);
-		StructureDefinitionMetadataFormatter.getStyles().forEach(section::addStyle);
+		section.addStyles(StructureDefinitionMetadataFormatter.getStyles());
 	}
 }
@@ -0,0 +1,99 @@
+package uk.nhs.fhir.render.format.structdef;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import uk.nhs.fhir.data.structdef.tree.AbstractFhirTreeNode;
+import uk.nhs.fhir.data.structdef.tree.AbstractFhirTreeNodeData;
+import uk.nhs.fhir.data.structdef.tree.DifferentialData;
+import uk.nhs.fhir.data.structdef.tree.DifferentialTreeNode;
+import uk.nhs.fhir.data.structdef.tree.FhirTreeData;
+import uk.nhs.fhir.data.structdef.tree.SnapshotData;
+import uk.nhs.fhir.data.structdef.tree.SnapshotTreeNode;
+import uk.nhs.fhir.data.url.FhirURL;
+import uk.nhs.fhir.data.wrap.WrappedStructureDefinition;
+import uk.nhs.fhir.render.RendererContext;
+
+/**
+ * Builds StructureDefinition trees against the registry for the current thread. The base and extension StructureDefinitions
+ * which the trees are resolved against are recorded as dependencies of the resource being rendered.
+ * 
+ * Building a tree is expensive, so views of a tree which several formatters share are cached for the duration of the render.
+ * Tree processors modify trees in place, so each view is built from a fresh tree and must not be modified once cached.
+ */
+public class StructureDefinitionTrees {
+	
+	private static final String UNPROCESSED_SNAPSHOT = "snapshot";
+
+	/**
+	 * @return the snapshot tree as built, shared with other formatters so must not be modified
+	 */
+	public static FhirTreeData<SnapshotData, SnapshotTreeNode> unprocessedSnapshotTree(WrappedStructureDefinition structureDefinition) {
+		return cachedView(structureDefinition, UNPROCESSED_SNAPSHOT, () -> snapshotTree(structureDefinition));
+	}
+	
+	/**
+	 * @return a view of the tree which was previously computed during this render, or compute it now. Views are shared so
+	 * must not be modified once returned.
+	 */
+	public static <T> T cachedView(WrappedStructureDefinition structureDefinition, String view, Supplier<T> buildView) {
+		return RendererContext.forThread().getCached(structureDefinition, view, buildView);
+	}
+
+	/**
+	 * @return a newly built snapshot tree, which the caller may modify
+	 */
+	public static FhirTreeData<SnapshotData, SnapshotTreeNode> snapshotTree(WrappedStructureDefinition structureDefinition) {
+		RendererContext context = RendererContext.forThread();
+		FhirTreeData<SnapshotData, SnapshotTreeNode> snapshotTree = 
+			structureDefinition.getSnapshotTree(Optional.of(context.getFhirFileRegistry()), context.getPermittedMissingExtensionPrefixes());
+		recordDependencies(structureDefinition, snapshotTree);
+		return snapshotTree;
+	}
+
+	/**
+	 * @return a newly built differential tree, which the caller may modify
+	 */
+	public static FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTree(WrappedStructureDefinition structureDefinition) {
+		RendererContext context = RendererContext.forThread();
+		FhirTreeData<DifferentialData, DifferentialTreeNode> differentialTree = 
+			structureDefinition.getDifferentialTree(Optional.of(context.getFhirFileRegistry()), context.getPermittedMissingExtensionPrefixes());
+		recordDependencies(structureDefinition, differentialTree);
+		return differentialTree;
+	}
+	
+	/**
+	 * Records the base and the URLs of the extensions with bindings. Extensions without bindings are recorded by the snapshot
+	 * and differential views of the same resource.
+	 */
+	public static Map<SnapshotTreeNode, List<SnapshotTreeNode>> extensionsWithBindings(WrappedStructureDefinition structureDefinition) {
+		RendererContext context = RendererContext.forThread();
+		Map<SnapshotTreeNode, List<SnapshotTreeNode>> extensionsWithBindings = 
+			structureDefinition.getExtensionsWithBindings(context.getFhirFileRegistry(), context.getPermittedMissingExtensionPrefixes());
+		
+		context.recordDependency(structureDefinition.getBase());
+		for (SnapshotTreeNode extensionNode : extensionsWithBindings.keySet()) {
+			recordExtensionDependencies(extensionNode);
+		}
+		
+		return extensionsWithBindings;
+	}
+	
+	private static <T extends AbstractFhirTreeNodeData, U extends AbstractFhirTreeNode<T, U>> void recordDependencies(
+			WrappedStructureDefinition structureDefinition, FhirTreeData<T, U> tree) {
+		RendererContext.forThread().recordDependency(structureDefinition.getBase());
+		
+		for (U node : tree.nodes()) {
+			recordExtensionDependencies(node);
+		}
+	}
+	
+	private static <T extends AbstractFhirTreeNodeData, U extends AbstractFhirTreeNode<T, U>> void recordExtensionDependencies(U node) {
+		RendererContext context = RendererContext.forThread();
+		for (FhirURL extensionUrl : node.getData().getExtensionUrls()) {
+			context.recordDependency(extensionUrl.toFullString());
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package uk.nhs.fhir.render.format.valueset;
 
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Optional;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -10,6 +10,9 @@ import org.jdom2.Element;
 import com.google.common.collect.Lists;
 
 import uk.nhs.fhir.data.wrap.WrappedValueSet;
+import uk.nhs.fhir.render.RendererContext;
+import uk.nhs.fhir.render.format.ConceptPages;
+import uk.nhs.fhir.render.format.ConceptPaging;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.TableFormatter;
 import uk.nhs.fhir.render.html.cell.LinkCell;
@@ -19,8 +22,47 @@ import uk.nhs.fhir.render.html.table.TableRow;
 
 public class ConceptsValueSetTableFormatter extends TableFormatter<WrappedValueSet> {
 
+	private static final String CODE_SYSTEMS_CACHE_KEY = "valueset-concepts-code-systems";
+
 	public ConceptsValueSetTableFormatter(WrappedValueSet wrappedResource) {
-		super(wrappedResource);
+		this(wrappedResource, true);
+	}
+
+	/**
+	 * @param paged false to display every concept in one table, even if there are too many for one page (e.g. in the
+	 * narrative, which is served without the pages)
+	 */
+	public ConceptsValueSetTableFormatter(WrappedValueSet wrappedResource, boolean paged) {
+		super(wrappedResource, ConceptPaging.of(paged));
+	}
+
+	/**
+	 * Formats a single page of the concepts table (see getPages)
+	 */
+	public ConceptsValueSetTableFormatter(WrappedValueSet wrappedResource, int page) {
+		super(wrappedResource, ConceptPaging.page(page));
+	}
+
+	/**
+	 * @return the pages to split the concepts table into, if it is too large for one page
+	 */
+	public static Optional<ConceptPages> getPages(WrappedValueSet valueSet) {
+		return ConceptPages.forConceptCount(getConceptCount(getCodeSystems(valueSet)));
+	}
+
+	/**
+	 * The concepts for each code system, shared between all the views of the ValueSet while it is rendered
+	 */
+	private static List<ValueSetConceptsTableDataCodeSystem> getCodeSystems(WrappedValueSet valueSet) {
+		return RendererContext.forThread().getCached(valueSet, CODE_SYSTEMS_CACHE_KEY, () -> new ValueSetConceptsTableDataProvider(valueSet).getCodeSystems());
+	}
+
+	private static int getConceptCount(List<ValueSetConceptsTableDataCodeSystem> codeSystems) {
+		int conceptCount = 0;
+		for (ValueSetConceptsTableDataCodeSystem codeSystem : codeSystems) {
+			conceptCount += codeSystem.getConcepts().size();
+		}
+		return conceptCount;
 	}
 
 	@Override
@@ -36,33 +78,66 @@ public class ConceptsValueSetTableFormatter extends TableFormatter<WrappedValueS
 
 	private Element buildConceptsPanel() {
 		ValueSetConceptsTableDataProvider tableData = new ValueSetConceptsTableDataProvider(wrappedResource);
-		List<ValueSetConceptsTableDataCodeSystem> codeSystems = tableData.getCodeSystems();
+		List<ValueSetConceptsTableDataCodeSystem> codeSystems = getCodeSystems(wrappedResource);
+
+		String heading = "Value set concepts";
+		int pageStart = 0;
+		int pageEnd = Integer.MAX_VALUE;
+		boolean lastPage = true;
+
+		Optional<ConceptPages> pages = conceptPaging.isPaged() ? getPages(wrappedResource) : Optional.empty();
+		if (pages.isPresent()) {
+			if (conceptPaging.getPage().isPresent()) {
+				int pageIndex = conceptPaging.getPage().get();
+				pageStart = pages.get().getPageStart(pageIndex);
+				pageEnd = pages.get().getPageEnd(pageIndex);
+				lastPage = pages.get().isLastPage(pageIndex);
+				heading += " (page " + (pageIndex + 1) + " of " + pages.get().getPageCount() + ")";
+			} else {
+				List<String> codes = Lists.newArrayList();
+				codeSystems.forEach(codeSystem -> codeSystem.getConcepts().forEach(concept -> codes.add(concept.getCode())));
+				return pages.get().makeIndexPanel(heading, codes::get);
+			}
+		}
 
-		boolean needsDisplayColumn = findConceptFeature(codeSystems, concept -> concept.getDisplay().isPresent());
-		boolean needsDefinitionColumn = findConceptFeature(codeSystems, concept -> concept.getDefinition().isPresent());
-		boolean needsMappingColumn = findConceptFeature(codeSystems, concept -> concept.getMapping().isPresent());
+		// decide which columns are needed in a single pass over the concepts
+		boolean needsDisplayColumn = false;
+		boolean needsDefinitionColumn = false;
+		boolean needsMappingColumn = false;
+		for (ValueSetConceptsTableDataCodeSystem codeSystem : codeSystems) {
+			for (ValueSetConceptsTableData concept : codeSystem.getConcepts()) {
+				needsDisplayColumn |= concept.getDisplay().isPresent();
+				needsDefinitionColumn |= concept.getDefinition().isPresent();
+				needsMappingColumn |= concept.getMapping().isPresent();
+			}
+		}
 
 		List<TableRow> tableRows = Lists.newArrayList();
 		
 		ValueSetConceptsCodeSystemFormatter codeSystemFormatter = new ValueSetConceptsCodeSystemFormatter(needsDisplayColumn, needsDefinitionColumn, needsMappingColumn, tableRows);
 		
+		// each code system's header is repeated on every page which displays any of its concepts
+		int codeSystemStart = 0;
 		for (ValueSetConceptsTableDataCodeSystem codeSystem : codeSystems) {
-			codeSystemFormatter.addRows(codeSystem);
+			int conceptCount = codeSystem.getConcepts().size();
+			int codeSystemEnd = codeSystemStart + conceptCount;
+
+			if (conceptCount == 0) {
+				// display empty code systems where their concepts would have been
+				if (codeSystemStart >= pageStart
+				  && (codeSystemStart < pageEnd || lastPage)) {
+					codeSystemFormatter.addRows(codeSystem);
+				}
+			} else if (codeSystemStart < pageEnd
+			  && codeSystemEnd > pageStart) {
+				codeSystemFormatter.addRows(codeSystem, Math.max(pageStart, codeSystemStart) - codeSystemStart, Math.min(pageEnd, codeSystemEnd) - codeSystemStart);
+			}
+
+			codeSystemStart = codeSystemEnd;
 		}
 		
 		Element filteredCodeSystemTable = new Table(tableData.getColumns(needsDisplayColumn, needsDefinitionColumn, needsMappingColumn), tableRows).makeTable();
-		return new FhirPanel("Value set concepts", filteredCodeSystemTable).makePanel();
-	}
-	
-	private boolean findConceptFeature(List<ValueSetConceptsTableDataCodeSystem> codeSystems, Predicate<? super ValueSetConceptsTableData> predicate) {
-		return 
-			codeSystems
-				.stream()
-				.flatMap(codeSystem -> 
-					codeSystem
-						.getConcepts()
-						.stream())
-				.anyMatch(predicate);
+		return new FhirPanel(heading, filteredCodeSystemTable).makePanel();
 	}
 
 	private void addStyles(HTMLDocSection section) {
@@ -26,9 +26,17 @@ public class ValueSetConceptsCodeSystemFormatter {
 	}
 
 	public void addRows(ValueSetConceptsTableDataCodeSystem codeSystem) {
+		List<ValueSetConceptsTableData> concepts = codeSystem.getConcepts();
+		addRows(codeSystem, 0, concepts.size());
+	}
+
+	/**
+	 * Adds the header row, and rows for the concepts from index start (inclusive) to end (exclusive)
+	 */
+	public void addRows(ValueSetConceptsTableDataCodeSystem codeSystem, int start, int end) {
 		addHeaderRow(codeSystem.getCodeSystem());
 		
-		for (ValueSetConceptsTableData concept : codeSystem.getConcepts()) {
+		for (ValueSetConceptsTableData concept : codeSystem.getConcepts().subList(start, end)) {
 			addConceptRow(concept);
 		}
 	}
@@ -1,10 +1,13 @@
 package uk.nhs.fhir.render.format.valueset;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import uk.nhs.fhir.data.codesystem.FhirCodeSystemConcept;
 import uk.nhs.fhir.data.codesystem.FhirCodeSystemConcepts;
@@ -12,10 +15,10 @@ import uk.nhs.fhir.data.conceptmap.FhirConceptMapElement;
 import uk.nhs.fhir.data.url.FhirURL;
 import uk.nhs.fhir.data.valueset.FhirValueSetComposeInclude;
 import uk.nhs.fhir.data.wrap.WrappedCodeSystem;
+import uk.nhs.fhir.data.wrap.WrappedConceptMap;
 import uk.nhs.fhir.data.wrap.WrappedValueSet;
 import uk.nhs.fhir.event.EventHandlerContext;
 import uk.nhs.fhir.event.RendererEventType;
-import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.html.table.TableTitle;
 import uk.nhs.fhir.util.FhirURLConstants;
 
@@ -30,48 +33,59 @@ public class ValueSetConceptsTableDataProvider {
 	public List<ValueSetConceptsTableDataCodeSystem> getCodeSystems() {
 		List<ValueSetConceptsTableDataCodeSystem> rows = Lists.newArrayList();
 		
+		// built once per render, rather than scanning every ConceptMap and header for each concept
+		Map<String, List<FhirConceptMapElement>> mapElementsByCode = getMapElementsByCode();
+		Map<String, ValueSetConceptsTableDataCodeSystem> rowsBySystem = Maps.newHashMap();
+		
 		Optional<FhirCodeSystemConcepts> inlineCodeSystem = valueSet.getCodeSystem();
 		if (inlineCodeSystem.isPresent()) {
 			FhirCodeSystemConcepts cs = inlineCodeSystem.get();
-			addConcepts(rows, cs.getSystem(), cs.getConcepts());
+			addConcepts(rows, rowsBySystem, mapElementsByCode, cs.getSystem(), cs.getConcepts());
 		}
 		
 		for (FhirValueSetComposeInclude include : valueSet.getCompose().getIncludes()) {
 			String system = include.getSystem();
-			Optional<WrappedCodeSystem> standaloneCodeSystem = RendererContext.forThread().getFhirFileRegistry().getCodeSystem(system);
+			Optional<WrappedCodeSystem> standaloneCodeSystem = ValueSetRegistryLookups.getCodeSystem(system);
 			List<FhirCodeSystemConcept> concepts = include.getConcepts();
 			
 			if (!concepts.isEmpty()) {
 				//TODO could validate the codes selected by this ValueSet?
-				addConcepts(rows, system, concepts);
+				addConcepts(rows, rowsBySystem, mapElementsByCode, system, concepts);
 			} else if (standaloneCodeSystem.isPresent()) {
-				addConcepts(rows, system, standaloneCodeSystem.get().getCodeSystemConcepts().getConcepts());
+				addConcepts(rows, rowsBySystem, mapElementsByCode, system, standaloneCodeSystem.get().getCodeSystemConcepts().getConcepts());
 			} else {
 				EventHandlerContext.forThread().event(RendererEventType.EMPTY_VALUE_SET, 
 					"Empty include and CodeSystem url [" + system + "] wasn't found locally (does it start with " + FhirURLConstants.FHIR_HL7_ORG_UK_QDOMAIN + "?)");
 					// ensure that we still display the code system
-					addConcepts(rows, system, Lists.newArrayList());
+					addConcepts(rows, rowsBySystem, mapElementsByCode, system, Lists.newArrayList());
 			}
 		}
 		
 		return rows;
 	}
 
-	private void addConcepts(List<ValueSetConceptsTableDataCodeSystem> codeSystems, String system, List<FhirCodeSystemConcept> concepts) {
-		ValueSetConceptsTableDataCodeSystem codeSystemWithConcepts = findOrAddSystem(codeSystems, system);
+	private Map<String, List<FhirConceptMapElement>> getMapElementsByCode() {
+		Map<String, List<FhirConceptMapElement>> mapElementsByCode = Maps.newHashMap();
+		
+		for (WrappedConceptMap conceptMap : ValueSetRegistryLookups.getConceptMaps(valueSet)) {
+			for (FhirConceptMapElement mapElement : conceptMap.getElements()) {
+				mapElementsByCode.computeIfAbsent(mapElement.getCode(), code -> Lists.newArrayList()).add(mapElement);
+			}
+		}
+		
+		return mapElementsByCode;
+	}
+
+	private void addConcepts(List<ValueSetConceptsTableDataCodeSystem> codeSystems, Map<String, ValueSetConceptsTableDataCodeSystem> codeSystemsBySystem,
+			Map<String, List<FhirConceptMapElement>> mapElementsByCode, String system, List<FhirCodeSystemConcept> concepts) {
+		ValueSetConceptsTableDataCodeSystem codeSystemWithConcepts = findOrAddSystem(codeSystems, codeSystemsBySystem, system);
 		
 		for (FhirCodeSystemConcept concept : concepts) {
 			String code = concept.getCode();
 			
 			List<String> mappedCodes = 
-				valueSet
-					.getConceptMaps(RendererContext.forThread().getFhirFileRegistry()).stream()
-					.flatMap(conceptMap -> 
-						conceptMap
-							.getElements()
-							.stream())
-					.filter(mapElement -> 
-						code.equals(mapElement.getCode()))
+				mapElementsByCode.getOrDefault(code, Collections.emptyList())
+					.stream()
 					.filter(mapElement ->
 						assertHasTargets(mapElement, code))
 					.flatMap(mapElement -> 
@@ -98,20 +112,20 @@ public class ValueSetConceptsTableDataProvider {
 		return true;
 	}
 
-	private ValueSetConceptsTableDataCodeSystem findOrAddSystem(List<ValueSetConceptsTableDataCodeSystem> conceptsHeaders, String system) {
-		ValueSetConceptsTableDataCodeSystem systemRow = null;
-		
-		for (ValueSetConceptsTableDataCodeSystem potentialMatchingConceptsHeader : conceptsHeaders) {
-			String headerCodeSystem = potentialMatchingConceptsHeader.getCodeSystem().toFullString();
-			
-			if (headerCodeSystem.equals(system)) {
-				return potentialMatchingConceptsHeader;
-			}
+	/**
+	 * Headers are keyed by the full string of their system URL, and matched against the system as given.
+	 */
+	private ValueSetConceptsTableDataCodeSystem findOrAddSystem(List<ValueSetConceptsTableDataCodeSystem> conceptsHeaders,
+			Map<String, ValueSetConceptsTableDataCodeSystem> conceptsHeadersBySystem, String system) {
+		ValueSetConceptsTableDataCodeSystem systemRow = conceptsHeadersBySystem.get(system);
+		if (systemRow != null) {
+			return systemRow;
 		}
 		
 		FhirURL systemUrl = FhirURL.buildOrThrow(system, valueSet.getImplicitFhirVersion());
 		systemRow = new ValueSetConceptsTableDataCodeSystem(systemUrl);
 		conceptsHeaders.add(systemRow);
+		conceptsHeadersBySystem.putIfAbsent(systemUrl.toFullString(), systemRow);
 		return systemRow;
 	}
 
@@ -4,7 +4,7 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import uk.nhs.fhir.data.wrap.WrappedConceptMap;
 import uk.nhs.fhir.data.wrap.WrappedValueSet;
-import uk.nhs.fhir.render.RendererContext;
+import uk.nhs.fhir.render.format.ConceptPaging;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.ResourceFormatter;
 import uk.nhs.fhir.render.format.conceptmap.ConceptMapFormatter;
@@ -12,22 +12,29 @@ import uk.nhs.fhir.render.format.conceptmap.ConceptMapFormatter;
 public class ValueSetFormatter extends ResourceFormatter<WrappedValueSet> {
 
     public ValueSetFormatter(WrappedValueSet wrappedResource) {
-		super(wrappedResource);
+		this(wrappedResource, true);
+	}
+
+	/**
+	 * @param pagedConcepts false to list every concept in one table (see ConceptsValueSetTableFormatter)
+	 */
+	public ValueSetFormatter(WrappedValueSet wrappedResource, boolean pagedConcepts) {
+		super(wrappedResource, ConceptPaging.of(pagedConcepts));
 	}
 
 	@Override
 	public HTMLDocSection makeSectionHTML() throws ParserConfigurationException {
 
-		HTMLDocSection metadataPanel = new ValueSetMetadataFormatter(wrappedResource).makeSectionHTML();
-		HTMLDocSection conceptTable = new ValueSetTableFormatter(wrappedResource).makeSectionHTML();
+		HTMLDocSection metadataPanel = new ValueSetMetadataFormatter(wrappedResource).getSectionHTML();
+		HTMLDocSection conceptTable = new ValueSetTableFormatter(wrappedResource, conceptPaging.isPaged()).getSectionHTML();
 		
 		HTMLDocSection valueSetSection = new HTMLDocSection();
 		
 		valueSetSection.addSection(metadataPanel);
 		valueSetSection.addSection(conceptTable);
 		
-		for (WrappedConceptMap conceptMap : wrappedResource.getConceptMaps(RendererContext.forThread().getFhirFileRegistry())) {
-			HTMLDocSection formattedConceptMap = new ConceptMapFormatter(conceptMap).makeSectionHTML();
+		for (WrappedConceptMap conceptMap : ValueSetRegistryLookups.getConceptMaps(wrappedResource)) {
+			HTMLDocSection formattedConceptMap = new ConceptMapFormatter(conceptMap).getSectionHTML();
 			valueSetSection.addSection(formattedConceptMap);
 		}
 
@@ -17,6 +17,7 @@ import com.google.common.collect.Lists;
 import uk.nhs.fhir.data.codesystem.FhirIdentifier;
 import uk.nhs.fhir.data.structdef.FhirContacts;
 import uk.nhs.fhir.data.wrap.WrappedValueSet;
+import uk.nhs.fhir.render.RendererContext;
 import uk.nhs.fhir.render.format.FhirContactRenderer;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.TableFormatter;
@@ -41,15 +42,15 @@ public class ValueSetMetadataFormatter extends TableFormatter<WrappedValueSet> {
 		Element metadataPanel = getMetadataTable(wrappedResource);
 		section.addBodyElement(metadataPanel);
 
-		Table.getStyles().forEach(section::addStyle);
-		FhirPanel.getStyles().forEach(section::addStyle);
-		LinkCell.getStyles().forEach(section::addStyle);
+		section.addStyles(Table.getStyles());
+		section.addStyles(FhirPanel.getStyles());
+		section.addStyles(LinkCell.getStyles());
 		
 		return section;
 	}
 
 	private Element getMetadataTable(WrappedValueSet source) {
-		Optional<String>  url = source.getUrl();
+		Optional<String>  url = RendererContext.forThread().getDisplayedUrl(source);
 		String  name = source.getName();
 
 		String status = source.getStatus();
@@ -0,0 +1,49 @@
+package uk.nhs.fhir.render.format.valueset;
+
+import java.util.List;
+import java.util.Optional;
+
+import uk.nhs.fhir.data.valueset.FhirValueSetComposeInclude;
+import uk.nhs.fhir.data.wrap.WrappedCodeSystem;
+import uk.nhs.fhir.data.wrap.WrappedConceptMap;
+import uk.nhs.fhir.data.wrap.WrappedValueSet;
+import uk.nhs.fhir.render.RendererContext;
+
+/**
+ * Registry lookups made while rendering a ValueSet, through the RegistryIndex when one has been built. Each lookup is recorded
+ * as a dependency of the resource being rendered.
+ */
+public class ValueSetRegistryLookups {
+
+	public static Optional<WrappedCodeSystem> getCodeSystem(String system) {
+		RendererContext context = RendererContext.forThread();
+		context.recordDependency(system);
+		if (context.getRegistryIndex().isPresent()) {
+			return context.getRegistryIndex().get().getCodeSystem(system);
+		}
+		return context.getFhirFileRegistry().getCodeSystem(system);
+	}
+	
+	public static List<WrappedConceptMap> getConceptMaps(WrappedValueSet valueSet) {
+		RendererContext context = RendererContext.forThread();
+		List<WrappedConceptMap> conceptMaps = 
+			context.getRegistryIndex().isPresent() ?
+				context.getRegistryIndex().get().getConceptMaps(valueSet) :
+				valueSet.getConceptMaps(context.getFhirFileRegistry());
+		for (WrappedConceptMap conceptMap : conceptMaps) {
+			conceptMap.getUrl().ifPresent(context::recordDependency);
+		}
+		return conceptMaps;
+	}
+	
+	public static boolean hasUnavailableCodeSystem(WrappedValueSet valueSet) {
+		RendererContext context = RendererContext.forThread();
+		for (FhirValueSetComposeInclude include : valueSet.getCompose().getIncludes()) {
+			context.recordDependency(include.getSystem());
+		}
+		if (context.getRegistryIndex().isPresent()) {
+			return context.getRegistryIndex().get().hasUnavailableCodeSystem(valueSet);
+		}
+		return valueSet.hasUnavailableCodeSystem(context.getFhirFileRegistry());
+	}
+}
@@ -3,28 +3,43 @@ package uk.nhs.fhir.render.format.valueset;
 import javax.xml.parsers.ParserConfigurationException;
 
 import uk.nhs.fhir.data.wrap.WrappedValueSet;
-import uk.nhs.fhir.render.RendererContext;
+import uk.nhs.fhir.render.format.ConceptPaging;
 import uk.nhs.fhir.render.format.HTMLDocSection;
 import uk.nhs.fhir.render.format.TableFormatter;
 
 public class ValueSetTableFormatter extends TableFormatter<WrappedValueSet> {
 	
 	public ValueSetTableFormatter(WrappedValueSet wrappedResource) {
-		super(wrappedResource);
+		this(wrappedResource, true);
+	}
+	
+	/**
+	 * @param pagedConcepts false to list every concept in one table (see ConceptsValueSetTableFormatter)
+	 */
+	public ValueSetTableFormatter(WrappedValueSet wrappedResource, boolean pagedConcepts) {
+		super(wrappedResource, ConceptPaging.of(pagedConcepts));
 	}
 	
 	@Override
 	public HTMLDocSection makeSectionHTML() throws ParserConfigurationException {
 		
 		boolean filterPresent = wrappedResource.hasComposeIncludeFilter();
-		boolean codesystemUnavailable = wrappedResource.hasUnavailableCodeSystem(RendererContext.forThread().getFhirFileRegistry());
+		boolean codesystemUnavailable = ValueSetRegistryLookups.hasUnavailableCodeSystem(wrappedResource);
 		
 		if (filterPresent) {
 			return new FilteredValueSetTableFormatter(wrappedResource).makeSectionHTML();
 		} else if (codesystemUnavailable) {
 			return new ImportedValueSetTableFormatter(wrappedResource).makeSectionHTML();
 		} else {
-			return new ConceptsValueSetTableFormatter(wrappedResource).makeSectionHTML();
+			return new ConceptsValueSetTableFormatter(wrappedResource, conceptPaging.isPaged()).makeSectionHTML();
 		}
 	}
+	
+	/**
+	 * Whether the ValueSet's concepts are listed (by ConceptsValueSetTableFormatter), rather than its filters or imports
+	 */
+	public static boolean listsConcepts(WrappedValueSet valueSet) {
+		return !valueSet.hasComposeIncludeFilter()
+		  && !ValueSetRegistryLookups.hasUnavailableCodeSystem(valueSet);
+	}
 }
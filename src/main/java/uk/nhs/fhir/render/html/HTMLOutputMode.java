@@ -0,0 +1,59 @@
+package uk.nhs.fhir.render.html;
+
+import java.util.List;
+
+import org.jdom2.output.Format;
+
+import com.google.common.collect.Lists;
+
+import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+
+/**
+ * How rendered HTML, and the CSS within it, is laid out
+ */
+public enum HTMLOutputMode {
+	// indented, with each element and CSS rule on its own line
+	PRETTY(false),
+	// no indentation or line breaks, whitespace in text collapsed and CSS minified
+	MINIFIED(false),
+	// as MINIFIED, with FhirCSS class names replaced by short names (see CSSClassNames)
+	MINIFIED_SHORT_CLASS_NAMES(true);
+
+	private final boolean shortClassNames;
+
+	private HTMLOutputMode(boolean shortClassNames) {
+		this.shortClassNames = shortClassNames;
+	}
+
+	public boolean isPrettyPrint() {
+		return this == PRETTY;
+	}
+
+	public boolean isShortClassNames() {
+		return shortClassNames;
+	}
+
+	public Format getFormat(boolean xmlDeclaration) {
+		if (isPrettyPrint()) {
+			return HTMLUtil.htmlFormat(true, xmlDeclaration);
+		} else {
+			return Format.getCompactFormat()
+				.setOmitDeclaration(!xmlDeclaration)
+				.setLineSeparator("");
+		}
+	}
+
+	/**
+	 * The content of a style element holding the blocks
+	 */
+	public String formatStyles(List<CSSStyleBlock> blocks) {
+		List<String> formattedStyleBlocks = Lists.newArrayList();
+		if (isPrettyPrint()) {
+			blocks.forEach((CSSStyleBlock block) -> formattedStyleBlocks.add(block.toFormattedString()));
+			return "\n" + String.join("\n", formattedStyleBlocks) + "\n";
+		} else {
+			blocks.forEach((CSSStyleBlock block) -> formattedStyleBlocks.add(block.toMinifiedString(shortClassNames)));
+			return String.join("", formattedStyleBlocks);
+		}
+	}
+}
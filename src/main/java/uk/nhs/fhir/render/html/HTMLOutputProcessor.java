@@ -0,0 +1,41 @@
+package uk.nhs.fhir.render.html;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.jdom2.Attribute;
+import org.jdom2.Namespace;
+import org.jdom2.output.support.AbstractXMLOutputProcessor;
+import org.jdom2.output.support.FormatStack;
+
+import uk.nhs.fhir.render.html.style.CSSClassNames;
+
+/**
+ * Writes HTML for an output mode. When the mode uses short class names, class attributes are shortened as they are
+ * written, so that the elements themselves (which may be cached and reused) are unchanged.
+ */
+public class HTMLOutputProcessor extends AbstractXMLOutputProcessor {
+
+	private static final String CLASS_ATTRIBUTE = "class";
+
+	private final HTMLOutputMode mode;
+
+	public HTMLOutputProcessor(HTMLOutputMode mode) {
+		this.mode = mode;
+	}
+
+	protected HTMLOutputMode getMode() {
+		return mode;
+	}
+
+	@Override
+	protected void printAttribute(Writer out, FormatStack fstack, Attribute attribute) throws IOException {
+		if (mode.isShortClassNames()
+		  && attribute.getName().equals(CLASS_ATTRIBUTE)
+		  && attribute.getNamespace().equals(Namespace.NO_NAMESPACE)) {
+			attribute = new Attribute(CLASS_ATTRIBUTE, CSSClassNames.shortenClasses(attribute.getValue()));
+		}
+
+		super.printAttribute(out, fstack, attribute);
+	}
+}
@@ -1,30 +1,56 @@
 package uk.nhs.fhir.render.html;
 
 import java.io.IOException;
+import java.util.regex.Pattern;
 
 import org.jdom2.Document;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
 
 public class HTMLUtil {
-	
+
+	private static final String ESCAPED_ENTITY_START = "&amp;#";
+	private static final Pattern ESCAPED_NUMERIC_ENTITY = Pattern.compile("&amp;#([\\dA-Fa-f]+);");
+
 	public static String docToString(Document document, boolean prettyPrint, boolean xmlDeclaration) throws IOException {
 		//fix html entities which will have had their apersands escaped
-        return docToEscapedString(document, prettyPrint, xmlDeclaration)
-        	.replaceAll("&amp;#([\\dA-Fa-f]+);", "&#$1;");
+        return fixNumericEntities(docToEscapedString(document, prettyPrint, xmlDeclaration));
 	}
-	
+
 	public static String docToEscapedString(Document document, boolean prettyPrint, boolean xmlDeclaration) throws IOException {
-		Format format = prettyPrint ? Format.getPrettyFormat() : Format.getCompactFormat();
-		
-		String output = 
-			new XMLOutputter(
-				format
-					.setOmitDeclaration(!xmlDeclaration)
-					.setIndent("  ")
-					.setLineSeparator(prettyPrint ? "\n" : ""))
-					.outputString(document);
-		
+		String output =
+			new XMLOutputter(htmlFormat(prettyPrint, xmlDeclaration))
+				.outputString(document);
+
         return output;
 	}
+
+	public static String docToString(Document document, HTMLOutputMode mode, boolean xmlDeclaration) throws IOException {
+        return fixNumericEntities(docToEscapedString(document, mode, xmlDeclaration));
+	}
+
+	public static String docToEscapedString(Document document, HTMLOutputMode mode, boolean xmlDeclaration) throws IOException {
+		return new XMLOutputter(mode.getFormat(xmlDeclaration), new HTMLOutputProcessor(mode))
+			.outputString(document);
+	}
+
+	public static Format htmlFormat(boolean prettyPrint, boolean xmlDeclaration) {
+		Format format = prettyPrint ? Format.getPrettyFormat() : Format.getCompactFormat();
+
+		return format
+			.setOmitDeclaration(!xmlDeclaration)
+			.setIndent("  ")
+			.setLineSeparator(prettyPrint ? "\n" : "");
+	}
+
+	/**
+	 * Numeric entities (e.g. &#160;) in text will have had their ampersands escaped.
+	 */
+	public static String fixNumericEntities(String escaped) {
+		if (escaped.indexOf(ESCAPED_ENTITY_START) == -1) {
+			return escaped;
+		}
+
+		return ESCAPED_NUMERIC_ENTITY.matcher(escaped).replaceAll("&#$1;");
+	}
 }
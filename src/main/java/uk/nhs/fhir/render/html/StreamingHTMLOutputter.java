@@ -0,0 +1,97 @@
+package uk.nhs.fhir.render.html;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.jdom2.CDATA;
+import org.jdom2.Comment;
+import org.jdom2.Content;
+import org.jdom2.Element;
+import org.jdom2.EntityRef;
+import org.jdom2.Text;
+import org.jdom2.output.Format;
+import org.jdom2.output.support.FormatStack;
+import org.jdom2.util.NamespaceStack;
+
+/**
+ * Writes an HTML page directly to a Writer from its head and body content, without building (and cloning content into)
+ * a Document or rendering the page to a String first. Output matches HTMLUtil.docToString for the same page.
+ *
+ * Numeric entities are fixed as each piece of escaped text is written, rather than by a pass over the whole page.
+ */
+public class StreamingHTMLOutputter extends HTMLOutputProcessor {
+
+	private final Format format;
+
+	public StreamingHTMLOutputter(HTMLOutputMode mode) {
+		super(mode);
+		this.format = mode.getFormat(false);
+	}
+
+	public void writeHTML(Writer out, List<Content> headContent, List<Content> bodyContent) throws IOException {
+		FormatStack fstack = new FormatStack(format);
+		NamespaceStack nstack = new NamespaceStack();
+		
+		// all content is in the XHTML namespace, declared on the root element
+		nstack.push(new Element("html", Elements.HTML_NS_URL));
+		write(out, "<html xmlns=\"" + Elements.HTML_NS_URL + "\">");
+		fstack.push();
+		writePad(out, fstack.getPadBetween());
+		writeWrapperElement(out, fstack, nstack, "head", headContent);
+		writePad(out, fstack.getPadBetween());
+		writeWrapperElement(out, fstack, nstack, "body", bodyContent);
+		writePad(out, fstack.getPadLast());
+		fstack.pop();
+		write(out, "</html>");
+		nstack.pop();
+
+		// XMLOutputter always ends a document with a line separator
+		writePad(out, fstack.getLineSeparator());
+		out.flush();
+	}
+
+	private void writeWrapperElement(Writer out, FormatStack fstack, NamespaceStack nstack, String name, List<Content> children) throws IOException {
+		if (children.isEmpty()) {
+			write(out, "<" + name + " />");
+			return;
+		}
+
+		write(out, "<" + name + ">");
+		fstack.push();
+		for (Content child : children) {
+			writePad(out, fstack.getPadBetween());
+			writeContent(out, fstack, nstack, child);
+		}
+		writePad(out, fstack.getPadLast());
+		fstack.pop();
+		write(out, "</" + name + ">");
+	}
+
+	private void writeContent(Writer out, FormatStack fstack, NamespaceStack nstack, Content content) throws IOException {
+		if (content instanceof Element) {
+			printElement(out, fstack, nstack, (Element)content);
+		} else if (content instanceof CDATA) {
+			printCDATA(out, fstack, (CDATA)content);
+		} else if (content instanceof Text) {
+			printText(out, fstack, (Text)content);
+		} else if (content instanceof Comment) {
+			printComment(out, fstack, (Comment)content);
+		} else if (content instanceof EntityRef) {
+			printEntityRef(out, fstack, (EntityRef)content);
+		} else {
+			throw new IllegalStateException("Unexpected content type " + content.getClass().getName());
+		}
+	}
+
+	private void writePad(Writer out, String pad) throws IOException {
+		if (pad != null) {
+			write(out, pad);
+		}
+	}
+
+	@Override
+	protected void write(Writer out, String str) throws IOException {
+		super.write(out, str == null ? null : HTMLUtil.fixNumericEntities(str));
+	}
+}
@@ -18,6 +18,7 @@ import uk.nhs.fhir.data.url.LinkDatas;
 import uk.nhs.fhir.render.html.Elements;
 import uk.nhs.fhir.render.html.style.CSSRule;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.CSSTag;
 import uk.nhs.fhir.render.html.style.FhirCSS;
 import uk.nhs.fhir.render.html.style.FhirColour;
@@ -74,8 +75,7 @@ public class LinkCell extends TableCell {
 		
 		List<Content> children = Lists.newArrayList(outerLink);
 		if (!nestedLinks.isEmpty()
-		  // exclude child links for Extensions (these should be displayed as URLs in the ResourceInfos instead
-		  && !primaryLink.getText().equals("Extension")) {
+		  && displaysNestedLinks(primaryLink)) {
 			children.add(new Text(" ("));
 			
 			boolean first = true;
@@ -103,6 +103,13 @@ public class LinkCell extends TableCell {
 		return children;
 	}
 	
+	/**
+	 * Child links for Extensions are excluded (these should be displayed as URLs in the ResourceInfos instead)
+	 */
+	public static boolean displaysNestedLinks(LinkData primaryLink) {
+		return !primaryLink.getText().equals("Extension");
+	}
+	
 	private Element makeMultiLinkCell() {
 		List<Content> cellContents = Lists.newArrayList();
 
@@ -161,7 +168,13 @@ public class LinkCell extends TableCell {
 		return link;
 	}
 	
-	public static List<CSSStyleBlock> getStyles() {
+	private static final CSSStyleBundle STYLES = CSSStyleBundle.of(makeStyles());
+	
+	public static CSSStyleBundle getStyles() {
+		return STYLES;
+	}
+	
+	private static List<CSSStyleBlock> makeStyles() {
 		List<CSSStyleBlock> styles = Lists.newArrayList();
 		
 		styles.add(
@@ -14,6 +14,7 @@ import uk.nhs.fhir.data.structdef.ResourceFlag;
 import uk.nhs.fhir.data.structdef.ResourceFlags;
 import uk.nhs.fhir.render.html.Elements;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.FhirCSS;
 
 public class ResourceFlagsCell extends TableCell {
@@ -26,31 +27,50 @@ public class ResourceFlagsCell extends TableCell {
 
 	@Override
 	public Element makeCell() {
-		Set<ResourceFlag> flags = resourceFlags.getFlags();
-		
 		List<Content> renderedFlags = Lists.newArrayList();
 
-		addIfPresent(ResourceFlag.SUMMARY, flags, renderedFlags);
-		addIfPresent(ResourceFlag.MODIFIER, flags, renderedFlags);
-		addIfPresent(ResourceFlag.CONSTRAINED, flags, renderedFlags);
-		addIfPresent(ResourceFlag.MUSTSUPPORT, flags, renderedFlags);
-		addIfPresent(ResourceFlag.NOEXTEND, flags, renderedFlags);
+		for (ResourceFlag flag : getDisplayedFlags(resourceFlags)) {
+			renderedFlags.add(
+				Elements.withAttributeAndText("span", 
+					new Attribute("title", flag.getDesc()), 
+					flag.getFlag()));
+		}
 		
 		return Elements.withAttributeAndChildren("td", 
 			new Attribute("class", FhirCSS.RESOURCE_FLAG), 
 			renderedFlags);
 	}
 
-	private void addIfPresent(ResourceFlag flag, Set<ResourceFlag> flags, List<Content> renderedFlags) {
+	/**
+	 * The flags which are displayed, in display order
+	 */
+	public static List<ResourceFlag> getDisplayedFlags(ResourceFlags resourceFlags) {
+		Set<ResourceFlag> flags = resourceFlags.getFlags();
+		
+		List<ResourceFlag> displayedFlags = Lists.newArrayList();
+
+		addIfPresent(ResourceFlag.SUMMARY, flags, displayedFlags);
+		addIfPresent(ResourceFlag.MODIFIER, flags, displayedFlags);
+		addIfPresent(ResourceFlag.CONSTRAINED, flags, displayedFlags);
+		addIfPresent(ResourceFlag.MUSTSUPPORT, flags, displayedFlags);
+		addIfPresent(ResourceFlag.NOEXTEND, flags, displayedFlags);
+		
+		return displayedFlags;
+	}
+
+	private static void addIfPresent(ResourceFlag flag, Set<ResourceFlag> flags, List<ResourceFlag> displayedFlags) {
 		if (flags.contains(flag)) {
-			renderedFlags.add(
-				Elements.withAttributeAndText("span", 
-					new Attribute("title", flag.getDesc()), 
-					flag.getFlag()));
+			displayedFlags.add(flag);
 		}
 	}
 
-	public static List<CSSStyleBlock> getStyles() {
+	private static final CSSStyleBundle STYLES = CSSStyleBundle.of(makeStyles());
+	
+	public static CSSStyleBundle getStyles() {
+		return STYLES;
+	}
+	
+	private static List<CSSStyleBlock> makeStyles() {
 		List<CSSStyleBlock> styles = Lists.newArrayList();
 		
 		/*styles.add(
@@ -16,6 +16,7 @@ import uk.nhs.fhir.data.url.FhirURL;
 import uk.nhs.fhir.render.html.Elements;
 import uk.nhs.fhir.render.html.style.CSSRule;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.CSSTag;
 import uk.nhs.fhir.render.html.style.FhirCSS;
 import uk.nhs.fhir.render.html.style.FhirColour;
@@ -35,17 +36,10 @@ public class ValueWithInfoCell extends TableCell {
 	public Element makeCell() {
 		List<Content> valueDataNodes = Lists.newArrayList();
 		if (!value.isEmpty()) {
-			String valueForDisplay;
-			if (value.contains(" | ")) {
-				valueForDisplay = value; 
-			} else {
-				valueForDisplay = StringUtil.capitaliseLowerCase(value); 
-			}
-			
 			valueDataNodes.add(
 				Elements.withAttributeAndText("div", 
 					new Attribute("class", FhirCSS.INFO_NAME_BOLD), 
-					valueForDisplay));
+					getValueForDisplay(value)));
 		}
 		
 		for (ResourceInfo resourceInfo : resourceInfos) {
@@ -69,7 +63,15 @@ public class ValueWithInfoCell extends TableCell {
 			valueDataNodes);
 	}
 	
-	private String getDisplayName(ResourceInfo resourceInfo) {
+	public static String getValueForDisplay(String value) {
+		if (value.contains(" | ")) {
+			return value; 
+		} else {
+			return StringUtil.capitaliseLowerCase(value); 
+		}
+	}
+	
+	public static String getDisplayName(ResourceInfo resourceInfo) {
 		String name = resourceInfo.getName();
 		
 		String qualifier = resourceInfo.getQualifier();
@@ -96,15 +98,7 @@ public class ValueWithInfoCell extends TableCell {
 		
 		List<Content> constraintInfoText = Lists.newArrayList();
 		if (hasText) {
-			String displayText;
-			if (StringUtil.looksLikeUrl(description)) {
-				//don't capitalise
-				displayText = description;
-			} else {
-				displayText = StringUtil.capitaliseLowerCase(description);
-			}
-			
-			constraintInfoText.add(new Text(displayText));
+			constraintInfoText.add(new Text(getDescriptionForDisplay(description)));
 		}
 		
 		if (bracketLink) {
@@ -132,7 +126,22 @@ public class ValueWithInfoCell extends TableCell {
 		return constraintInfoText;
 	}
 	
-	public static List<CSSStyleBlock> getStyles() {
+	public static String getDescriptionForDisplay(String description) {
+		if (StringUtil.looksLikeUrl(description)) {
+			//don't capitalise
+			return description;
+		} else {
+			return StringUtil.capitaliseLowerCase(description);
+		}
+	}
+	
+	private static final CSSStyleBundle STYLES = CSSStyleBundle.of(makeStyles());
+	
+	public static CSSStyleBundle getStyles() {
+		return STYLES;
+	}
+	
+	private static List<CSSStyleBlock> makeStyles() {
 		
 		List<CSSStyleBlock> styles = Lists.newArrayList();
 		styles.add(
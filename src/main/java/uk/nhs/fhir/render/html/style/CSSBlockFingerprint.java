@@ -0,0 +1,43 @@
+package uk.nhs.fhir.render.html.style;
+
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A block's selectors and rules, compared by value. Blocks with the same selectors and rules (in any order) have equal
+ * fingerprints.
+ * Nothing is interned, so a page's selectors and rules (e.g. tree backgrounds with their data urls) are only held for as
+ * long as the page's blocks are.
+ */
+final class CSSBlockFingerprint {
+	private final Set<String> selectors;
+	private final Set<CSSRule> rules;
+	private final int hash;
+
+	CSSBlockFingerprint(List<String> selectors, List<CSSRule> rules) {
+		this.selectors = ImmutableSet.copyOf(selectors);
+		this.rules = ImmutableSet.copyOf(rules);
+		hash = 31 * this.selectors.hashCode() + this.rules.hashCode();
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		} else if (!(o instanceof CSSBlockFingerprint)) {
+			return false;
+		} else {
+			CSSBlockFingerprint other = (CSSBlockFingerprint)o;
+			return hash == other.hash
+			  && selectors.equals(other.selectors)
+			  && rules.equals(other.rules);
+		}
+	}
+}
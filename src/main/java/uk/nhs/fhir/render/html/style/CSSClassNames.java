@@ -0,0 +1,114 @@
+package uk.nhs.fhir.render.html.style;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+
+/**
+ * Short tokens for the FhirCSS class names, for minified output. Each token is derived from a hash of its class name alone,
+ * so adding or removing a class doesn't change the tokens of the others, and pages rendered by different renderer builds
+ * still match the same stylesheet.
+ * Other class names (e.g. generated tree backgrounds) are left unchanged.
+ */
+public final class CSSClassNames {
+
+	private static final String SHORT_NAME_PREFIX = "f";
+	private static final int SHORT_NAME_HASH_LENGTH = 4;
+	private static final int SHORT_NAME_HASH_RANGE = (int)Math.pow(Character.MAX_RADIX, SHORT_NAME_HASH_LENGTH);
+
+	// referenced by scripts outside the rendered pages
+	private static final Set<String> FIXED_NAMES = ImmutableSet.of(FhirCSS.TAB_LINK);
+
+	private static final Pattern SELECTOR_CLASS = Pattern.compile("\\.(-?[_a-zA-Z][_a-zA-Z0-9-]*)");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final Map<String, String> SHORT_NAMES = makeShortNames();
+
+	private CSSClassNames() {}
+
+	private static Map<String, String> makeShortNames() {
+		Set<String> classNames = Sets.newTreeSet();
+		for (Field field : FhirCSS.class.getFields()) {
+			if (Modifier.isStatic(field.getModifiers())
+			  && field.getType().equals(String.class)) {
+				try {
+					classNames.add((String)field.get(null));
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException("Failed to read class name " + field.getName(), e);
+				}
+			}
+		}
+		classNames.removeAll(FIXED_NAMES);
+
+		Map<String, String> shortNames = Maps.newTreeMap();
+		Map<String, String> classNamesByShortName = Maps.newHashMap();
+		for (String className : classNames) {
+			String shortName = makeShortName(className);
+			String existing = classNamesByShortName.put(shortName, className);
+			if (existing != null
+			  || classNames.contains(shortName)
+			  || FIXED_NAMES.contains(shortName)) {
+				// rename one of the classes - a different scheme would change the tokens of existing classes
+				throw new IllegalStateException("Short name " + shortName + " for class " + className + " clashes with " 
+					+ (existing != null ? "the short name for " + existing : "a class name"));
+			}
+			shortNames.put(className, shortName);
+		}
+		return ImmutableMap.copyOf(shortNames);
+	}
+
+	private static String makeShortName(String className) {
+		int hash = Hashing.murmur3_32().hashString(className, StandardCharsets.UTF_8).asInt();
+		String token = Integer.toString(Math.floorMod(hash, SHORT_NAME_HASH_RANGE), Character.MAX_RADIX);
+		return SHORT_NAME_PREFIX + Strings.padStart(token, SHORT_NAME_HASH_LENGTH, '0');
+	}
+
+	/**
+	 * @return the short name for a FhirCSS class, or the name unchanged
+	 */
+	public static String shorten(String className) {
+		return SHORT_NAMES.getOrDefault(className, className);
+	}
+
+	/**
+	 * Shortens each of the names in the value of a class attribute
+	 */
+	public static String shortenClasses(String classAttribute) {
+		StringBuilder shortened = new StringBuilder();
+		for (String className : WHITESPACE.split(classAttribute.trim())) {
+			if (shortened.length() > 0) {
+				shortened.append(' ');
+			}
+			shortened.append(shorten(className));
+		}
+		return shortened.toString();
+	}
+
+	/**
+	 * Shortens each of the class names in a CSS selector
+	 */
+	public static String shortenSelector(String selector) {
+		Matcher matcher = SELECTOR_CLASS.matcher(selector);
+		StringBuffer shortened = new StringBuffer();
+		while (matcher.find()) {
+			matcher.appendReplacement(shortened, Matcher.quoteReplacement("." + shorten(matcher.group(1))));
+		}
+		matcher.appendTail(shortened);
+		return shortened.toString();
+	}
+
+	public static Map<String, String> getShortNames() {
+		return SHORT_NAMES;
+	}
+}
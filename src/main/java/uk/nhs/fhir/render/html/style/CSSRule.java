@@ -31,6 +31,10 @@ public class CSSRule {
 			.toString();
 	}
 	
+	public String toMinifiedString() {
+		return name + ":" + arguments;
+	}
+	
 	@Override
 	public int hashCode() {
 		return name.hashCode() + arguments.hashCode();
@@ -12,6 +12,12 @@ public class CSSStyleBlock {
 	private final List<String> selectors;
 	private final List<CSSRule> rules;
 	
+	// built when first needed, and discarded if the block changes
+	private CSSBlockFingerprint fingerprint = null;
+	private String formattedText = null;
+	private String minifiedText = null;
+	private String minifiedShortNamesText = null;
+	
 	public CSSStyleBlock() {
 		this(Lists.newArrayList(), Lists.newArrayList());
 	}
@@ -30,10 +36,25 @@ public class CSSStyleBlock {
 	
 	public void addSelector(String selector) {
 		selectors.add(selector);
+		fingerprint = null;
+		formattedText = null;
+		minifiedText = null;
+		minifiedShortNamesText = null;
 	}
 	
 	public void addRule(CSSRule rule) {
 		rules.add(rule);
+		fingerprint = null;
+		formattedText = null;
+		minifiedText = null;
+		minifiedShortNamesText = null;
+	}
+	
+	CSSBlockFingerprint getFingerprint() {
+		if (fingerprint == null) {
+			fingerprint = new CSSBlockFingerprint(selectors, rules);
+		}
+		return fingerprint;
 	}
 	
 	public List<String> getSelectors() {
@@ -45,17 +66,41 @@ public class CSSStyleBlock {
 	}
 	
 	public String toFormattedString() {
+		if (formattedText == null) {
+			formattedText = new StringBuilder()
+				.append(String.join(",\n", selectors)) 
+				.append(" {\n\t")
+				.append(rules.stream().map(rule -> rule.toFormattedString()).collect(Collectors.joining(";\n\t")))
+				.append("\n}")
+				.toString();
+		}
 		
-		List<String> ruleTexts = Lists.newArrayList();
-		for (CSSRule rule : rules) {
-			ruleTexts.add(rule.toFormattedString());
+		return formattedText;
+	}
+	
+	/**
+	 * @param shortClassNames whether to replace FhirCSS class names in the selectors with their short names (see CSSClassNames)
+	 */
+	public String toMinifiedString(boolean shortClassNames) {
+		if (shortClassNames) {
+			if (minifiedShortNamesText == null) {
+				minifiedShortNamesText = minify(selectors.stream().map(CSSClassNames::shortenSelector).collect(Collectors.toList()));
+			}
+			return minifiedShortNamesText;
+		} else {
+			if (minifiedText == null) {
+				minifiedText = minify(selectors);
+			}
+			return minifiedText;
 		}
-
+	}
+	
+	private String minify(List<String> blockSelectors) {
 		return new StringBuilder()
-			.append(String.join(",\n", selectors)) 
-			.append(" {\n\t")
-			.append(rules.stream().map(rule -> rule.toFormattedString()).collect(Collectors.joining(";\n\t")))
-			.append("\n}")
+			.append(String.join(",", blockSelectors))
+			.append("{")
+			.append(rules.stream().map(rule -> rule.toMinifiedString()).collect(Collectors.joining(";")))
+			.append("}")
 			.toString();
 	}
 }
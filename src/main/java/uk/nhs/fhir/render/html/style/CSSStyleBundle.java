@@ -0,0 +1,37 @@
+package uk.nhs.fhir.render.html.style;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A fixed set of style blocks, such as all the styles for one kind of cell or table. Each bundle is built once, when the
+ * class which owns it is loaded, and is then shared by every page and render thread. The blocks can't be modified, and
+ * their CSS text (formatted and minified) and fingerprints are prepared as the bundle is built.
+ */
+public final class CSSStyleBundle {
+	private final List<CSSStyleBlock> blocks;
+
+	private CSSStyleBundle(List<CSSStyleBlock> blocks) {
+		this.blocks = blocks;
+	}
+
+	public static CSSStyleBundle of(List<CSSStyleBlock> blocks) {
+		ImmutableList.Builder<CSSStyleBlock> frozenBlocks = ImmutableList.builder();
+
+		for (CSSStyleBlock block : blocks) {
+			CSSStyleBlock frozenBlock = new CSSStyleBlock(ImmutableList.copyOf(block.getSelectors()), ImmutableList.copyOf(block.getRules()));
+			frozenBlock.toFormattedString();
+			frozenBlock.toMinifiedString(false);
+			frozenBlock.toMinifiedString(true);
+			frozenBlock.getFingerprint();
+			frozenBlocks.add(frozenBlock);
+		}
+
+		return new CSSStyleBundle(frozenBlocks.build());
+	}
+
+	public List<CSSStyleBlock> getBlocks() {
+		return blocks;
+	}
+}
@@ -3,16 +3,23 @@ package uk.nhs.fhir.render.html.style;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * Holds a document's styles.
  * Preserves the order of original addition (at the level of a CSSStyleBlock) while avoiding duplication and checking consistency.
+ * A block which has already been added is recognised by its fingerprint (see CSSBlockFingerprint) without checking its
+ * rules again.
  */
 public class CSSStyleSection {
-	private final Map<String, Map<String, String>> rulesAdded = Maps.newHashMap();
+	// selector -> rule name -> the rule added for that selector
+	private final Map<String, Map<String, CSSRule>> rulesAdded = Maps.newHashMap();
+	private final Set<CSSBlockFingerprint> blocksAdded = Sets.newHashSet();
+	private final Set<CSSStyleBundle> bundlesAdded = Sets.newIdentityHashSet();
 	private final List<CSSStyleBlock> styleBlocks = Lists.newArrayList();
 
 	public List<CSSStyleBlock> getBlocks() {
@@ -23,38 +30,73 @@ public class CSSStyleSection {
 		addStyles(styles.getBlocks());
 	}
 	
+	public void addBundle(CSSStyleBundle bundle) {
+		if (bundlesAdded.add(bundle)) {
+			addStyles(bundle.getBlocks());
+		}
+	}
+	
 	public void addStyles(List<CSSStyleBlock> styles) {
 		for (CSSStyleBlock block : styles) {
 			addBlock(block);
 		}
 	}
 	
+	/**
+	 * @return true if each of the block's rules has already been added for each of its selectors
+	 */
+	public boolean containsBlock(CSSStyleBlock block) {
+		if (blocksAdded.contains(block.getFingerprint())) {
+			return true;
+		}
+
+		for (String selector : block.getSelectors()) {
+			Map<String, CSSRule> existingRules = rulesAdded.get(selector);
+			if (existingRules == null) {
+				return false;
+			}
+			
+			for (CSSRule rule : block.getRules()) {
+				if (!rule.equals(existingRules.get(rule.getName()))) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
 	public void addBlock(CSSStyleBlock block) {
+		CSSBlockFingerprint fingerprint = block.getFingerprint();
+		if (blocksAdded.contains(fingerprint)) {
+			return;
+		}
+		
 		boolean allExist = true;
 		boolean noneExist = true;
 		
-		Map<CSSRule, List<String>> selectorsForRules = Maps.newHashMap();
+		Map<CSSRule, List<String>> selectorsForRules = Maps.newLinkedHashMap();
 		
 		for (CSSRule rule : block.getRules()) {
-			for (String selector : block.getSelectors())  {
-				if (ruleExists(selector, rule)) {
+			for (String selector : block.getSelectors()) {
+				Map<String, CSSRule> existingRules = rulesAdded.computeIfAbsent(selector, s -> Maps.newHashMap());
+				CSSRule existingRule = existingRules.get(rule.getName());
+				
+				if (existingRule != null) {
 					noneExist = false;
 					
-					assertMatchesExistingRule(selector, rule);
+					assertMatchesExistingRule(selector, existingRule, rule);
 				} else { 
 					allExist = false;
 					
-					if (!selectorsForRules.containsKey(rule)) {
-						selectorsForRules.put(rule, Lists.newArrayList());
-					}
-					List<String> selectorsForRule = selectorsForRules.get(rule);
-					
-					selectorsForRule.add(selector);
-					addRule(selector, rule);
+					selectorsForRules.computeIfAbsent(rule, r -> Lists.newArrayList()).add(selector);
+					existingRules.put(rule.getName(), rule);
 				}
 			}
 		}
 		
+		blocksAdded.add(fingerprint);
+		
 		if (allExist) {
 			return;
 		} else if (noneExist) {
@@ -65,60 +107,27 @@ public class CSSStyleSection {
 		}
 	}
 
+	/**
+	 * Adds a block for each distinct list of selectors, holding the rules which were added for exactly those selectors
+	 */
 	void combineAndAddRules(Map<CSSRule, List<String>> selectorsForRules) {
-		while (!selectorsForRules.isEmpty()) {
-			List<String> nextSelectors = selectorsForRules.entrySet().iterator().next().getValue();
-			
-			List<CSSRule> matchingRules = Lists.newArrayList();
-			for (Entry<CSSRule, List<String>> e : selectorsForRules.entrySet()) {
-				if (e.getValue().equals(nextSelectors)) {
-					matchingRules.add(e.getKey());
-				}
-			}
-			
-			// remove matches from remaining
-			for (CSSRule rule : matchingRules) {
-				selectorsForRules.remove(rule);
-			}
-
-			CSSStyleBlock newBlock = new CSSStyleBlock(
-				Lists.<String>newArrayList(nextSelectors), 
-				Lists.<CSSRule>newArrayList(matchingRules));
-			nextSelectors.forEach(newBlock::addSelector);
-			matchingRules.forEach(newBlock::addRule);
-			
-			styleBlocks.add(newBlock);
+		Map<List<String>, List<CSSRule>> rulesForSelectors = Maps.newLinkedHashMap();
+		for (Entry<CSSRule, List<String>> e : selectorsForRules.entrySet()) {
+			rulesForSelectors.computeIfAbsent(e.getValue(), selectors -> Lists.newArrayList()).add(e.getKey());
 		}
-	}
-
-	private void addRule(String selector, CSSRule rule) {
-		if (!rulesAdded.containsKey(selector)) {
-			rulesAdded.put(selector, Maps.newHashMap());
-		}		
-		Map<String, String> rulesForSelector = rulesAdded.get(selector);
 		
-		if (rulesForSelector.containsKey(rule.getName())) {
-			throw new IllegalStateException("Overwriting rule for selector " + selector + ": " + rule.getName());
-		} else {
-			rulesForSelector.put(rule.getName(), rule.getArguments());
+		for (Entry<List<String>, List<CSSRule>> e : rulesForSelectors.entrySet()) {
+			styleBlocks.add(
+				new CSSStyleBlock(
+					Lists.<String>newArrayList(e.getKey()), 
+					Lists.<CSSRule>newArrayList(e.getValue())));
 		}
 	}
 
-	private void assertMatchesExistingRule(String selector, CSSRule rule) {
-		String existingArguments = rulesAdded.get(selector).get(rule.getName());
-		String newArguments = rule.getArguments();
-		if (!existingArguments.equals(newArguments)) {
-			throw new IllegalStateException("New rule for " + selector + " " + rule.getName() + ": " + newArguments
-				+ " would overwrite existing rule: " + existingArguments);
+	private void assertMatchesExistingRule(String selector, CSSRule existingRule, CSSRule rule) {
+		if (!existingRule.equals(rule)) {
+			throw new IllegalStateException("New rule for " + selector + " " + rule.getName() + ": " + rule.getArguments()
+				+ " would overwrite existing rule: " + existingRule.getArguments());
 		}
 	}
-
-	private boolean ruleExists(String selector, CSSRule rule) {
-		if (!rulesAdded.containsKey(selector)) {
-			return false;
-		}
-		
-		Map<String, String> rulesForSelector = rulesAdded.get(selector);
-		return rulesForSelector.containsKey(rule.getName());
-	}
 }
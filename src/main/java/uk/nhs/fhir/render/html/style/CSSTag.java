@@ -5,6 +5,8 @@ public interface CSSTag {
 	public static final String BACKGROUND_IMAGE = "background-image";
 	public static final String BACKGROUND_REPEAT = "background-repeat";
 	public static final String BACKGROUND_COLOR = "background-color";
+	public static final String BACKGROUND_POSITION = "background-position";
+	public static final String BACKGROUND_SIZE = "background-size";
 	
 	public static final String MARGIN = "margin";
 	public static final String MARGIN_LEFT = "margin-left";
@@ -56,6 +58,7 @@ public interface CSSTag {
 	public static final String FLOAT = "float";
 	public static final String CLEAR = "clear";
 	public static final String DISPLAY = "display";
+	public static final String CURSOR = "cursor";
 	
 	public static final String TABLE_LAYOUT = "table-layout";
 }
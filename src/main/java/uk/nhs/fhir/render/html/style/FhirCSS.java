@@ -20,6 +20,8 @@ public interface FhirCSS {
 	public static final String TREE_ICON = "fhir-tree-icon";
 	public static final String TREE_ICONS = "fhir-tree-icons";
 	public static final String TREE_RESOURCE_ICON = "fhir-tree-resource-icon";
+	public static final String TREE_ROW_COLLAPSED = "fhir-tree-row-collapsed";
+	public static final String TREE_ROW_EXPANDED = "fhir-tree-row-expanded";
 	
 	public static final String INDENT_WRAPPED_TEXT = "fhir-indent-wrapped-text";
 	
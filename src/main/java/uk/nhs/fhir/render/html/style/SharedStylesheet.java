@@ -0,0 +1,111 @@
+package uk.nhs.fhir.render.html.style;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+
+import uk.nhs.fhir.render.html.HTMLOutputMode;
+
+/**
+ * A single CSS file holding the style bundles shared by the rendered pages, which link to it instead of repeating them
+ * inline. The file name includes a hash of its content so that it can be cached indefinitely, and so that pages rendered
+ * with different styles never link to the wrong file.
+ * Styles which are only known once a page is rendered (e.g. tree backgrounds) stay inline in that page.
+ *
+ * The shared blocks are linked ahead of a page's inline styles, and by pages which don't use all of them. So that neither
+ * changes how a page is styled, no two bundles in the stylesheet target the same selector (a bundle which would is left
+ * inline), and a page whose inline styles target a shared selector doesn't link the stylesheet (see SectionedHTMLDoc).
+ */
+public class SharedStylesheet {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SharedStylesheet.class);
+
+	private static final String FILE_NAME_PREFIX = "fhir-styles-";
+	private static final int FILE_NAME_HASH_LENGTH = 16;
+
+	private final CSSStyleSection styles = new CSSStyleSection();
+	private final Set<String> selectors = Sets.newHashSet();
+	private final String css;
+	private final Path path;
+
+	/**
+	 * @param directory the root of the rendered output, which the file is written into
+	 */
+	public SharedStylesheet(Path directory, List<CSSStyleBundle> bundles) {
+		this(directory, bundles, HTMLOutputMode.PRETTY);
+	}
+
+	/**
+	 * @param directory the root of the rendered output, which the file is written into
+	 * @param mode the output mode of the pages linking to the stylesheet, which determines how it is laid out
+	 */
+	public SharedStylesheet(Path directory, List<CSSStyleBundle> bundles, HTMLOutputMode mode) {
+		for (CSSStyleBundle bundle : bundles) {
+			if (!overlapsSharedStyles(bundle)) {
+				styles.addBundle(bundle);
+				bundle.getBlocks().forEach(block -> selectors.addAll(block.getSelectors()));
+			}
+		}
+
+		css = mode.formatStyles(styles.getBlocks());
+
+		String hash = Hashing.sha256().hashString(css, StandardCharsets.UTF_8).toString().substring(0, FILE_NAME_HASH_LENGTH);
+		path = directory.resolve(FILE_NAME_PREFIX + hash + ".css");
+	}
+
+	/**
+	 * Bundles with a block targeting a selector already shared (other than the same block, shared by both bundles) are left
+	 * to be written inline by the pages which use them
+	 */
+	private boolean overlapsSharedStyles(CSSStyleBundle bundle) {
+		for (CSSStyleBlock block : bundle.getBlocks()) {
+			if (!styles.containsBlock(block)
+			  && sharesSelectorWith(block)) {
+				LOG.debug("Leaving styles out of shared stylesheet, since they target a shared selector: " + block.getSelectors());
+				return true;
+			}
+		}
+		
+		return false;
+	}
+
+	public String getCSS() {
+		return css;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the URL of the stylesheet, relative to a page in this directory
+	 */
+	public String getHref(Path pageDirectory) {
+		Path relativePath = pageDirectory.toAbsolutePath().relativize(path.toAbsolutePath());
+		return relativePath.toString().replace(relativePath.getFileSystem().getSeparator(), "/");
+	}
+
+	public boolean contains(CSSStyleBlock block) {
+		return styles.containsBlock(block);
+	}
+
+	/**
+	 * @return true if the block targets any of the selectors of the shared blocks
+	 */
+	public boolean sharesSelectorWith(CSSStyleBlock block) {
+		for (String selector : block.getSelectors()) {
+			if (selectors.contains(selector)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+}
@@ -10,6 +10,7 @@ import com.google.common.collect.Lists;
 import uk.nhs.fhir.render.html.Elements;
 import uk.nhs.fhir.render.html.style.CSSRule;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.CSSTag;
 import uk.nhs.fhir.render.html.style.FhirCSS;
 import uk.nhs.fhir.render.html.style.FhirColour;
@@ -96,7 +97,20 @@ public class Table {
 		return rows;
 	}
 	
-	public static List<CSSStyleBlock> getStyles() {
+	/**
+	 * A table with the same columns and classes as this one, displaying only the given rows
+	 */
+	public Table withRows(List<TableRow> rows) {
+		return new Table(cols, rows, additionalClasses);
+	}
+	
+	private static final CSSStyleBundle STYLES = CSSStyleBundle.of(makeStyles());
+	
+	public static CSSStyleBundle getStyles() {
+		return STYLES;
+	}
+	
+	private static List<CSSStyleBlock> makeStyles() {
 		List<CSSStyleBlock> styles = Lists.newArrayList();
 
 		styles.add(
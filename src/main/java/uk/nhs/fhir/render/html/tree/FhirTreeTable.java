@@ -1,6 +1,12 @@
 package uk.nhs.fhir.render.html.tree;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -8,17 +14,23 @@ import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import uk.nhs.fhir.data.ResourceInfo;
 import uk.nhs.fhir.data.ResourceInfoType;
 import uk.nhs.fhir.data.structdef.BindingInfo;
 import uk.nhs.fhir.data.structdef.ConstraintInfo;
+import uk.nhs.fhir.data.structdef.ResourceFlag;
 import uk.nhs.fhir.data.structdef.tree.AbstractFhirTreeNode;
 import uk.nhs.fhir.data.structdef.tree.AbstractFhirTreeNodeData;
 import uk.nhs.fhir.data.structdef.tree.BindingResourceInfo;
 import uk.nhs.fhir.data.structdef.tree.FhirTreeData;
 import uk.nhs.fhir.data.url.FhirURL;
+import uk.nhs.fhir.data.url.LinkData;
 import uk.nhs.fhir.data.url.LinkDatas;
 import uk.nhs.fhir.event.EventHandlerContext;
 import uk.nhs.fhir.event.RendererEventType;
@@ -30,6 +42,7 @@ import uk.nhs.fhir.render.html.cell.TreeNodeCell;
 import uk.nhs.fhir.render.html.cell.ValueWithInfoCell;
 import uk.nhs.fhir.render.html.style.CSSRule;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.CSSTag;
 import uk.nhs.fhir.render.html.style.FhirCSS;
 import uk.nhs.fhir.render.html.table.Table;
@@ -48,6 +61,15 @@ public class FhirTreeTable<T extends AbstractFhirTreeNodeData, U extends Abstrac
 	
 	private final FhirIconProvider<T, U> icons = new FhirIconProvider<>();
 	
+	// row background classes used by the last table built, so that only those backgrounds need styles
+	private final Set<String> backgroundCSSClasses = Sets.newHashSet();
+	
+	// index of the parent of each row of the last table built (-1 for the root)
+	private final List<Integer> parentRowIndexes = Lists.newArrayList();
+	
+	// full path of each slicing discriminator -> sliced node -> discriminator path relative to it. Rebuilt for each table.
+	private final Map<String, Map<U, String>> slicingAncestorsByDiscriminatorPath = Maps.newHashMap();
+	
 	public FhirTreeTable(FhirTreeData<T, U> data, FhirVersion version) {
 		this.data = data;
 		this.version = version;
@@ -58,7 +80,31 @@ public class FhirTreeTable<T extends AbstractFhirTreeNodeData, U extends Abstrac
 	}
 
 	public Table asTable() {
-		return new Table(getColumns(), getRows(), Lists.newArrayList(FhirCSS.TREE));
+		return new Table(getColumns(), getRows(Optional.empty()), Lists.newArrayList(FhirCSS.TREE));
+	}
+	
+	/**
+	 * The table as a shell which loads most of its rows from a JSON file (see LazyTreeTable)
+	 */
+	public LazyTreeTable asLazyTable() {
+		List<LazyTreeRow> lazyRows = Lists.newArrayList();
+		Table table = new Table(getColumns(), getRows(Optional.of(lazyRows)), Lists.newArrayList(FhirCSS.TREE));
+		return new LazyTreeTable(table, lazyRows, getParentRowIndexes(), getBackgroundCSSClasses());
+	}
+	
+	/**
+	 * The background CSS classes (see TablePNGGenerator.getCSSClass) of the rows in the table returned by asTable()
+	 */
+	public Set<String> getBackgroundCSSClasses() {
+		return ImmutableSet.copyOf(backgroundCSSClasses);
+	}
+	
+	/**
+	 * The index of the parent row of each row in the table returned by asTable(), or -1 for the root. Rows are in depth-first
+	 * order, so a row's parent always comes before it.
+	 */
+	public List<Integer> getParentRowIndexes() {
+		return ImmutableList.copyOf(parentRowIndexes);
 	}
 	
 	private List<TableTitle> getColumns() {
@@ -71,62 +117,88 @@ public class FhirTreeTable<T extends AbstractFhirTreeNodeData, U extends Abstrac
 		);
 	}
 	
-	private List<TableRow> getRows() {
+	/**
+	 * Lays out the rows in a single depth-first pass. The vertical line state is held in one bitset which is updated in
+	 * place as the walk moves up and down the tree: bit i is set if a line continues down through column i.
+	 * @param lazyRows if present, the fields of each row are also added to it
+	 */
+	private List<TableRow> getRows(Optional<List<LazyTreeRow>> lazyRows) {
 		List<TableRow> tableRows = Lists.newArrayList();
+		backgroundCSSClasses.clear();
+		parentRowIndexes.clear();
+		indexSlicingDiscriminators();
 		
 		U root = data.getRoot();
 		
-		List<Boolean> rootVlines = Lists.newArrayList(root.hasChildren());
-		List<FhirTreeIcon> rootIcons = Lists.newArrayList();
-		
-		addTableRow(tableRows, root, rootVlines, rootIcons, true);
-		addChildrenRows(root, tableRows, rootVlines);
+		BitSet vlines = new BitSet();
+		vlines.set(0, root.hasChildren());
+		addTableRow(tableRows, lazyRows, root, vlines, 1, Lists.newArrayList(), true);
+		parentRowIndexes.add(-1);
 		
-		return tableRows;
-	}
-
-	private void addChildrenRows(U node, List<TableRow> tableRows, List<Boolean> vlines) {
+		// nodes whose children are being added, their row indexes, and the index of the next child to add for each
+		List<U> parents = Lists.newArrayList(root);
+		List<Integer> parentRows = Lists.newArrayList(0);
+		int[] nextChildIndexes = new int[16];
 		
-		List<U> children = node.getChildren();
-		for (int i=0; i<children.size(); i++) {
-			U childNode = children.get(i);
+		while (!parents.isEmpty()) {
+			int parentDepth = parents.size() - 1;
+			List<U> children = parents.get(parentDepth).getChildren();
 			
-			List<Boolean> childVlines = Lists.newArrayList(vlines);
-			childVlines.add(childNode.hasChildren());
+			int childIndex = nextChildIndexes[parentDepth];
+			if (childIndex == children.size()) {
+				parents.remove(parentDepth);
+				parentRows.remove(parentDepth);
+				continue;
+			}
+			nextChildIndexes[parentDepth] = childIndex + 1;
+			
+			U childNode = children.get(childIndex);
+			int iconCount = parentDepth + 1;
 			
-			boolean lastChild = (i == children.size() - 1);
+			boolean lastChild = (childIndex == children.size() - 1);
 			if (lastChild) {
-				childVlines.set(childVlines.size()-2, Boolean.FALSE);
+				vlines.clear(iconCount - 1);
 			}
+			vlines.set(iconCount, childNode.hasChildren());
+			
+			addTableRow(tableRows, lazyRows, childNode, vlines, iconCount + 1, getTreeIcons(vlines, iconCount), false);
+			parentRowIndexes.add(parentRows.get(parentDepth));
 			
-			List<FhirTreeIcon> treeIcons = Lists.newArrayList();
-			for (int j=0; j<vlines.size(); j++) {
-				boolean lineBelow = childVlines.get(j);
-				boolean lastIcon = (j == vlines.size() - 1);
-				
-				if (lineBelow && !lastIcon) {
-					treeIcons.add(FhirTreeIcon.VLINE);
-				} else if (lineBelow && lastIcon) {
-					treeIcons.add(FhirTreeIcon.VJOIN);
-				} else if (!lineBelow && lastIcon) {
-					treeIcons.add(FhirTreeIcon.VJOIN_END);
-				} else if (!lineBelow && !lastIcon) {
-					treeIcons.add(FhirTreeIcon.BLANK);
+			if (childNode.hasChildren()) {
+				if (iconCount == nextChildIndexes.length) {
+					nextChildIndexes = Arrays.copyOf(nextChildIndexes, 2 * nextChildIndexes.length);
 				}
+				nextChildIndexes[iconCount] = 0;
+				parents.add(childNode);
+				parentRows.add(tableRows.size() - 1);
 			}
-
-			addTableRow(tableRows, childNode, childVlines, treeIcons);
-			addChildrenRows(childNode, tableRows, childVlines);
 		}
+		
+		return tableRows;
 	}
-
-	private void addTableRow(List<TableRow> tableRows, U nodeToAdd, List<Boolean> rootVlines, List<FhirTreeIcon> treeIcons) {
-		addTableRow(tableRows, nodeToAdd, rootVlines, treeIcons, false);
+	
+	private List<FhirTreeIcon> getTreeIcons(BitSet vlines, int iconCount) {
+		List<FhirTreeIcon> treeIcons = Lists.newArrayListWithCapacity(iconCount);
+		for (int j=0; j<iconCount; j++) {
+			boolean lineBelow = vlines.get(j);
+			boolean lastIcon = (j == iconCount - 1);
+			
+			if (lineBelow && !lastIcon) {
+				treeIcons.add(FhirTreeIcon.VLINE);
+			} else if (lineBelow && lastIcon) {
+				treeIcons.add(FhirTreeIcon.VJOIN);
+			} else if (!lineBelow && lastIcon) {
+				treeIcons.add(FhirTreeIcon.VJOIN_END);
+			} else if (!lineBelow && !lastIcon) {
+				treeIcons.add(FhirTreeIcon.BLANK);
+			}
+		}
+		return treeIcons;
 	}
 	
-	private void addTableRow(List<TableRow> tableRows, U nodeToAdd, List<Boolean> rootVlines, List<FhirTreeIcon> treeIcons, boolean isRoot) {
-		boolean[] vlinesRequired = listToBoolArray(rootVlines);
-		String backgroundCSSClass = TablePNGGenerator.getCSSClass(lineStyle, vlinesRequired);
+	private void addTableRow(List<TableRow> tableRows, Optional<List<LazyTreeRow>> lazyRows, U nodeToAdd, BitSet vlines, int vlineCount, List<FhirTreeIcon> treeIcons, boolean isRoot) {
+		String backgroundCSSClass = TablePNGGenerator.getCSSClass(lineStyle, vlines, vlineCount);
+		backgroundCSSClasses.add(backgroundCSSClass);
 		
 		T nodeData = nodeToAdd.getData();
 		
@@ -138,16 +210,91 @@ public class FhirTreeTable<T extends AbstractFhirTreeNodeData, U extends Abstrac
 		}
 		
 		boolean removedByProfile = nodeToAdd.isRemovedByProfile();
+		FhirIcon icon = icons.getIcon(nodeToAdd);
+		List<ResourceInfo> resourceInfos = getNodeResourceInfos(nodeToAdd);
 		
 		tableRows.add(
 			new TableRow(
-				new TreeNodeCell(treeIcons, icons.getIcon(nodeToAdd), nodeData.getDisplayName(), backgroundCSSClass, removedByProfile, nodeToAdd.getNodeKey(), nodeData.getDefinition()),
+				new TreeNodeCell(treeIcons, icon, nodeData.getDisplayName(), backgroundCSSClass, removedByProfile, nodeToAdd.getNodeKey(), nodeData.getDefinition()),
 				new ResourceFlagsCell(nodeData.getResourceFlags()),
 				isRoot ? 
 					TableCell.empty() : 
 					new SimpleTextCell(nodeData.getCardinality().toString(), false, nodeData.useBackupCardinality(), removedByProfile),
 				new LinkCell(typeLinks, nodeData.useBackupTypeLinks(), removedByProfile, false),
-				new ValueWithInfoCell(nodeData.getInformation(), getNodeResourceInfos(nodeToAdd))));
+				new ValueWithInfoCell(nodeData.getInformation(), resourceInfos)));
+		
+		if (lazyRows.isPresent()) {
+			Map<String, String> flags = Maps.newLinkedHashMap();
+			for (ResourceFlag flag : ResourceFlagsCell.getDisplayedFlags(nodeData.getResourceFlags())) {
+				flags.put(flag.getFlag(), flag.getDesc());
+			}
+			
+			lazyRows.get().add(
+				new LazyTreeRow(treeIcons, icon, backgroundCSSClass, nodeData.getDisplayName(), nodeToAdd.getNodeKey(), nodeData.getDefinition(), removedByProfile,
+					flags,
+					isRoot ? Optional.empty() : Optional.of(nodeData.getCardinality().toString()), nodeData.useBackupCardinality(),
+					getLazyLinks(typeLinks), nodeData.useBackupTypeLinks(),
+					nodeData.getInformation().isEmpty() ? "" : ValueWithInfoCell.getValueForDisplay(nodeData.getInformation()),
+					resourceInfos.stream().map(this::getLazyInfo).collect(Collectors.toList())));
+		}
+	}
+	
+	private List<LazyTreeRow.Link> getLazyLinks(LinkDatas linkDatas) {
+		List<LazyTreeRow.Link> links = Lists.newArrayList();
+		for (Map.Entry<LinkData, List<LinkData>> link : linkDatas.links()) {
+			LinkData primaryLink = link.getKey();
+			
+			List<LazyTreeRow.Link> nestedLinks = Lists.newArrayList();
+			if (LinkCell.displaysNestedLinks(primaryLink)) {
+				for (LinkData nestedLink : link.getValue()) {
+					nestedLinks.add(new LazyTreeRow.Link(nestedLink.getText(), nestedLink.getURL().toLinkString(), Lists.newArrayList()));
+				}
+			}
+			
+			links.add(new LazyTreeRow.Link(primaryLink.getText(), primaryLink.getURL().toLinkString(), nestedLinks));
+		}
+		return links;
+	}
+	
+	private LazyTreeRow.Info getLazyInfo(ResourceInfo resourceInfo) {
+		if (!resourceInfo.getDescription().isPresent()
+		  && !resourceInfo.getDescriptionLink().isPresent()) {
+			throw new IllegalStateException("Resource info without text or link");
+		}
+		
+		Optional<FhirURL> link = resourceInfo.getDescriptionLink();
+		return new LazyTreeRow.Info(
+			ValueWithInfoCell.getDisplayName(resourceInfo),
+			resourceInfo.getDescription().map(ValueWithInfoCell::getDescriptionForDisplay).orElse(""),
+			link.map(FhirURL::toFullString),
+			resourceInfo.getTextualLink() ? Optional.empty() : link.map(FhirURL::toLinkString));
+	}
+	
+	/**
+	 * Maps the full path of each slicing discriminator to the sliced nodes it belongs to, so that rows only need to walk
+	 * their ancestors when their path matches a discriminator (to check the sliced node is actually one of them).
+	 */
+	private void indexSlicingDiscriminators() {
+		slicingAncestorsByDiscriminatorPath.clear();
+		
+		Deque<U> nodes = new ArrayDeque<>();
+		nodes.push(data.getRoot());
+		while (!nodes.isEmpty()) {
+			U node = nodes.pop();
+			
+			if (node.getData().hasSlicingInfo()) {
+				String discriminatorPathRoot = node.getPath() + ".";
+				for (String discriminatorPath : node.getData().getSlicingInfo().get().getDiscriminatorPaths()) {
+					slicingAncestorsByDiscriminatorPath
+						.computeIfAbsent(discriminatorPathRoot + discriminatorPath, path -> new IdentityHashMap<>())
+						.put(node, discriminatorPath);
+				}
+			}
+			
+			for (U child : node.getChildren()) {
+				nodes.push(child);
+			}
+		}
 	}
 	
 	private List<ResourceInfo> getNodeResourceInfos(U node) {
@@ -170,18 +317,16 @@ public class FhirTreeTable<T extends AbstractFhirTreeNodeData, U extends Abstrac
 		}
 		
 		// slicing discriminator
-		U ancestor = node.getParent();
-		while (ancestor != null) {
-			if (ancestor.getData().hasSlicingInfo()) {
-				Set<String> discriminatorPaths = ancestor.getData().getSlicingInfo().get().getDiscriminatorPaths();
-				String discriminatorPathRoot = ancestor.getPath() + ".";
-				for (String discriminatorPath : discriminatorPaths) {
-					if ((discriminatorPathRoot + discriminatorPath).equals(node.getPathString())) {
-						resourceInfos.add(new ResourceInfo("Slice discriminator", discriminatorPath, ResourceInfoType.SLICING_DISCRIMINATOR));
-					}
+		Map<U, String> slicingAncestors = slicingAncestorsByDiscriminatorPath.get(node.getPathString());
+		if (slicingAncestors != null) {
+			U ancestor = node.getParent();
+			while (ancestor != null) {
+				String discriminatorPath = slicingAncestors.get(ancestor);
+				if (discriminatorPath != null) {
+					resourceInfos.add(new ResourceInfo("Slice discriminator", discriminatorPath, ResourceInfoType.SLICING_DISCRIMINATOR));
 				}
+				ancestor = ancestor.getParent();
 			}
-			ancestor = ancestor.getParent();
 		}
 		
 		// FixedValue
@@ -265,15 +410,13 @@ public class FhirTreeTable<T extends AbstractFhirTreeNodeData, U extends Abstrac
 		return hasScheme;
 	}
 	
-	private boolean[] listToBoolArray(List<Boolean> bools) {
-		boolean[] boolArray = new boolean[bools.size()];
-		for (int i=0; i<bools.size(); i++) {
-			boolArray[i] = bools.get(i);
-		}
-		return boolArray;
+	private static final CSSStyleBundle STYLES = CSSStyleBundle.of(makeStyles());
+	
+	public static CSSStyleBundle getStyles() {
+		return STYLES;
 	}
 	
-	public List<CSSStyleBlock> getStyles() {
+	private static List<CSSStyleBlock> makeStyles() {
 		List<CSSStyleBlock> tableStyles = Lists.newArrayList();
 
 		tableStyles.add(getIconStyle());
@@ -283,7 +426,7 @@ public class FhirTreeTable<T extends AbstractFhirTreeNodeData, U extends Abstrac
 		return tableStyles;
 	}
 	
-	private List<CSSStyleBlock> getLayoutStyles() {
+	private static List<CSSStyleBlock> getLayoutStyles() {
 		List<CSSStyleBlock> styles = Lists.newArrayList();
 		styles.add(
 			new CSSStyleBlock(
@@ -324,7 +467,7 @@ public class FhirTreeTable<T extends AbstractFhirTreeNodeData, U extends Abstrac
 		return styles;
 	}
 
-	private CSSStyleBlock getIconStyle() {
+	private static CSSStyleBlock getIconStyle() {
 		return new CSSStyleBlock(Lists.newArrayList("." + FhirCSS.TREE_RESOURCE_ICON),
 				Lists.newArrayList(
 					new CSSRule(CSSTag.PADDING_RIGHT, "4px"),
@@ -0,0 +1,172 @@
+package uk.nhs.fhir.render.html.tree;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The fields of a tree table row which a LazyTreeTable stores in its JSON file, so that the cells can be built in the
+ * browser. Text is held as it is displayed (e.g. already capitalised).
+ */
+public class LazyTreeRow {
+
+	private final List<FhirTreeIcon> treeIcons;
+	private final FhirIcon icon;
+	private final String backgroundClass;
+	private final String name;
+	private final String nodeKey;
+	private final Optional<String> definition;
+	private final boolean removed;
+	private final Map<String, String> flags;
+	private final Optional<String> cardinality;
+	private final boolean backupCardinality;
+	private final List<Link> typeLinks;
+	private final boolean backupTypeLinks;
+	private final String information;
+	private final List<Info> infos;
+
+	/**
+	 * @param flags the symbol of each of the row's flags, in display order, mapped to its description
+	 * @param cardinality empty for the root, which has no cardinality
+	 */
+	public LazyTreeRow(List<FhirTreeIcon> treeIcons, FhirIcon icon, String backgroundClass, String name, String nodeKey,
+			Optional<String> definition, boolean removed, Map<String, String> flags, Optional<String> cardinality, boolean backupCardinality,
+			List<Link> typeLinks, boolean backupTypeLinks, String information, List<Info> infos) {
+		this.treeIcons = ImmutableList.copyOf(treeIcons);
+		this.icon = Preconditions.checkNotNull(icon);
+		this.backgroundClass = Preconditions.checkNotNull(backgroundClass);
+		this.name = Preconditions.checkNotNull(name);
+		this.nodeKey = Preconditions.checkNotNull(nodeKey);
+		this.definition = definition;
+		this.removed = removed;
+		this.flags = ImmutableMap.copyOf(flags);
+		this.cardinality = cardinality;
+		this.backupCardinality = backupCardinality;
+		this.typeLinks = ImmutableList.copyOf(typeLinks);
+		this.backupTypeLinks = backupTypeLinks;
+		this.information = Preconditions.checkNotNull(information);
+		this.infos = ImmutableList.copyOf(infos);
+	}
+
+	public List<FhirTreeIcon> getTreeIcons() {
+		return treeIcons;
+	}
+
+	public FhirIcon getIcon() {
+		return icon;
+	}
+
+	public String getBackgroundClass() {
+		return backgroundClass;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getNodeKey() {
+		return nodeKey;
+	}
+
+	public Optional<String> getDefinition() {
+		return definition;
+	}
+
+	public boolean isRemoved() {
+		return removed;
+	}
+
+	public Map<String, String> getFlags() {
+		return flags;
+	}
+
+	public Optional<String> getCardinality() {
+		return cardinality;
+	}
+
+	public boolean useBackupCardinality() {
+		return backupCardinality;
+	}
+
+	public List<Link> getTypeLinks() {
+		return typeLinks;
+	}
+
+	public boolean useBackupTypeLinks() {
+		return backupTypeLinks;
+	}
+
+	public String getInformation() {
+		return information;
+	}
+
+	public List<Info> getInfos() {
+		return infos;
+	}
+
+	/**
+	 * A type link, optionally followed by its nested links in brackets
+	 */
+	public static class Link {
+		private final String text;
+		private final String href;
+		private final List<Link> nestedLinks;
+
+		public Link(String text, String href, List<Link> nestedLinks) {
+			this.text = Preconditions.checkNotNull(text);
+			this.href = Preconditions.checkNotNull(href);
+			this.nestedLinks = ImmutableList.copyOf(nestedLinks);
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public String getHref() {
+			return href;
+		}
+
+		public List<Link> getNestedLinks() {
+			return nestedLinks;
+		}
+	}
+
+	/**
+	 * A line of the description/constraints cell: the label, then the description, then the link (in brackets if there is
+	 * a description). A link without an href is displayed as plain text.
+	 */
+	public static class Info {
+		private final String label;
+		private final String description;
+		private final Optional<String> linkText;
+		private final Optional<String> href;
+
+		public Info(String label, String description, Optional<String> linkText, Optional<String> href) {
+			Preconditions.checkArgument(linkText.isPresent() || !href.isPresent(), "Link without text");
+			this.label = Preconditions.checkNotNull(label);
+			this.description = Preconditions.checkNotNull(description);
+			this.linkText = linkText;
+			this.href = href;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public Optional<String> getLinkText() {
+			return linkText;
+		}
+
+		public Optional<String> getHref() {
+			return href;
+		}
+	}
+}
@@ -0,0 +1,456 @@
+package uk.nhs.fhir.render.html.tree;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.jdom2.Element;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import uk.nhs.fhir.render.html.Elements;
+import uk.nhs.fhir.render.html.HTMLOutputMode;
+import uk.nhs.fhir.render.html.style.CSSClassNames;
+import uk.nhs.fhir.render.html.style.CSSRule;
+import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
+import uk.nhs.fhir.render.html.style.CSSTag;
+import uk.nhs.fhir.render.html.style.FhirCSS;
+import uk.nhs.fhir.render.html.table.Table;
+import uk.nhs.fhir.render.html.table.TableRow;
+
+/**
+ * Displays a tree table as a shell holding only the root and its children, with the rest of the rows in a JSON file
+ * which is loaded the first time a subtree is expanded. The JSON holds the fields of each row (see LazyTreeRow), and the
+ * cells are built from them in the browser. Icons, backgrounds, flags and class names are each written once and referred
+ * to by index, since they are shared by most rows.
+ *
+ * JSON format, with rows in depth-first order:
+ * {"parents":[-1,0,...], "treeIcons":[src,...], "icons":[src,...], "backgrounds":[class,...], "flags":[[symbol,description],...],
+ *  "classes":{...}, "rows":[[treeIcons,icon,background,name,nodeKey,definition,removed,flags,cardinality,backupCardinality,
+ *  typeLinks,backupTypeLinks,information,infos],...]}
+ * treeIcons and flags are strings of indexes (one character each), and booleans are 0 or 1. A type link is [text,href] or
+ * [text,href,[nested links]], and an info is [label,description], [label,description,linkText] or
+ * [label,description,linkText,href].
+ */
+public class LazyTreeTable {
+
+	private static final String ROW_INDEX_ATTRIBUTE = "data-row";
+
+	// class names used when building cells, by the name the script uses for them
+	private static final Map<String, String> CELL_CLASSES = ImmutableMap.<String, String>builder()
+		.put("cell", FhirCSS.TREE_CELL)
+		.put("icons", FhirCSS.TREE_ICONS)
+		.put("icon", FhirCSS.TREE_ICON)
+		.put("resourceIcon", FhirCSS.TREE_RESOURCE_ICON)
+		.put("link", FhirCSS.LINK)
+		.put("tabLink", FhirCSS.TAB_LINK)
+		.put("faded", FhirCSS.TEXT_FADED)
+		.put("strikethrough", FhirCSS.TEXT_STRIKETHROUGH)
+		.put("flag", FhirCSS.RESOURCE_FLAG)
+		.put("infoCell", FhirCSS.RESOURCE_INFO_CELL)
+		.put("infoName", FhirCSS.INFO_NAME_BOLD)
+		.put("info", FhirCSS.INDENT_WRAPPED_TEXT + " " + FhirCSS.INFO_PLAIN)
+		.build();
+
+	private final Table table;
+	private final List<LazyTreeRow> rows;
+	private final List<Integer> parentRowIndexes;
+	private final int[] childCounts;
+	private final Set<String> backgroundCSSClasses;
+
+	/**
+	 * @param table the full table, of which only the first level is rendered in the shell
+	 * @param rows the fields of each row of the table, for the JSON file
+	 */
+	LazyTreeTable(Table table, List<LazyTreeRow> rows, List<Integer> parentRowIndexes, Set<String> backgroundCSSClasses) {
+		if (table.getRows().size() != rows.size()) {
+			throw new IllegalStateException("Expected fields for each of " + table.getRows().size() + " rows but found " + rows.size());
+		}
+		if (rows.size() != parentRowIndexes.size()) {
+			throw new IllegalStateException("Expected a parent index for each of " + rows.size() + " rows but found " + parentRowIndexes.size());
+		}
+
+		this.table = table;
+		this.rows = ImmutableList.copyOf(rows);
+		this.parentRowIndexes = ImmutableList.copyOf(parentRowIndexes);
+		this.backgroundCSSClasses = ImmutableSet.copyOf(backgroundCSSClasses);
+
+		childCounts = new int[parentRowIndexes.size()];
+		for (int parentRowIndex : parentRowIndexes) {
+			if (parentRowIndex != -1) {
+				childCounts[parentRowIndex]++;
+			}
+		}
+	}
+
+	/**
+	 * The background CSS classes of all the rows, including those only in the JSON file
+	 */
+	public Set<String> getBackgroundCSSClasses() {
+		return backgroundCSSClasses;
+	}
+
+	/**
+	 * The table with the root row expanded, followed by a script which loads the remaining rows from the JSON file
+	 * @param rowsFileName name of the file holding getRowsJSON(), relative to the page
+	 */
+	public Element makeShell(String rowsFileName) {
+		return makeShell(rowsFileName, HTMLOutputMode.PRETTY);
+	}
+
+	/**
+	 * @param mode the output mode of the page, since the script refers to the rows' class names
+	 */
+	public Element makeShell(String rowsFileName, HTMLOutputMode mode) {
+		List<TableRow> tableRows = table.getRows();
+
+		List<TableRow> shownRows = Lists.newArrayList();
+		List<Integer> shownRowIndexes = Lists.newArrayList();
+		for (int i=0; i<tableRows.size(); i++) {
+			if (i == 0
+			  || parentRowIndexes.get(i) == 0) {
+				shownRows.add(tableRows.get(i));
+				shownRowIndexes.add(i);
+			}
+		}
+
+		Element tableElement = table.withRows(shownRows).makeTable();
+
+		Element tbody = tableElement.getChild("tbody", tableElement.getNamespace());
+		List<Element> rowElements = tbody.getChildren("tr", tableElement.getNamespace());
+		for (int i=0; i<rowElements.size(); i++) {
+			int rowIndex = shownRowIndexes.get(i);
+			Element rowElement = rowElements.get(i);
+
+			rowElement.setAttribute(ROW_INDEX_ATTRIBUTE, Integer.toString(rowIndex));
+			if (childCounts[rowIndex] > 0) {
+				rowElement.setAttribute("class", rowIndex == 0 ? FhirCSS.TREE_ROW_EXPANDED : FhirCSS.TREE_ROW_COLLAPSED);
+			}
+		}
+
+		return Elements.withChildren("div",
+			tableElement,
+			Elements.withText("script", getScript(rowsFileName, mode)));
+	}
+
+	public String getRowsJSON() {
+		return getRowsJSON(HTMLOutputMode.PRETTY);
+	}
+
+	/**
+	 * @param mode the output mode of the page, since the cells use its class names
+	 */
+	public String getRowsJSON(HTMLOutputMode mode) {
+		List<String> backgrounds = Lists.newArrayList();
+		Map<String, Integer> backgroundIndexes = Maps.newHashMap();
+		List<Map.Entry<String, String>> flags = Lists.newArrayList();
+		Map<Map.Entry<String, String>, Integer> flagIndexes = Maps.newHashMap();
+
+		StringBuilder rowsJson = new StringBuilder();
+		for (LazyTreeRow row : rows) {
+			if (rowsJson.length() > 0) {
+				rowsJson.append(',');
+			}
+			rowsJson.append('[');
+
+			StringBuilder treeIcons = new StringBuilder();
+			row.getTreeIcons().forEach(treeIcon -> treeIcons.append(treeIcon.ordinal()));
+			appendString(rowsJson, treeIcons.toString()).append(',');
+			rowsJson.append(row.getIcon().ordinal()).append(',');
+			rowsJson.append(backgroundIndexes.computeIfAbsent(row.getBackgroundClass(), background -> {
+				backgrounds.add(background);
+				return backgrounds.size() - 1;
+			})).append(',');
+
+			appendString(rowsJson, row.getName()).append(',');
+			appendString(rowsJson, row.getNodeKey()).append(',');
+			appendString(rowsJson, row.getDefinition().orElse(null)).append(',');
+			appendBoolean(rowsJson, row.isRemoved()).append(',');
+
+			StringBuilder rowFlags = new StringBuilder();
+			for (Map.Entry<String, String> flag : row.getFlags().entrySet()) {
+				rowFlags.append(Integer.toString(flagIndexes.computeIfAbsent(flag, newFlag -> {
+					flags.add(newFlag);
+					return flags.size() - 1;
+				}), Character.MAX_RADIX));
+			}
+			appendString(rowsJson, rowFlags.toString()).append(',');
+
+			appendString(rowsJson, row.getCardinality().orElse(null)).append(',');
+			appendBoolean(rowsJson, row.useBackupCardinality()).append(',');
+			appendLinks(rowsJson, row.getTypeLinks()).append(',');
+			appendBoolean(rowsJson, row.useBackupTypeLinks()).append(',');
+
+			appendString(rowsJson, row.getInformation()).append(",[");
+			for (int i=0; i<row.getInfos().size(); i++) {
+				if (i > 0) {
+					rowsJson.append(',');
+				}
+				appendInfo(rowsJson, row.getInfos().get(i));
+			}
+			rowsJson.append("]]");
+		}
+
+		StringBuilder json = new StringBuilder("{\"parents\":[");
+		for (int i=0; i<parentRowIndexes.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append(parentRowIndexes.get(i));
+		}
+
+		json.append("],\"treeIcons\":");
+		appendStrings(json, Arrays.stream(FhirTreeIcon.values()).map(FhirTreeIcon::getNhsSrc).collect(Collectors.toList()));
+		json.append(",\"icons\":");
+		appendStrings(json, Arrays.stream(FhirIcon.values()).map(FhirIcon::getUrl).collect(Collectors.toList()));
+		json.append(",\"backgrounds\":");
+		appendStrings(json, backgrounds.stream().map(background -> getClassName(background, mode)).collect(Collectors.toList()));
+
+		json.append(",\"flags\":[");
+		for (int i=0; i<flags.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			appendStrings(json, Lists.newArrayList(flags.get(i).getKey(), flags.get(i).getValue()));
+		}
+
+		json.append("],\"classes\":{");
+		boolean first = true;
+		for (Map.Entry<String, String> cellClass : CELL_CLASSES.entrySet()) {
+			if (!first) {
+				json.append(',');
+			}
+			appendString(json, cellClass.getKey()).append(':');
+			appendString(json, getClassName(cellClass.getValue(), mode));
+			first = false;
+		}
+
+		json.append("},\"rows\":[").append(rowsJson).append("]}");
+
+		return json.toString();
+	}
+
+	private static String getClassName(String className, HTMLOutputMode mode) {
+		return mode.isShortClassNames() ? CSSClassNames.shortenClasses(className) : className;
+	}
+
+	private static StringBuilder appendString(StringBuilder json, String value) {
+		if (value == null) {
+			return json.append("null");
+		}
+		return json.append('"').append(StringEscapeUtils.escapeJson(value)).append('"');
+	}
+
+	private static StringBuilder appendBoolean(StringBuilder json, boolean value) {
+		return json.append(value ? '1' : '0');
+	}
+
+	private static StringBuilder appendStrings(StringBuilder json, List<String> values) {
+		json.append('[');
+		for (int i=0; i<values.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			appendString(json, values.get(i));
+		}
+		return json.append(']');
+	}
+
+	private static StringBuilder appendLinks(StringBuilder json, List<LazyTreeRow.Link> links) {
+		json.append('[');
+		for (int i=0; i<links.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+
+			LazyTreeRow.Link link = links.get(i);
+			json.append('[');
+			appendString(json, link.getText()).append(',');
+			appendString(json, link.getHref());
+			if (!link.getNestedLinks().isEmpty()) {
+				appendLinks(json.append(','), link.getNestedLinks());
+			}
+			json.append(']');
+		}
+		return json.append(']');
+	}
+
+	private static StringBuilder appendInfo(StringBuilder json, LazyTreeRow.Info info) {
+		json.append('[');
+		appendString(json, info.getLabel()).append(',');
+		appendString(json, info.getDescription());
+		if (info.getLinkText().isPresent()) {
+			appendString(json.append(','), info.getLinkText().get());
+		}
+		if (info.getHref().isPresent()) {
+			appendString(json.append(','), info.getHref().get());
+		}
+		return json.append(']');
+	}
+
+	/**
+	 * Clicking the tree icons of a collapsed row inserts its children after it, and clicking an expanded row removes all its
+	 * descendants. The inserted rows are built from the JSON to match the cells' makeCell() output (TreeNodeCell,
+	 * ResourceFlagsCell, SimpleTextCell, LinkCell and ValueWithInfoCell). Written without '<', '>' or '&' so that it is
+	 * unchanged by XML escaping.
+	 */
+	private static String getScript(String rowsFileName, HTMLOutputMode mode) {
+		String collapsedClass = mode.isShortClassNames() ? CSSClassNames.shorten(FhirCSS.TREE_ROW_COLLAPSED) : FhirCSS.TREE_ROW_COLLAPSED;
+		String expandedClass = mode.isShortClassNames() ? CSSClassNames.shorten(FhirCSS.TREE_ROW_EXPANDED) : FhirCSS.TREE_ROW_EXPANDED;
+		
+		return String.join(" ",
+			"(function (table, url) {",
+				"var parents = null; var children = null; var rows = null; var data = null; var waiting = null;",
+				"function withRows(then) {",
+					"if (rows !== null) { then(); return; }",
+					"if (waiting !== null) { waiting.push(then); return; }",
+					"waiting = [then];",
+					"var request = new XMLHttpRequest();",
+					"request.open('GET', url);",
+					"request.onload = function () {",
+						"data = JSON.parse(request.responseText);",
+						"parents = data.parents; children = [];",
+						"parents.forEach(function (parent, index) { children.push([]); if (parent !== -1) { children[parent].push(index); } });",
+						"rows = data.rows;",
+						"waiting.forEach(function (callback) { callback(); }); waiting = null;",
+					"};",
+					"request.send();",
+				"}",
+				"function element(name, className, text) {",
+					"var created = document.createElement(name);",
+					"if (className !== null) { created.className = className; }",
+					"if (text !== undefined) { created.appendChild(document.createTextNode(text)); }",
+					"return created;",
+				"}",
+				"function image(className, src) { var created = element('img', className); created.setAttribute('src', src); return created; }",
+				"function link(text, href) { var created = element('a', data.classes.link, text); created.setAttribute('href', href); return created; }",
+				"function textCellClass(faded, removed) {",
+					"return data.classes.cell + (faded ? ' ' + data.classes.faded : '') + (removed ? ' ' + data.classes.strikethrough : '');",
+				"}",
+				"function appendLinks(cell, links) {",
+					"links.forEach(function (typeLink, index) {",
+						"if (index !== 0) { cell.appendChild(document.createTextNode(' | ')); }",
+						"cell.appendChild(link(typeLink[0], typeLink[1]));",
+						"if (typeLink.length === 3) {",
+							"cell.appendChild(document.createTextNode(' ('));",
+							"appendLinks(cell, typeLink[2]);",
+							"cell.appendChild(document.createTextNode(')'));",
+						"}",
+					"});",
+				"}",
+				"function makeRow(index) {",
+					"var fields = rows[index]; var removed = fields[6] === 1; var classes = data.classes;",
+					"var row = document.createElement('tr');",
+					"var nameCell = element('td', data.backgrounds[fields[2]] + ' ' + classes.icons);",
+					"fields[0].split('').forEach(function (treeIcon) { nameCell.appendChild(image(classes.icon, data.treeIcons[Number(treeIcon)])); });",
+					"nameCell.appendChild(image(classes.resourceIcon, data.icons[fields[1]]));",
+					"var name = removed ?",
+						"element('span', classes.cell + ' ' + classes.strikethrough, fields[3]) :",
+						"link(fields[3], 'details.html#' + fields[4]);",
+					"if (!removed) { name.className = [classes.cell, classes.link, classes.tabLink].join(' '); }",
+					"if (fields[5] !== null) { name.setAttribute('title', fields[5]); }",
+					"nameCell.appendChild(name); row.appendChild(nameCell);",
+					"var flagCell = element('td', classes.flag);",
+					"fields[7].split('').forEach(function (flagIndex) {",
+						"var flag = data.flags[parseInt(flagIndex, 36)];",
+						"var span = element('span', null, flag[0]); span.setAttribute('title', flag[1]); flagCell.appendChild(span);",
+					"});",
+					"row.appendChild(flagCell);",
+					"row.appendChild(fields[8] === null ?",
+						"element('td', classes.cell, '\\u200b') :",
+						"element('td', textCellClass(fields[9] === 1, removed), fields[8]));",
+					"var typeCell = element('td', textCellClass(fields[11] === 1, removed));",
+					"appendLinks(typeCell, fields[10]); row.appendChild(typeCell);",
+					"var infoCell = element('td', classes.infoCell);",
+					"if (fields[12] !== '') { infoCell.appendChild(element('div', classes.infoName, fields[12])); }",
+					"fields[13].forEach(function (info) {",
+						"var line = element('div', classes.info, info[0] + info[1]);",
+						"if (info.length !== 2) {",
+							"if (info[1] !== '') { line.appendChild(document.createTextNode(' (')); }",
+							"line.appendChild(info.length === 4 ? link(info[2], info[3]) : document.createTextNode(info[2]));",
+							"if (info[1] !== '') { line.appendChild(document.createTextNode(')')); }",
+						"}",
+						"infoCell.appendChild(line);",
+					"});",
+					"row.appendChild(infoCell);",
+					"return row;",
+				"}",
+				"function rowIndex(row) { return Number(row.getAttribute('" + ROW_INDEX_ATTRIBUTE + "')); }",
+				"function isDescendant(index, ancestor) {",
+					"for (var parent = parents[index]; parent !== -1; parent = parents[parent]) { if (parent === ancestor) { return true; } }",
+					"return false;",
+				"}",
+				"function expand(row) {",
+					"if (!row.classList.contains('" + collapsedClass + "')) { return; }",
+					"var previous = row;",
+					"children[rowIndex(row)].forEach(function (child) {",
+						"var childRow = makeRow(child);",
+						"childRow.setAttribute('" + ROW_INDEX_ATTRIBUTE + "', child);",
+						"if (children[child].length !== 0) { childRow.classList.add('" + collapsedClass + "'); }",
+						"previous.parentNode.insertBefore(childRow, previous.nextSibling);",
+						"previous = childRow;",
+					"});",
+					"row.classList.remove('" + collapsedClass + "'); row.classList.add('" + expandedClass + "');",
+				"}",
+				"function collapse(row) {",
+					"if (!row.classList.contains('" + expandedClass + "')) { return; }",
+					"var index = rowIndex(row);",
+					"var next = row.nextElementSibling;",
+					"while (next !== null) {",
+						"if (!isDescendant(rowIndex(next), index)) { break; }",
+						"var following = next.nextElementSibling; next.parentNode.removeChild(next); next = following;",
+					"}",
+					"row.classList.remove('" + expandedClass + "'); row.classList.add('" + collapsedClass + "');",
+				"}",
+				"table.addEventListener('click', function (event) {",
+					"if (event.target.closest('a') !== null) { return; }",
+					"var cell = event.target.closest('td');",
+					"if (cell === null) { return; }",
+					"if (cell.previousElementSibling !== null) { return; }",
+					"var row = cell.parentNode;",
+					"if (row.classList.contains('" + collapsedClass + "')) { withRows(function () { expand(row); }); }",
+					"else if (row.classList.contains('" + expandedClass + "')) { withRows(function () { collapse(row); }); }",
+				"});",
+			"})(document.currentScript.previousElementSibling, '" + StringEscapeUtils.escapeEcmaScript(rowsFileName) + "');");
+	}
+
+	private static final CSSStyleBundle STYLES = CSSStyleBundle.of(makeStyles());
+	
+	public static CSSStyleBundle getStyles() {
+		return STYLES;
+	}
+	
+	private static List<CSSStyleBlock> makeStyles() {
+		List<CSSStyleBlock> styles = Lists.newArrayList();
+
+		styles.add(
+			new CSSStyleBlock(
+				Lists.newArrayList(
+					"." + FhirCSS.TREE_ROW_COLLAPSED + " ." + FhirCSS.TREE_ICONS,
+					"." + FhirCSS.TREE_ROW_EXPANDED + " ." + FhirCSS.TREE_ICONS),
+				Lists.newArrayList(
+					new CSSRule(CSSTag.CURSOR, "pointer"))));
+
+		styles.add(
+			new CSSStyleBlock(
+				Lists.newArrayList("." + FhirCSS.TREE_ROW_COLLAPSED + " ." + FhirCSS.TREE_ICONS + ":after"),
+				Lists.newArrayList(
+					new CSSRule(CSSTag.CONTENT, "' [+]'"))));
+
+		styles.add(
+			new CSSStyleBlock(
+				Lists.newArrayList("." + FhirCSS.TREE_ROW_EXPANDED + " ." + FhirCSS.TREE_ICONS + ":after"),
+				Lists.newArrayList(
+					new CSSRule(CSSTag.CONTENT, "' [-]'"))));
+
+		return styles;
+	}
+}
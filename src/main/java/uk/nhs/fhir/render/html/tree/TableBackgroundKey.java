@@ -0,0 +1,53 @@
+package uk.nhs.fhir.render.html.tree;
+
+import java.util.Locale;
+
+/**
+ * The line style and vertical lines encoded in a table row background CSS class (see TablePNGGenerator.getCSSClass).
+ */
+class TableBackgroundKey {
+	static final String CSS_CLASS_PREFIX = "fhirtreebg-";
+
+	private final Style style;
+	private final boolean[] vlinesRequired;
+
+	TableBackgroundKey(Style style, boolean[] vlinesRequired) {
+		this.style = style;
+		this.vlinesRequired = vlinesRequired;
+	}
+
+	static TableBackgroundKey parse(String cssClass) {
+		if (!cssClass.startsWith(CSS_CLASS_PREFIX)) {
+			throw new IllegalArgumentException(cssClass);
+		}
+
+		int styleEnd = cssClass.indexOf('-', CSS_CLASS_PREFIX.length());
+		if (styleEnd == -1) {
+			throw new IllegalArgumentException(cssClass);
+		}
+
+		Style style = Style.valueOf(cssClass.substring(CSS_CLASS_PREFIX.length(), styleEnd).toUpperCase(Locale.UK));
+
+		boolean[] vlinesRequired = new boolean[cssClass.length() - styleEnd - 1];
+		for (int i=0; i<vlinesRequired.length; i++) {
+			char c = cssClass.charAt(styleEnd + 1 + i);
+			if (c == '1') {
+				vlinesRequired[i] = true;
+			} else if (c == '0') {
+				vlinesRequired[i] = false;
+			} else {
+				throw new IllegalArgumentException("Should only be 1s and 0s [" + cssClass.substring(styleEnd + 1) + "]");
+			}
+		}
+
+		return new TableBackgroundKey(style, vlinesRequired);
+	}
+
+	Style getStyle() {
+		return style;
+	}
+
+	boolean[] getVlinesRequired() {
+		return vlinesRequired;
+	}
+}
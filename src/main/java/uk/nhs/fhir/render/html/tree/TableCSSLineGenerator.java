@@ -0,0 +1,66 @@
+package uk.nhs.fhir.render.html.tree;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import com.google.common.collect.Lists;
+
+import uk.nhs.fhir.render.html.style.CSSRule;
+import uk.nhs.fhir.render.html.style.CSSTag;
+
+/**
+ * Draws the vertical lines through tree table rows with CSS instead of PNG backgrounds. Each required line is a 1px wide
+ * gradient layer, repeated down the row and positioned by depth in the same place as the corresponding PNG line.
+ */
+public class TableCSSLineGenerator {
+
+	private static final String LINE_COLOUR = "#000";
+	private static final String NO_LINE_COLOUR = "transparent";
+
+	// one repeat of the line pattern, from the style's config
+	private static final Map<Style, String> gradients = new EnumMap<>(Style.class);
+	static {
+		for (Style style : Style.values()) {
+			StringJoiner stops = new StringJoiner(", ", "linear-gradient(", ")");
+			boolean[] config = style.getConfig();
+			for (int row=0; row<config.length; row++) {
+				String colour = config[row] ? LINE_COLOUR : NO_LINE_COLOUR;
+				stops.add(colour + " " + row + "px");
+				stops.add(colour + " " + (row + 1) + "px");
+			}
+			gradients.put(style, stops.toString());
+		}
+	}
+
+	/**
+	 * @param key a CSS class from TablePNGGenerator.getCSSClass
+	 */
+	public List<CSSRule> getRules(String key) {
+		TableBackgroundKey parsedKey = TableBackgroundKey.parse(key);
+		Style style = parsedKey.getStyle();
+		boolean[] vlinesRequired = parsedKey.getVlinesRequired();
+
+		StringJoiner images = new StringJoiner(", ");
+		StringJoiner positions = new StringJoiner(", ");
+		int lineX = TablePNGGenerator.firstLinePixelIndex - 1;
+		for (boolean vlineRequired : vlinesRequired) {
+			if (vlineRequired) {
+				images.add(gradients.get(style));
+				positions.add(lineX + "px 0");
+			}
+			lineX += TablePNGGenerator.pixelsBetweenLines;
+		}
+
+		if (images.length() == 0) {
+			return Lists.newArrayList(new CSSRule(CSSTag.BACKGROUND_IMAGE, "none"));
+		}
+
+		return Lists.newArrayList(
+			new CSSRule(CSSTag.BACKGROUND_IMAGE, images.toString()),
+			new CSSRule(CSSTag.BACKGROUND_POSITION, positions.toString()),
+			new CSSRule(CSSTag.BACKGROUND_SIZE, "1px " + style.getHeight() + "px"),
+			new CSSRule(CSSTag.BACKGROUND_REPEAT, "repeat-y"));
+	}
+}
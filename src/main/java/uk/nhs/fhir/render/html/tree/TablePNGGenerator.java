@@ -1,19 +1,23 @@
 package uk.nhs.fhir.render.html.tree;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
 import org.apache.commons.codec.binary.Base64;
 
-import com.google.common.collect.Maps;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * Generates background pngs for table rows as base64.
+ * Encoded backgrounds are held in a bounded cache shared between threads, keyed by CSS class. Each thread encodes into its
+ * own preallocated buffers, reusing a single Deflater.
  * @author jon
  */
 public class TablePNGGenerator {
@@ -24,208 +28,211 @@ public class TablePNGGenerator {
 	private static final byte interlacingType = 0; // standard
 	private static final byte compression = 0; // standard
 	
-	private static final int firstLinePixelIndex = 12;
-	private static final int pixelsBetweenLines = 16;
+	static final int firstLinePixelIndex = 12;
+	static final int pixelsBetweenLines = 16;
+	private static final int maxVlines = (width - firstLinePixelIndex) / pixelsBetweenLines;
 	
-	private static final Map<String, String> cache = Maps.newHashMap();
+	private static final int MAX_CACHED_BACKGROUNDS = 4096;
+
+	private static final Cache<String, String> cache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_BACKGROUNDS).build();
+	private static final ThreadLocal<PngEncoder> encoders = ThreadLocal.withInitial(PngEncoder::new);
 	
 	/**
 	 * Unique css class for any given line style. Can be used as a key for caching.
 	 */
 	public static String getCSSClass(Style style, boolean[] vlinesRequired) {
-		StringBuilder cssClass = new StringBuilder("fhirtreebg-");
-		cssClass.append(style.name().toLowerCase(Locale.UK));
-		cssClass.append("-");
+		StringBuilder cssClass = new StringBuilder(TableBackgroundKey.CSS_CLASS_PREFIX.length() + 7 + vlinesRequired.length);
+		cssClass.append(TableBackgroundKey.CSS_CLASS_PREFIX);
+		cssClass.append(style.getCSSName());
+		cssClass.append('-');
 		for (boolean b : vlinesRequired) {
-			cssClass.append(b ? "1" : "0");
+			cssClass.append(b ? '1' : '0');
 		}
 		
 		return cssClass.toString();
 	}
 
-	public String getBase64(String key) {
-		String[] tokens = key.split("\\-");
-		if (!tokens[0].equals("fhirtreebg")) {
-			throw new IllegalArgumentException(key);
+	/**
+	 * As getCSSClass(Style, boolean[]), for the first vlineCount bits of vlinesRequired
+	 */
+	public static String getCSSClass(Style style, BitSet vlinesRequired, int vlineCount) {
+		StringBuilder cssClass = new StringBuilder(TableBackgroundKey.CSS_CLASS_PREFIX.length() + 7 + vlineCount);
+		cssClass.append(TableBackgroundKey.CSS_CLASS_PREFIX);
+		cssClass.append(style.getCSSName());
+		cssClass.append('-');
+		for (int i=0; i<vlineCount; i++) {
+			cssClass.append(vlinesRequired.get(i) ? '1' : '0');
 		}
 		
-		Style style = Style.valueOf(tokens[1].toUpperCase(Locale.UK));
+		return cssClass.toString();
+	}
 		
-		char[] chars = tokens[2].toCharArray();
-		boolean[] vlinesRequired = new boolean[chars.length];
-		for (int i=0; i<chars.length; i++) {
-			char c = chars[i];
-			if (c == '1') {
-				vlinesRequired[i] = true;
-			} else if (c == '0') {
-				vlinesRequired[i] = false;
-			} else {
-				throw new IllegalArgumentException("Should only be 1s and 0s [" + tokens[2] + "]");
-			}
+	/**
+	 * @param key a CSS class from getCSSClass. Only parsed if the background isn't already cached.
+	 */
+	public String getBase64(String key) {
+		String cached = cache.getIfPresent(key);
+		if (cached != null) {
+			return cached;
 		}
-		
-		return getBase64(style, vlinesRequired);
+
+		TableBackgroundKey parsedKey = TableBackgroundKey.parse(key);
+		return getBase64(key, parsedKey.getStyle(), parsedKey.getVlinesRequired());
 	}
 	
 	public String getBase64(Style style, boolean[] vlinesRequired) {
-		String key = getCSSClass(style, vlinesRequired);
-		if (!cache.containsKey(key)) {
-			cache(key, style, vlinesRequired);
-		}
-		return cache.get(key);
+		return getBase64(getCSSClass(style, vlinesRequired), style, vlinesRequired);
 	}
 
-	private void cache(String key, Style style, boolean[] vlinesRequired) {
-		int maxVlines = (width - firstLinePixelIndex) / pixelsBetweenLines;
+	private String getBase64(String key, Style style, boolean[] vlinesRequired) {
 		if (vlinesRequired.length > maxVlines) {
 			throw new IllegalArgumentException("Too many vlines required: [" + Arrays.toString(vlinesRequired) + " : " + maxVlines + "]");
 		}
 
 		try {
-			byte[] pngBytes = getPngBytes(style, vlinesRequired);
-			String base64Png = new String(Base64.encodeBase64(pngBytes), "UTF-8");
-			cache.put(key, base64Png);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+			return cache.get(key, () -> new String(Base64.encodeBase64(getPngBytes(style, vlinesRequired)), StandardCharsets.UTF_8));
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to generate background " + key, e.getCause());
 		}
-		
 	}
 
-	byte[] getPngBytes(Style style, boolean[] vlinesRequired) throws IOException {
-		ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-		
-		int height = style.getHeight();
-		
-		bytesOut.write(getPNGHeaderBytes());
-		bytesOut.write(getIHDRBytes(height));
-		bytesOut.write(getDataChunk(style, vlinesRequired));
-		bytesOut.write(getEndChunk());
-		
-		return bytesOut.toByteArray();
+	byte[] getPngBytes(Style style, boolean[] vlinesRequired) {
+		return encoders.get().encode(style, vlinesRequired);
 	}
 
-	private byte[] getPNGHeaderBytes() throws IOException {
-		return new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
-	}
-	
-	private byte[] getIHDRBytes(int height) throws IOException {
-		ByteArrayOutputStream ihdrBytes = new ByteArrayOutputStream();
-		
-		ihdrBytes.write(new byte[]{0, 0, 0, 13}); //Chunk data length
-		ihdrBytes.write(new byte[]{'I', 'H', 'D', 'R'}); // IHDR chunk name
-		writeInt(ihdrBytes, width);
-		writeInt(ihdrBytes, height);
-		ihdrBytes.write(bitDepth);
-		ihdrBytes.write(colourType);
-		ihdrBytes.write(compression); // standard compression
-		ihdrBytes.write(filterType); // standard filter
-		ihdrBytes.write(interlacingType); // no interlacing
-		
-		ihdrBytes.write(getCrcBytes(ihdrBytes.toByteArray()));
-		return ihdrBytes.toByteArray();
-	}
+	/**
+	 * Per-thread encoder state. The pixel buffer is big enough for the tallest style, and is reset from a transparent
+	 * template before each image is drawn.
+	 */
+	private static class PngEncoder {
+		private static final byte[] PNG_HEADER = new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+		private static final byte[] IHDR = new byte[]{'I', 'H', 'D', 'R'};
+		private static final byte[] IDAT = new byte[]{'I', 'D', 'A', 'T'};
+		private static final byte[] END_CHUNK = new byte[]{0,0,0,0,'I','E','N','D',(byte)0xAE,0x42,0x60,(byte)0x82};
 
-	byte[] getDataChunk(Style style, boolean[] vlinesRequired) throws IOException {
-		byte[] pixelArray = getDataBytes(style, vlinesRequired);
-		
-		byte[] deflatedDataBytes = deflate(pixelArray);
+		private static final int rowBytes = 1 + 4 * width; // filter type byte, then RGBA pixels
+		private static final byte[] transparentPixels = transparentPixels(maxHeight());
 
-		ByteArrayOutputStream dataChunk = new ByteArrayOutputStream();
-		writeInt(dataChunk, deflatedDataBytes.length);
-		dataChunk.write(new byte[]{'I', 'D', 'A', 'T'});
-		dataChunk.write(deflatedDataBytes);
-		dataChunk.write(getCrcBytes(dataChunk.toByteArray()));
-		
-		return dataChunk.toByteArray();
-	}
-	
-	byte[] getDataBytes(Style style, boolean[] vlinesRequired) throws IOException {
-		ByteArrayOutputStream dataChunkData = new ByteArrayOutputStream();
-		
-		//start with all pixels transparent
-		for (int rowIndex=0; rowIndex<style.getHeight(); rowIndex++) {
-			dataChunkData.write(0); //filter type = no filtering
-			for (int widthIndex=0; widthIndex<width; widthIndex++) {
-				dataChunkData.write(new byte[]{99,99,99,0}); //RGBA
+		private final byte[] pixels = new byte[transparentPixels.length];
+		private final byte[] deflateBuffer = new byte[1024];
+		private final Deflater deflater = new Deflater();
+		private final CRC32 crc = new CRC32();
+		private ByteBuffer out = ByteBuffer.allocate(1024);
+
+		private static int maxHeight() {
+			int maxHeight = 0;
+			for (Style style : Style.values()) {
+				maxHeight = Math.max(maxHeight, style.getHeight());
+			}
+			return maxHeight;
+		}
+
+		private static byte[] transparentPixels(int height) {
+			byte[] transparent = new byte[height * rowBytes];
+			for (int rowIndex=0; rowIndex<height; rowIndex++) {
+				int rowStart = rowIndex * rowBytes;
+				transparent[rowStart] = 0; //filter type = no filtering
+				for (int byteIndex = rowStart + 1; byteIndex < rowStart + rowBytes; byteIndex += 4) {
+					transparent[byteIndex] = 99;
+					transparent[byteIndex + 1] = 99;
+					transparent[byteIndex + 2] = 99;
+					transparent[byteIndex + 3] = 0;
+				}
 			}
+			return transparent;
 		}
 
-		byte[] pixelArray = dataChunkData.toByteArray();
+		byte[] encode(Style style, boolean[] vlinesRequired) {
+			int height = style.getHeight();
+			int pixelBytes = height * rowBytes;
+			drawPixels(style, vlinesRequired);
+
+			out.clear();
+			out.put(PNG_HEADER);
+
+			int ihdrStart = out.position();
+			out.putInt(13); //Chunk data length
+			out.put(IHDR);
+			out.putInt(width);
+			out.putInt(height);
+			out.put(bitDepth);
+			out.put(colourType);
+			out.put(compression); // standard compression
+			out.put(filterType); // standard filter
+			out.put(interlacingType); // no interlacing
+			putCrc(ihdrStart);
+
+			int idatStart = out.position();
+			out.putInt(0); // length, filled in once deflated
+			out.put(IDAT);
+			int dataStart = out.position();
+			deflate(pixelBytes);
+			out.putInt(idatStart, out.position() - dataStart);
+			putCrc(idatStart);
+
+			ensureCapacity(END_CHUNK.length);
+			out.put(END_CHUNK);
+
+			return Arrays.copyOf(out.array(), out.position());
+		}
+
+		private void drawPixels(Style style, boolean[] vlinesRequired) {
+			//start with all pixels transparent
+			System.arraycopy(transparentPixels, 0, pixels, 0, style.getHeight() * rowBytes);
 		
-		//write in black pixels where required
-		boolean[] config = style.getConfig();
-		for (int rowIndex=0; rowIndex<config.length; rowIndex++) {
-			if (config[rowIndex]) {
-				int pixelIndex = firstLinePixelIndex;
+			//write in black pixels where required
+			boolean[] config = style.getConfig();
+			for (int rowIndex=0; rowIndex<config.length; rowIndex++) {
+				if (config[rowIndex]) {
+					int pixelIndex = firstLinePixelIndex;
 				
-				for (int vlineIndex=0; vlineIndex<vlinesRequired.length; vlineIndex++) {
-					if (vlinesRequired[vlineIndex]) {
-						// Calculate offset into chunk byte array
-						int filterBytesToSkip = (rowIndex+1);
-						int pixelBytesBeforeOnPreviousLines = 4 * width * rowIndex;
-						int pixelBytesBeforeOnLine = 4 * (pixelIndex - 1);
-						int byteIndex = filterBytesToSkip + pixelBytesBeforeOnPreviousLines + pixelBytesBeforeOnLine;
+					for (int vlineIndex=0; vlineIndex<vlinesRequired.length; vlineIndex++) {
+						if (vlinesRequired[vlineIndex]) {
+							int byteIndex = rowIndex * rowBytes + 1 + 4 * (pixelIndex - 1);
 					
-						// Update pixel to be black
-						pixelArray[byteIndex] = 0;
-						pixelArray[byteIndex + 1] = 0;
-						pixelArray[byteIndex + 2] = 0;
-						pixelArray[byteIndex + 3] = (byte) 0xff;
-					}
+							// Update pixel to be black
+							pixels[byteIndex] = 0;
+							pixels[byteIndex + 1] = 0;
+							pixels[byteIndex + 2] = 0;
+							pixels[byteIndex + 3] = (byte) 0xff;
+						}
 					
-					pixelIndex += pixelsBetweenLines;
+						pixelIndex += pixelsBetweenLines;
+					}
 				}
 			}
 		}
-		
-		return pixelArray;
-	}
 
-	private byte[] deflate(byte[] chunkDataBytes) throws IOException {
-		ByteArrayOutputStream deflatedBytes = new ByteArrayOutputStream();
-
-	    byte[] outputBuffer = new byte[1024];
-	    
-	    Deflater compresser = new Deflater();
-	    compresser.setInput(chunkDataBytes);
-	    compresser.finish();
-	    
-	    while (!compresser.finished()) {
-	    	int bytesDeflated = compresser.deflate(outputBuffer);
-	    	deflatedBytes.write(outputBuffer, 0, bytesDeflated);
-	    }
-	    compresser.end();
-	    
-	    return deflatedBytes.toByteArray();
-	}
+		private void deflate(int length) {
+			deflater.reset();
+			deflater.setInput(pixels, 0, length);
+			deflater.finish();
 
-	private byte[] getCrcBytes(byte[] chunk) throws IOException {
-		// trim data length bytes
-		byte[] chunkNameAndDataBytes = Arrays.copyOfRange(chunk, 4, chunk.length);
-		
-		CRC32 crc32 = new CRC32();
-		crc32.update(chunkNameAndDataBytes);
-		return intBytes((int)crc32.getValue());
-	}
+			while (!deflater.finished()) {
+				int bytesDeflated = deflater.deflate(deflateBuffer);
+				ensureCapacity(bytesDeflated);
+				out.put(deflateBuffer, 0, bytesDeflated);
+			}
+		}
 
-	private byte[] getEndChunk() {
-		return new byte[]{0,0,0,0,'I','E','N','D',(byte)0xAE,0x42,0x60,(byte)0x82};
-	}
+		/**
+		 * CRC of the chunk name and data, i.e. everything after the length which starts the chunk
+		 */
+		private void putCrc(int chunkStart) {
+			crc.reset();
+			crc.update(out.array(), chunkStart + 4, out.position() - chunkStart - 4);
+			ensureCapacity(4);
+			out.putInt((int)crc.getValue());
+		}
 
-	private void writeInt(ByteArrayOutputStream bytesOut, int value) throws IOException {
-		byte[] intBytes = intBytes(value);
-		
-		bytesOut.write(intBytes);
-	}
-	
-	private byte[] intBytes(int value) {
-		byte[] intBytes = new byte[4];
-		for (int index=3; index>=0; index--) {
-			byte r = (byte)(value & 0xff);
-			intBytes[index] = r;
-			value >>= 8;
+		private void ensureCapacity(int bytes) {
+			if (out.remaining() < bytes) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+				out.flip();
+				larger.put(out);
+				out = larger;
+			}
 		}
-		return intBytes;
 	}
 }
 
@@ -235,9 +242,11 @@ enum Style {
 	DASHED(new boolean[]{true, true, false});
 	
 	private final boolean[] config;
+	private final String cssName;
 	
 	Style(boolean[] config) {
 		this.config = config;
+		this.cssName = name().toLowerCase(Locale.UK);
 	}
 	
 	public boolean[] getConfig() {
@@ -247,4 +256,8 @@ enum Style {
 	public int getHeight() {
 		return config.length;
 	}
+
+	String getCSSName() {
+		return cssName;
+	}
 }
@@ -0,0 +1,11 @@
+package uk.nhs.fhir.render.html.tree;
+
+/**
+ * How the vertical lines connecting nodes in a tree table are drawn through each row
+ */
+public enum TreeLineMode {
+	// a base64 PNG background per combination of lines (see TablePNGGenerator)
+	PNG,
+	// CSS gradient backgrounds, positioned by depth (see TableCSSLineGenerator)
+	CSS;
+}
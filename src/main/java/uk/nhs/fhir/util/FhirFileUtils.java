@@ -20,8 +20,11 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -40,13 +43,11 @@ public class FhirFileUtils {
     public static boolean writeFile(File file, byte[] data) {
         boolean success = false;
         try (
-        	FileOutputStream fos = new FileOutputStream(file);
-        	BufferedOutputStream bos = new BufferedOutputStream(fos);
+        	OutputStream os = newOutputStream(file.toPath());
+        	BufferedOutputStream bos = new BufferedOutputStream(os);
         	) {
         	
-            for (int n=0; n<data.length; n++) {
-                bos.write(data[n]);
-            }
+            bos.write(data);
             
             bos.flush();
             success = true;
@@ -59,6 +60,15 @@ public class FhirFileUtils {
         return success;
     }
     
+    /**
+     * Opens a new file at the path, replacing any existing file rather than truncating it. A hard link to the existing file
+     * (e.g. from a staged output directory to the published one) is left unchanged.
+     */
+    public static OutputStream newOutputStream(Path path) throws IOException {
+    	Files.deleteIfExists(path);
+    	return Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+    
     /**
      * @param filename Filename to write data into - content will be added to the end of the file
      * @param data array of bytes to write to specified file
@@ -0,0 +1,55 @@
+package uk.nhs.fhir.makehtml;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import uk.nhs.fhir.render.html.style.CSSClassNames;
+import uk.nhs.fhir.render.html.style.CSSRule;
+import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.FhirCSS;
+
+public class TestCSSClassNames {
+
+	@Test
+	public void testShortNamesAreDistinct() {
+		Assert.assertEquals(
+			CSSClassNames.getShortNames().size(), 
+			Sets.newHashSet(CSSClassNames.getShortNames().values()).size());
+		Assert.assertTrue(CSSClassNames.shorten(FhirCSS.TREE_CELL).length() < FhirCSS.TREE_CELL.length());
+	}
+
+	@Test
+	public void testShortNamesDependOnlyOnClassName() {
+		// these must not change between renderer builds, since incremental renders keep pages from earlier builds
+		Assert.assertEquals("fj8fm", CSSClassNames.shorten("fhir-link"));
+		Assert.assertEquals("f7y3y", CSSClassNames.shorten("fhir-tree-table"));
+	}
+
+	@Test
+	public void testUnknownAndScriptNamesUnchanged() {
+		Assert.assertEquals("fhirtreebg-dotted-0", CSSClassNames.shorten("fhirtreebg-dotted-0"));
+		Assert.assertEquals(FhirCSS.TAB_LINK, CSSClassNames.shorten(FhirCSS.TAB_LINK));
+	}
+
+	@Test
+	public void testShortenClassesAndSelectors() {
+		String link = CSSClassNames.shorten(FhirCSS.LINK);
+		String tree = CSSClassNames.shorten(FhirCSS.TREE);
+
+		Assert.assertEquals(link + " " + FhirCSS.TAB_LINK, CSSClassNames.shortenClasses(FhirCSS.LINK + "  " + FhirCSS.TAB_LINK));
+		Assert.assertEquals("." + tree + " td." + link + ":hover", CSSClassNames.shortenSelector("." + FhirCSS.TREE + " td." + FhirCSS.LINK + ":hover"));
+	}
+
+	@Test
+	public void testMinifiedBlock() {
+		CSSStyleBlock block = new CSSStyleBlock(
+			Lists.newArrayList("." + FhirCSS.LINK, "a"), 
+			Lists.newArrayList(new CSSRule("color", "#000"), new CSSRule("margin", "0 2px")));
+
+		Assert.assertEquals("." + FhirCSS.LINK + ",a{color:#000;margin:0 2px}", block.toMinifiedString(false));
+		Assert.assertEquals("." + CSSClassNames.shorten(FhirCSS.LINK) + ",a{color:#000;margin:0 2px}", block.toMinifiedString(true));
+	}
+}
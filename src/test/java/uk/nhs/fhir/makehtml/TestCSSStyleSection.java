@@ -7,6 +7,7 @@ import com.google.common.collect.Lists;
 
 import uk.nhs.fhir.render.html.style.CSSRule;
 import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
 import uk.nhs.fhir.render.html.style.CSSStyleSection;
 
 public class TestCSSStyleSection {
@@ -79,6 +80,80 @@ public class TestCSSStyleSection {
 		Assert.assertEquals(1, cssStyleBlock1.getRules().size());
 	}
 	
+	@Test
+	public void testSplitBlocksHoldEachSelectorAndRuleOnce() {
+		CSSStyleSection s1 = new CSSStyleSection();
+		
+		s1.addBlock(
+				new CSSStyleBlock(
+					Lists.newArrayList("a"), 
+					Lists.newArrayList(new CSSRule("rule1", "args1"))));
+		
+		s1.addBlock(
+				new CSSStyleBlock(
+					Lists.newArrayList("a", "b"),
+					Lists.newArrayList(
+						new CSSRule("rule1", "args1"),
+						new CSSRule("rule2", "args2"))));
+		
+		CSSStyleBlock bOnly = s1.getBlocks().get(1);
+		Assert.assertEquals(Lists.newArrayList("b"), bOnly.getSelectors());
+		Assert.assertEquals(Lists.newArrayList(new CSSRule("rule1", "args1")), bOnly.getRules());
+		
+		CSSStyleBlock aAndB = s1.getBlocks().get(2);
+		Assert.assertEquals(Lists.newArrayList("a", "b"), aAndB.getSelectors());
+		Assert.assertEquals(Lists.newArrayList(new CSSRule("rule2", "args2")), aAndB.getRules());
+	}
+	
+	@Test
+	public void testAddReorderedDuplicateBlock() {
+		CSSStyleSection s1 = new CSSStyleSection();
+		
+		s1.addBlock(
+				new CSSStyleBlock(
+					Lists.newArrayList("a", "b"),
+					Lists.newArrayList(
+						new CSSRule("rule1", "args1"),
+						new CSSRule("rule2", "args2"))));
+		
+		s1.addBlock(
+				new CSSStyleBlock(
+					Lists.newArrayList("b", "a"),
+					Lists.newArrayList(
+						new CSSRule("rule2", "args2"),
+						new CSSRule("rule1", "args1"))));
+		
+		Assert.assertEquals(1, s1.getBlocks().size());
+	}
+	
+	@Test
+	public void testAddBundle() {
+		CSSStyleBundle bundle = CSSStyleBundle.of(
+			Lists.newArrayList(
+				new CSSStyleBlock(
+					Lists.newArrayList("a", "b"), 
+					Lists.newArrayList(new CSSRule("rule1", "args1")))));
+		
+		CSSStyleSection s1 = new CSSStyleSection();
+		s1.addBundle(bundle);
+		s1.addBundle(bundle);
+		
+		Assert.assertEquals(1, s1.getBlocks().size());
+		Assert.assertSame(bundle.getBlocks().get(0), s1.getBlocks().get(0));
+		Assert.assertEquals("a,\nb {\n\trule1: args1\n}", s1.getBlocks().get(0).toFormattedString());
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void testBundleBlocksCannotBeModified() {
+		CSSStyleBundle bundle = CSSStyleBundle.of(
+			Lists.newArrayList(
+				new CSSStyleBlock(
+					Lists.newArrayList("a"), 
+					Lists.newArrayList(new CSSRule("rule1", "args1")))));
+		
+		bundle.getBlocks().get(0).addRule(new CSSRule("rule2", "args2"));
+	}
+	
 	@Test(expected=IllegalStateException.class)
 	public void testThrowsForNonMatchingRule() {
 		CSSStyleSection s1 = new CSSStyleSection();
@@ -0,0 +1,109 @@
+package uk.nhs.fhir.makehtml;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import uk.nhs.fhir.render.format.SectionedHTMLDoc;
+import uk.nhs.fhir.render.html.HTMLOutputMode;
+import uk.nhs.fhir.render.html.style.CSSRule;
+import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.CSSStyleBundle;
+import uk.nhs.fhir.render.html.style.SharedStylesheet;
+
+public class TestSharedStylesheet {
+
+	private static final Path OUTPUT_ROOT = Paths.get("output").toAbsolutePath();
+
+	private static CSSStyleBundle bundle(String selector, String ruleName, String ruleArgs) {
+		return CSSStyleBundle.of(Lists.newArrayList(
+			new CSSStyleBlock(
+				Lists.newArrayList(selector),
+				Lists.newArrayList(new CSSRule(ruleName, ruleArgs)))));
+	}
+
+	@Test
+	public void testContainsSharedBlocks() {
+		SharedStylesheet stylesheet = new SharedStylesheet(OUTPUT_ROOT, Lists.newArrayList(bundle("a", "color", "red"), bundle("b", "color", "blue")));
+
+		Assert.assertTrue(stylesheet.contains(new CSSStyleBlock(Lists.newArrayList("a"), Lists.newArrayList(new CSSRule("color", "red")))));
+		Assert.assertFalse(stylesheet.contains(new CSSStyleBlock(Lists.newArrayList("a", "b"), Lists.newArrayList(new CSSRule("color", "red")))));
+		Assert.assertFalse(stylesheet.contains(new CSSStyleBlock(Lists.newArrayList("c"), Lists.newArrayList(new CSSRule("color", "red")))));
+	}
+
+	@Test
+	public void testConflictingBundleLeftOut() {
+		SharedStylesheet stylesheet = new SharedStylesheet(OUTPUT_ROOT, Lists.newArrayList(bundle("a", "color", "red"), bundle("a", "color", "blue")));
+
+		Assert.assertTrue(stylesheet.contains(new CSSStyleBlock(Lists.newArrayList("a"), Lists.newArrayList(new CSSRule("color", "red")))));
+		Assert.assertFalse(stylesheet.contains(new CSSStyleBlock(Lists.newArrayList("a"), Lists.newArrayList(new CSSRule("color", "blue")))));
+		Assert.assertFalse(stylesheet.getCSS().contains("blue"));
+	}
+
+	@Test
+	public void testBundleTargetingSharedSelectorLeftOut() {
+		CSSStyleBlock shared = new CSSStyleBlock(Lists.newArrayList("a"), Lists.newArrayList(new CSSRule("color", "red")));
+		CSSStyleBundle sameBlock = CSSStyleBundle.of(Lists.newArrayList(shared, 
+			new CSSStyleBlock(Lists.newArrayList("b"), Lists.newArrayList(new CSSRule("color", "blue")))));
+		SharedStylesheet stylesheet = new SharedStylesheet(OUTPUT_ROOT, 
+			Lists.newArrayList(bundle("a", "color", "red"), bundle("a", "margin", "0"), sameBlock));
+
+		Assert.assertFalse(stylesheet.getCSS().contains("margin"));
+		Assert.assertTrue(stylesheet.getCSS().contains("blue"));
+		Assert.assertTrue(stylesheet.sharesSelectorWith(new CSSStyleBlock(Lists.newArrayList("c", "b"), Lists.newArrayList(new CSSRule("margin", "0")))));
+		Assert.assertFalse(stylesheet.sharesSelectorWith(new CSSStyleBlock(Lists.newArrayList("a b"), Lists.newArrayList(new CSSRule("margin", "0")))));
+	}
+
+	@Test
+	public void testPageLinksStylesheet() throws IOException {
+		SharedStylesheet stylesheet = new SharedStylesheet(OUTPUT_ROOT, Lists.newArrayList(bundle("a", "color", "red")));
+		SectionedHTMLDoc page = new SectionedHTMLDoc();
+		page.addStyles(bundle("a", "color", "red"));
+		page.addStyles(bundle("b", "color", "blue"));
+
+		StringWriter html = new StringWriter();
+		page.writeHTML(html, HTMLOutputMode.MINIFIED, stylesheet, "styles.css");
+
+		Assert.assertTrue(html.toString(), html.toString().contains("<link rel=\"stylesheet\" href=\"styles.css\""));
+		Assert.assertTrue(html.toString(), html.toString().contains("<style>b{color:blue}</style>"));
+	}
+
+	@Test
+	public void testPageTargetingSharedSelectorKeepsStylesInline() throws IOException {
+		SharedStylesheet stylesheet = new SharedStylesheet(OUTPUT_ROOT, Lists.newArrayList(bundle("a", "color", "red")));
+		SectionedHTMLDoc page = new SectionedHTMLDoc();
+		page.addStyles(bundle("a", "margin", "0"));
+		page.addStyles(bundle("a", "color", "red"));
+
+		StringWriter html = new StringWriter();
+		page.writeHTML(html, HTMLOutputMode.MINIFIED, stylesheet, "styles.css");
+
+		Assert.assertFalse(html.toString(), html.toString().contains("<link"));
+		Assert.assertTrue(html.toString(), html.toString().contains("<style>a{margin:0}a{color:red}</style>"));
+	}
+
+	@Test
+	public void testFileNamedByContent() {
+		SharedStylesheet red = new SharedStylesheet(OUTPUT_ROOT, Lists.newArrayList(bundle("a", "color", "red")));
+		SharedStylesheet redAgain = new SharedStylesheet(OUTPUT_ROOT, Lists.newArrayList(bundle("a", "color", "red")));
+		SharedStylesheet blue = new SharedStylesheet(OUTPUT_ROOT, Lists.newArrayList(bundle("a", "color", "blue")));
+
+		Assert.assertEquals(red.getPath(), redAgain.getPath());
+		Assert.assertNotEquals(red.getPath(), blue.getPath());
+		Assert.assertEquals(OUTPUT_ROOT, red.getPath().getParent());
+	}
+
+	@Test
+	public void testHrefRelativeToPage() {
+		SharedStylesheet stylesheet = new SharedStylesheet(OUTPUT_ROOT, Lists.newArrayList(bundle("a", "color", "red")));
+		Path pageDirectory = OUTPUT_ROOT.resolve("STU3").resolve("StructureDefinition").resolve("my-profile");
+
+		Assert.assertEquals("../../../" + stylesheet.getPath().getFileName(), stylesheet.getHref(pageDirectory));
+	}
+}
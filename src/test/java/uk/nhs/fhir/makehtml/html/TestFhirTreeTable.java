@@ -4,8 +4,10 @@ import java.io.IOException;
 import java.util.Optional;
 
 import org.jdom2.Document;
+import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 import uk.nhs.fhir.data.structdef.FhirElementDataType;
@@ -56,5 +58,8 @@ public class TestFhirTreeTable {
 		
 		String output = HTMLUtil.docToString(new Document(table.makeTable()), true, false);
 		System.out.println(output);
+		
+		// the root row has no children, so needs no vertical lines
+		Assert.assertEquals(ImmutableSet.of("fhirtreebg-dotted-0"), fhirTreeTable.getBackgroundCSSClasses());
 	}
 }
\ No newline at end of file
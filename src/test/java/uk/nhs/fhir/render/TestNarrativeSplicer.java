@@ -0,0 +1,114 @@
+package uk.nhs.fhir.render;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestNarrativeSplicer {
+
+	private static final String DIV = "<div xmlns=\"http://www.w3.org/1999/xhtml\"><p>Rendered&#160;text</p></div>";
+	private static final String NARRATIVE = "<text><status value=\"generated\"/>" + DIV + "</text>";
+
+	private String splice(String input, Optional<String> newUrl) throws IOException {
+		Path inputFile = Files.createTempFile("splice-in", ".xml");
+		Path outputFile = Files.createTempFile("splice-out", ".xml");
+		try {
+			Files.write(inputFile, input.getBytes(StandardCharsets.UTF_8));
+			new NarrativeSplicer(DIV, newUrl).splice(inputFile.toFile(), outputFile);
+			return new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8);
+		} finally {
+			Files.delete(inputFile);
+			Files.delete(outputFile);
+		}
+	}
+
+	@Test
+	public void testExistingTextReplaced() throws IOException {
+		String input = 
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<ValueSet xmlns=\"http://hl7.org/fhir\">\n"
+			+ "  <id value=\"vs\"/>\n"
+			+ "  <text><status value=\"empty\"/><div xmlns=\"http://www.w3.org/1999/xhtml\">old</div></text>\n"
+			+ "  <!-- kept -->\n"
+			+ "  <url value=\"http://example.org/ValueSet/vs\"/>\n"
+			+ "  <name value=\"A &amp; B\"/>\n"
+			+ "</ValueSet>";
+
+		String expected = 
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<ValueSet xmlns=\"http://hl7.org/fhir\">\n"
+			+ "  <id value=\"vs\"/>\n"
+			+ "  " + NARRATIVE + "\n"
+			+ "  <!-- kept -->\n"
+			+ "  <url value=\"http://example.org/ValueSet/vs\"/>\n"
+			+ "  <name value=\"A &amp; B\"/>\n"
+			+ "</ValueSet>";
+
+		Assert.assertEquals(expected, splice(input, Optional.empty()));
+	}
+
+	@Test
+	public void testTextAndUrlInserted() throws IOException {
+		String input = 
+			"<StructureDefinition xmlns=\"http://hl7.org/fhir\">\n"
+			+ "\t<meta><lastUpdated value=\"2017-01-01\"/></meta>\n"
+			+ "\t<name value=\"profile\"/>\n"
+			+ "</StructureDefinition>";
+
+		String expected = 
+			"<StructureDefinition xmlns=\"http://hl7.org/fhir\">\n"
+			+ "\t<meta><lastUpdated value=\"2017-01-01\"/></meta>\n"
+			+ "\t" + NARRATIVE + "\n"
+			+ "\t<url value=\"https://new.base/StructureDefinition/profile\"/>\n"
+			+ "\t<name value=\"profile\"/>\n"
+			+ "</StructureDefinition>";
+
+		Assert.assertEquals(expected, splice(input, Optional.of("https://new.base/StructureDefinition/profile")));
+	}
+
+	@Test
+	public void testUrlReplaced() throws IOException {
+		String input = 
+			"<CodeSystem xmlns=\"http://hl7.org/fhir\">\n"
+			+ "  <url value=\"http://example.org/CodeSystem/cs\"/>\n"
+			+ "</CodeSystem>";
+
+		String expected = 
+			"<CodeSystem xmlns=\"http://hl7.org/fhir\">\n"
+			+ "  " + NARRATIVE + "\n"
+			+ "  <url value=\"https://new.base/CodeSystem/cs\"/>\n"
+			+ "</CodeSystem>";
+
+		Assert.assertEquals(expected, splice(input, Optional.of("https://new.base/CodeSystem/cs")));
+	}
+
+	@Test
+	public void testDeclarationKeptAsRead() throws IOException {
+		String input = 
+			"<?xml version='1.0' standalone='yes'?>\r\n\r\n"
+			+ "<ValueSet xmlns=\"http://hl7.org/fhir\"><id value=\"vs\"/></ValueSet>";
+
+		String expected = 
+			"<?xml version='1.0' standalone='yes'?>\r\n\r\n"
+			+ "<ValueSet xmlns=\"http://hl7.org/fhir\"><id value=\"vs\"/>" + NARRATIVE + "</ValueSet>";
+
+		Assert.assertEquals(expected, splice(input, Optional.empty()));
+	}
+
+	@Test
+	public void testNoWhitespaceAddedAfterDeclaration() throws IOException {
+		String input = 
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?><!-- kept --><ValueSet xmlns=\"http://hl7.org/fhir\"><id value=\"vs\"/></ValueSet>";
+
+		String expected = 
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?><!-- kept --><ValueSet xmlns=\"http://hl7.org/fhir\"><id value=\"vs\"/>" + NARRATIVE + "</ValueSet>";
+
+		Assert.assertEquals(expected, splice(input, Optional.empty()));
+	}
+}
@@ -0,0 +1,99 @@
+package uk.nhs.fhir.render;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import uk.nhs.fhir.render.RenderManifest.RenderManifestEntry;
+
+public class TestRenderManifest {
+
+	private static final String CODESYSTEM_URL = "https://fhir.hl7.org.uk/STU3/CodeSystem/cs";
+	private static final String VALUESET_URL = "https://fhir.hl7.org.uk/STU3/ValueSet/vs";
+	private static final String EXTENSION_URL = "https://fhir.hl7.org.uk/STU3/StructureDefinition/ext";
+	private static final String PROFILE_URL = "https://fhir.hl7.org.uk/STU3/StructureDefinition/profile";
+
+	private RenderManifest previousManifest() {
+		RenderManifest manifest = new RenderManifest("settings");
+		manifest.addEntry("cs.xml", new RenderManifestEntry("hash1", Optional.of(CODESYSTEM_URL), ImmutableSet.of()));
+		manifest.addEntry("vs.xml", new RenderManifestEntry("hash2", Optional.of(VALUESET_URL), ImmutableSet.of(CODESYSTEM_URL)));
+		manifest.addEntry("ext.xml", new RenderManifestEntry("hash3", Optional.of(EXTENSION_URL), ImmutableSet.of()));
+		manifest.addEntry("profile.xml", new RenderManifestEntry("hash4", Optional.of(PROFILE_URL), ImmutableSet.of(EXTENSION_URL)));
+		return manifest;
+	}
+
+	private Map<String, Optional<String>> urls() {
+		return ImmutableMap.of(
+			"cs.xml", Optional.of(CODESYSTEM_URL),
+			"vs.xml", Optional.of(VALUESET_URL),
+			"ext.xml", Optional.of(EXTENSION_URL),
+			"profile.xml", Optional.of(PROFILE_URL));
+	}
+
+	@Test
+	public void testNothingToRenderWhenUnchanged() {
+		Map<String, String> hashes = ImmutableMap.of("cs.xml", "hash1", "vs.xml", "hash2", "ext.xml", "hash3", "profile.xml", "hash4");
+
+		Set<String> toRender = previousManifest().findFilesToRender(hashes, urls(), Maps.newHashMap());
+
+		Assert.assertTrue(toRender.isEmpty());
+	}
+
+	@Test
+	public void testChangedFileAndDependantsRendered() {
+		Map<String, String> hashes = ImmutableMap.of("cs.xml", "changed", "vs.xml", "hash2", "ext.xml", "hash3", "profile.xml", "hash4");
+
+		Set<String> toRender = previousManifest().findFilesToRender(hashes, urls(), Maps.newHashMap());
+
+		Assert.assertEquals(ImmutableSet.of("cs.xml", "vs.xml"), toRender);
+	}
+
+	@Test
+	public void testKnownDependenciesUsed() {
+		Map<String, String> hashes = ImmutableMap.of("cs.xml", "hash1", "vs.xml", "hash2", "ext.xml", "changed", "profile.xml", "hash4");
+
+		Set<String> toRender = previousManifest().findFilesToRender(hashes, urls(), ImmutableMap.of("vs.xml", ImmutableSet.of(EXTENSION_URL)));
+
+		Assert.assertEquals(ImmutableSet.of("ext.xml", "vs.xml", "profile.xml"), toRender);
+	}
+
+	@Test
+	public void testDependantsOfRemovedFileRendered() {
+		Map<String, String> hashes = ImmutableMap.of("cs.xml", "hash1", "vs.xml", "hash2", "profile.xml", "hash4");
+		Map<String, Optional<String>> urls = Maps.newHashMap(urls());
+		urls.remove("ext.xml");
+
+		Set<String> toRender = previousManifest().findFilesToRender(hashes, urls, Maps.newHashMap());
+
+		Assert.assertEquals(ImmutableSet.of("profile.xml"), toRender);
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		Path manifestFile = Files.createTempFile("render-manifest", "");
+		try {
+			previousManifest().write(manifestFile);
+
+			Optional<RenderManifest> read = RenderManifest.read(manifestFile);
+			Assert.assertTrue(read.isPresent());
+			Assert.assertEquals("settings", read.get().getSettings());
+
+			RenderManifestEntry entry = read.get().getEntry("vs.xml").get();
+			Assert.assertEquals("hash2", entry.getHash());
+			Assert.assertEquals(Optional.of(VALUESET_URL), entry.getUrl());
+			Assert.assertEquals(ImmutableSet.of(CODESYSTEM_URL), entry.getDependencies());
+		} finally {
+			Files.delete(manifestFile);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package uk.nhs.fhir.render;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class TestRenderSelection {
+
+	private static final Path INPUT_DIRECTORY = Paths.get("input").toAbsolutePath();
+
+	private static final String CODESYSTEM_URL = "https://fhir.hl7.org.uk/STU3/CodeSystem/cs";
+	private static final String CONCEPTMAP_URL = "https://fhir.hl7.org.uk/STU3/ConceptMap/cm";
+	private static final String VALUESET_URL = "https://fhir.hl7.org.uk/STU3/ValueSet/vs";
+	private static final String OTHER_VALUESET_URL = "https://fhir.hl7.org.uk/STU3/ValueSet/other-vs";
+	private static final String PROFILE_URL = "https://fhir.hl7.org.uk/STU3/StructureDefinition/profile";
+
+	private static final File CODESYSTEM_FILE = INPUT_DIRECTORY.resolve("CodeSystem").resolve("cs.xml").toFile();
+	private static final File CONCEPTMAP_FILE = INPUT_DIRECTORY.resolve("ConceptMap").resolve("cm.xml").toFile();
+	private static final File VALUESET_FILE = INPUT_DIRECTORY.resolve("ValueSet").resolve("vs.xml").toFile();
+	private static final File OTHER_VALUESET_FILE = INPUT_DIRECTORY.resolve("ValueSet").resolve("other-vs.xml").toFile();
+	private static final File PROFILE_FILE = INPUT_DIRECTORY.resolve("StructureDefinition").resolve("profile.xml").toFile();
+
+	private static final Map<File, Optional<String>> URLS = ImmutableMap.of(
+		CODESYSTEM_FILE, Optional.of(CODESYSTEM_URL),
+		CONCEPTMAP_FILE, Optional.of(CONCEPTMAP_URL),
+		VALUESET_FILE, Optional.of(VALUESET_URL),
+		OTHER_VALUESET_FILE, Optional.of(OTHER_VALUESET_URL),
+		PROFILE_FILE, Optional.of(PROFILE_URL));
+
+	private static final Map<File, Set<String>> EMBEDDED_URLS = ImmutableMap.of(
+		VALUESET_FILE, ImmutableSet.of(CODESYSTEM_URL, CONCEPTMAP_URL),
+		OTHER_VALUESET_FILE, ImmutableSet.of());
+
+	private static RenderSelection select(String... urlsOrGlobs) {
+		return select(EMBEDDED_URLS, urlsOrGlobs);
+	}
+
+	private static RenderSelection select(Map<File, Set<String>> embeddedUrls, String... urlsOrGlobs) {
+		return RenderSelection.select(ImmutableSet.copyOf(urlsOrGlobs), INPUT_DIRECTORY, URLS, embeddedUrls);
+	}
+
+	@Test
+	public void testSelectByUrl() {
+		RenderSelection selection = select(PROFILE_URL);
+
+		Assert.assertTrue(selection.contains(PROFILE_FILE));
+		Assert.assertFalse(selection.contains(OTHER_VALUESET_FILE));
+	}
+
+	@Test
+	public void testUrlIsNotTreatedAsGlob() {
+		RenderSelection selection = select("https://fhir.hl7.org.uk/STU3/StructureDefinition/*");
+
+		Assert.assertFalse(selection.contains(PROFILE_FILE));
+	}
+
+	@Test
+	public void testGlobMatchesRelativePath() {
+		RenderSelection selection = select("ValueSet/*.xml");
+
+		Assert.assertTrue(selection.contains(VALUESET_FILE));
+		Assert.assertTrue(selection.contains(OTHER_VALUESET_FILE));
+		Assert.assertFalse(selection.contains(PROFILE_FILE));
+	}
+
+	@Test
+	public void testGlobMatchesFileName() {
+		RenderSelection selection = select("profile.xml");
+
+		Assert.assertTrue(selection.contains(PROFILE_FILE));
+		Assert.assertFalse(selection.contains(VALUESET_FILE));
+	}
+
+	@Test
+	public void testGlobMatchesWholeFileName() {
+		RenderSelection selection = select("vs.xml");
+
+		Assert.assertTrue(selection.contains(VALUESET_FILE));
+		Assert.assertFalse(selection.contains(OTHER_VALUESET_FILE));
+	}
+
+	@Test
+	public void testValueSetEmbeddingSelectedConceptMapIsSelected() {
+		RenderSelection selection = select(CONCEPTMAP_URL);
+
+		Assert.assertTrue(selection.contains(CONCEPTMAP_FILE));
+		Assert.assertTrue(selection.contains(VALUESET_FILE));
+		Assert.assertFalse(selection.contains(OTHER_VALUESET_FILE));
+	}
+
+	@Test
+	public void testValueSetEmbeddingSelectedCodeSystemIsSelected() {
+		RenderSelection selection = select("CodeSystem/cs.xml");
+
+		Assert.assertTrue(selection.contains(CODESYSTEM_FILE));
+		Assert.assertTrue(selection.contains(VALUESET_FILE));
+		Assert.assertFalse(selection.contains(CONCEPTMAP_FILE));
+	}
+
+	@Test
+	public void testEmbeddingFollowedTransitively() {
+		Map<File, Set<String>> embeddedUrls = ImmutableMap.of(
+			VALUESET_FILE, ImmutableSet.of(CODESYSTEM_URL),
+			OTHER_VALUESET_FILE, ImmutableSet.of(VALUESET_URL));
+
+		RenderSelection selection = select(embeddedUrls, CODESYSTEM_URL);
+
+		Assert.assertTrue(selection.contains(VALUESET_FILE));
+		Assert.assertTrue(selection.contains(OTHER_VALUESET_FILE));
+		Assert.assertFalse(selection.contains(PROFILE_FILE));
+	}
+}
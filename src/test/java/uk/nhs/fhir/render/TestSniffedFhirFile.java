@@ -0,0 +1,58 @@
+package uk.nhs.fhir.render;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uk.nhs.fhir.util.FhirVersion;
+
+public class TestSniffedFhirFile {
+
+	private Optional<SniffedFhirFile> sniff(String xml) throws IOException {
+		Path file = Files.createTempFile("sniff", ".xml");
+		try {
+			Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+			return SniffedFhirFile.sniff(file.toFile());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testRenderableTypeIsNotAnExample() throws IOException {
+		Optional<SniffedFhirFile> sniffed = sniff("<?xml version=\"1.0\"?><CodeSystem xmlns=\"http://hl7.org/fhir\"><url value=\"x\"/></CodeSystem>");
+
+		Assert.assertTrue(sniffed.get().isRenderable());
+		Assert.assertEquals(Optional.of(FhirVersion.STU3), sniffed.get().getFhirVersion());
+		Assert.assertFalse(sniffed.get().getExampleVersion().isPresent());
+	}
+
+	@Test
+	public void testExampleVersionFromMetaProfile() throws IOException {
+		Optional<SniffedFhirFile> sniffed = sniff(
+			"<Patient xmlns=\"http://hl7.org/fhir\"><id value=\"p\"/><meta>"
+			+ "<profile value=\"https://fhir.hl7.org.uk/STU3/StructureDefinition/CareConnect-Patient-1\"/>"
+			+ "</meta><active value=\"true\"/></Patient>");
+
+		Assert.assertEquals("Patient", sniffed.get().getResourceType());
+		Assert.assertEquals(Optional.of(FhirVersion.STU3), sniffed.get().getExampleVersion());
+	}
+
+	@Test
+	public void testExampleVersionUnknownWithoutHints() throws IOException {
+		Optional<SniffedFhirFile> sniffed = sniff("<Patient xmlns=\"http://hl7.org/fhir\"><active value=\"true\"/></Patient>");
+
+		Assert.assertFalse(sniffed.get().getExampleVersion().isPresent());
+	}
+
+	@Test
+	public void testNonFhirFileNotSniffed() throws IOException {
+		Assert.assertFalse(sniff("<project xmlns=\"http://maven.apache.org/POM/4.0.0\"/>").isPresent());
+		Assert.assertFalse(sniff("not xml").isPresent());
+	}
+}
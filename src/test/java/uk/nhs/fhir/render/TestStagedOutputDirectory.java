@@ -0,0 +1,137 @@
+package uk.nhs.fhir.render;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.nhs.fhir.util.FhirFileUtils;
+
+public class TestStagedOutputDirectory {
+
+	private Path parentDirectory;
+	private Path outputDirectory;
+
+	@Before
+	public void createParentDirectory() throws IOException {
+		parentDirectory = Files.createTempDirectory("staged-output");
+		outputDirectory = parentDirectory.resolve("output");
+	}
+
+	@After
+	public void deleteParentDirectory() throws IOException {
+		FileUtils.deleteDirectory(parentDirectory.toFile());
+	}
+
+	private void write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		try (OutputStream out = FhirFileUtils.newOutputStream(file)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private String read(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testPublishToNewOutputDirectory() throws IOException {
+		StagedOutputDirectory staged = StagedOutputDirectory.create(outputDirectory);
+		write(staged.getStagingDirectory().resolve("STU3/a.html"), "a");
+
+		staged.publish();
+
+		Assert.assertTrue(Files.isSymbolicLink(outputDirectory));
+		Assert.assertEquals("a", read(outputDirectory.resolve("STU3/a.html")));
+	}
+
+	@Test
+	public void testExistingOutputUnchangedUntilPublished() throws IOException {
+		write(outputDirectory.resolve("STU3/a.html"), "old a");
+		write(outputDirectory.resolve("STU3/b.html"), "old b");
+
+		StagedOutputDirectory staged = StagedOutputDirectory.create(outputDirectory);
+		write(staged.getStagingDirectory().resolve("STU3/a.html"), "new a");
+
+		Assert.assertEquals("old a", read(outputDirectory.resolve("STU3/a.html")));
+
+		staged.publish();
+
+		Assert.assertEquals("new a", read(outputDirectory.resolve("STU3/a.html")));
+		Assert.assertEquals("old b", read(outputDirectory.resolve("STU3/b.html")));
+	}
+
+	@Test
+	public void testRepublishKeepsPreviousStagingDirectoryUntilNextRun() throws IOException {
+		StagedOutputDirectory first = StagedOutputDirectory.create(outputDirectory);
+		write(first.getStagingDirectory().resolve("a.html"), "first");
+		first.publish();
+
+		StagedOutputDirectory second = StagedOutputDirectory.create(outputDirectory.resolveSibling("output"));
+		Assert.assertNotEquals(first.getStagingDirectory(), second.getStagingDirectory());
+		write(second.getStagingDirectory().resolve("a.html"), "second");
+		second.publish();
+
+		Assert.assertEquals("second", read(outputDirectory.resolve("a.html")));
+		Assert.assertEquals("first", read(first.getStagingDirectory().resolve("a.html")));
+
+		StagedOutputDirectory third = StagedOutputDirectory.create(outputDirectory);
+
+		Assert.assertFalse(Files.exists(first.getStagingDirectory()));
+		Assert.assertTrue(Files.exists(second.getStagingDirectory()));
+		Assert.assertEquals("second", read(third.getStagingDirectory().resolve("a.html")));
+	}
+
+	@Test
+	public void testReplacedOutputDirectoryKeptUntilNextRun() throws IOException {
+		write(outputDirectory.resolve("a.html"), "old");
+
+		StagedOutputDirectory first = StagedOutputDirectory.create(outputDirectory);
+		first.publish();
+
+		Assert.assertEquals(1, countSiblingsContaining(".previous-"));
+
+		StagedOutputDirectory.create(outputDirectory);
+
+		Assert.assertEquals(0, countSiblingsContaining(".previous-"));
+		Assert.assertTrue(Files.exists(first.getStagingDirectory()));
+	}
+
+	private long countSiblingsContaining(String infix) throws IOException {
+		try (Stream<Path> siblings = Files.list(parentDirectory)) {
+			return siblings.filter(sibling -> sibling.getFileName().toString().contains(infix)).count();
+		}
+	}
+
+	@Test
+	public void testStagingDirectoryHasDefaultPermissions() throws IOException {
+		Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		Path defaultDirectory = Files.createDirectory(parentDirectory.resolve("default"));
+
+		StagedOutputDirectory staged = StagedOutputDirectory.create(outputDirectory);
+
+		Assert.assertEquals(Files.getPosixFilePermissions(defaultDirectory), Files.getPosixFilePermissions(staged.getStagingDirectory()));
+	}
+
+	@Test
+	public void testDiscardLeavesOutputUnchanged() throws IOException {
+		write(outputDirectory.resolve("a.html"), "old");
+
+		StagedOutputDirectory staged = StagedOutputDirectory.create(outputDirectory);
+		write(staged.getStagingDirectory().resolve("a.html"), "new");
+		staged.discard();
+
+		Assert.assertFalse(Files.exists(staged.getStagingDirectory()));
+		Assert.assertEquals("old", read(outputDirectory.resolve("a.html")));
+	}
+}
@@ -0,0 +1,59 @@
+package uk.nhs.fhir.render.format;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class TestConceptPages {
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("concept-pages");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		FileUtils.deleteDirectory(directory.toFile());
+	}
+
+	@Test
+	public void testDeletesPagesBeyondCurrentPages() throws IOException {
+		for (String fileName : new String[] {"concepts.html", "concepts-1.html", "concepts-2.html", "concepts-3.html", "metadata.html"}) {
+			Files.createFile(directory.resolve(fileName));
+		}
+
+		ConceptPages.deleteStalePages(directory, ImmutableSet.of("concepts.html", ConceptPages.getFileName(0), ConceptPages.getFileName(1), "metadata.html"));
+
+		Assert.assertTrue(Files.exists(directory.resolve("concepts.html")));
+		Assert.assertTrue(Files.exists(directory.resolve("concepts-1.html")));
+		Assert.assertTrue(Files.exists(directory.resolve("concepts-2.html")));
+		Assert.assertFalse(Files.exists(directory.resolve("concepts-3.html")));
+		Assert.assertTrue(Files.exists(directory.resolve("metadata.html")));
+	}
+
+	@Test
+	public void testOnlyDeletesPages() throws IOException {
+		Files.createFile(directory.resolve("concepts.html"));
+		Files.createFile(directory.resolve("concepts-old.html"));
+
+		ConceptPages.deleteStalePages(directory, ImmutableSet.of());
+
+		Assert.assertTrue(Files.exists(directory.resolve("concepts.html")));
+		Assert.assertTrue(Files.exists(directory.resolve("concepts-old.html")));
+	}
+
+	@Test
+	public void testMissingDirectoryIgnored() throws IOException {
+		ConceptPages.deleteStalePages(directory.resolve("missing"), ImmutableSet.of());
+	}
+}
@@ -0,0 +1,79 @@
+package uk.nhs.fhir.render.html;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.jdom2.Attribute;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import uk.nhs.fhir.render.format.HTMLDocSection;
+import uk.nhs.fhir.render.format.SectionedHTMLDoc;
+import uk.nhs.fhir.render.html.style.CSSClassNames;
+import uk.nhs.fhir.render.html.style.CSSRule;
+import uk.nhs.fhir.render.html.style.CSSStyleBlock;
+import uk.nhs.fhir.render.html.style.FhirCSS;
+
+public class TestStreamingHTMLOutputter {
+
+	private SectionedHTMLDoc makeDoc() {
+		HTMLDocSection section = new HTMLDocSection();
+		section.addStyle(new CSSStyleBlock(Lists.newArrayList("." + FhirCSS.PANEL), Lists.newArrayList(new CSSRule("color", "#000"))));
+		section.addHeadElement(Elements.withAttributeAndText("script", new Attribute("type", "text/javascript"), "var x = 1;"));
+		section.addBodyElement(
+			Elements.withAttributeAndChildren("div", 
+				new Attribute("class", FhirCSS.PANEL + " other"), 
+				Lists.newArrayList(
+					Elements.withText("span", "Text with an entity&#160;and an &amp; ampersand"),
+					Elements.withChildren("ul", 
+						Elements.withText("li", "one"),
+						Elements.withText("li", "two")),
+					Elements.newElement("br"))));
+		section.addBodyElement(Elements.withAttributeAndText("p", new Attribute("title", "a&#x2014;b"), "Another"));
+		
+		SectionedHTMLDoc doc = new SectionedHTMLDoc();
+		doc.addSection(section);
+		return doc;
+	}
+	
+	@Test
+	public void testPrettyOutputMatchesDocument() throws IOException, ParserConfigurationException {
+		assertMatchesDocumentOutput(makeDoc(), HTMLOutputMode.PRETTY);
+	}
+	
+	@Test
+	public void testMinifiedOutputMatchesDocument() throws IOException, ParserConfigurationException {
+		assertMatchesDocumentOutput(makeDoc(), HTMLOutputMode.MINIFIED);
+		assertMatchesDocumentOutput(makeDoc(), HTMLOutputMode.MINIFIED_SHORT_CLASS_NAMES);
+	}
+	
+	@Test
+	public void testMinifiedOutput() throws IOException {
+		StringWriter streamed = new StringWriter();
+		makeDoc().writeHTML(streamed, HTMLOutputMode.MINIFIED_SHORT_CLASS_NAMES);
+		String html = streamed.toString();
+		
+		Assert.assertFalse(html.contains("\n"));
+		Assert.assertTrue(html.contains("<style>." + CSSClassNames.shorten(FhirCSS.PANEL) + "{color:#000}</style>"));
+		Assert.assertTrue(html.contains("<div class=\"" + CSSClassNames.shorten(FhirCSS.PANEL) + " other\">"));
+		Assert.assertTrue(html.contains("<span>Text with an entity&#160;and an &amp;amp; ampersand</span><ul><li>one</li>"));
+	}
+	
+	@Test
+	public void testEmptyBody() throws IOException, ParserConfigurationException {
+		assertMatchesDocumentOutput(new SectionedHTMLDoc(), HTMLOutputMode.PRETTY);
+	}
+	
+	private void assertMatchesDocumentOutput(SectionedHTMLDoc doc, HTMLOutputMode mode) throws IOException, ParserConfigurationException {
+		String expected = HTMLUtil.docToString(doc.getHTML(mode), mode, false);
+		
+		StringWriter streamed = new StringWriter();
+		doc.writeHTML(streamed, mode);
+		
+		Assert.assertEquals(expected, streamed.toString());
+	}
+}
@@ -0,0 +1,119 @@
+package uk.nhs.fhir.render.html.tree;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import uk.nhs.fhir.render.html.HTMLOutputMode;
+import uk.nhs.fhir.render.html.cell.SimpleTextCell;
+import uk.nhs.fhir.render.html.style.CSSClassNames;
+import uk.nhs.fhir.render.html.style.FhirCSS;
+import uk.nhs.fhir.render.html.table.Table;
+import uk.nhs.fhir.render.html.table.TableRow;
+import uk.nhs.fhir.render.html.table.TableTitle;
+
+public class TestLazyTreeTable {
+
+	private static final String BACKGROUND = "fhirtreebg-dotted-0";
+
+	// root -> (a -> (a.x -> (a.x.1)), b -> (b.y))
+	private LazyTreeTable makeTable() {
+		List<TableRow> tableRows = Lists.newArrayList();
+		List<LazyTreeRow> rows = Lists.newArrayList();
+		for (String name : new String[]{"root", "a", "a.x", "a.x.1", "b", "b \"y\""}) {
+			tableRows.add(new TableRow(new SimpleTextCell(name)));
+			rows.add(makeRow(name, Lists.newArrayList()));
+		}
+
+		Table table = new Table(Lists.newArrayList(new TableTitle("Name", "The logical name of the element", "100%")), tableRows);
+		return new LazyTreeTable(table, rows, Lists.newArrayList(-1, 0, 1, 2, 0, 4), ImmutableSet.of(BACKGROUND));
+	}
+
+	private LazyTreeRow makeRow(String name, List<LazyTreeRow.Info> infos) {
+		return new LazyTreeRow(Lists.newArrayList(FhirTreeIcon.VLINE, FhirTreeIcon.VJOIN_END), FhirIcon.ELEMENT, BACKGROUND, name, name,
+			Optional.empty(), false, ImmutableMap.of(), Optional.of("0..1"), false, Lists.newArrayList(), false, "", infos);
+	}
+
+	@Test
+	public void testShellHoldsFirstLevel() {
+		Element shell = makeTable().makeShell("snapshot.json");
+
+		Element table = shell.getChild("table", shell.getNamespace());
+		List<Element> rows = table.getChild("tbody", shell.getNamespace()).getChildren("tr", shell.getNamespace());
+
+		Assert.assertEquals(3, rows.size());
+		Assert.assertEquals("0", rows.get(0).getAttributeValue("data-row"));
+		Assert.assertEquals(FhirCSS.TREE_ROW_EXPANDED, rows.get(0).getAttributeValue("class"));
+		Assert.assertEquals("1", rows.get(1).getAttributeValue("data-row"));
+		Assert.assertEquals(FhirCSS.TREE_ROW_COLLAPSED, rows.get(1).getAttributeValue("class"));
+		Assert.assertEquals("4", rows.get(2).getAttributeValue("data-row"));
+
+		String script = shell.getChildText("script", shell.getNamespace());
+		Assert.assertTrue(script.contains("'snapshot.json'"));
+		Assert.assertFalse(script.contains("<") || script.contains(">") || script.contains("&"));
+	}
+
+	@Test
+	public void testRowsJSON() {
+		String json = makeTable().getRowsJSON();
+
+		Assert.assertTrue(json, json.startsWith("{\"parents\":[-1,0,1,2,0,4],"));
+		Assert.assertTrue(json, json.contains("\"backgrounds\":[\"" + BACKGROUND + "\"],\"flags\":[],"));
+		Assert.assertTrue(json, json.contains("\"rows\":["
+			+ "[\"43\",2,0,\"root\",\"root\",null,0,\"\",\"0..1\",0,[],0,\"\",[]],"
+			+ "[\"43\",2,0,\"a\",\"a\",null,0,\"\",\"0..1\",0,[],0,\"\",[]],"
+			+ "[\"43\",2,0,\"a.x\",\"a.x\",null,0,\"\",\"0..1\",0,[],0,\"\",[]],"
+			+ "[\"43\",2,0,\"a.x.1\",\"a.x.1\",null,0,\"\",\"0..1\",0,[],0,\"\",[]],"
+			+ "[\"43\",2,0,\"b\",\"b\",null,0,\"\",\"0..1\",0,[],0,\"\",[]],"
+			+ "[\"43\",2,0,\"b \\\"y\\\"\",\"b \\\"y\\\"\",null,0,\"\",\"0..1\",0,[],0,\"\",[]]]}"));
+	}
+
+	@Test
+	public void testRowFields() {
+		LazyTreeRow row = new LazyTreeRow(Lists.newArrayList(FhirTreeIcon.VJOIN), FhirIcon.REFERENCE, BACKGROUND, "subject", "Observation.subject",
+			Optional.of("Who the observation is about"), true, ImmutableMap.of("S", "Part of the summary set"), Optional.of("1..1"), true,
+			Lists.newArrayList(
+				new LazyTreeRow.Link("Reference", "reference.html", Lists.newArrayList(new LazyTreeRow.Link("Patient", "patient.html", Lists.newArrayList())))),
+			true,
+			"Subject",
+			Lists.newArrayList(
+				new LazyTreeRow.Info("Fixed value: ", "", Optional.of("http://example.org/system"), Optional.empty()),
+				new LazyTreeRow.Info("Binding: ", "Codes", Optional.of("http://example.org/vs"), Optional.of("vs.html"))));
+
+		Table table = new Table(Lists.newArrayList(), Lists.newArrayList(new TableRow(new SimpleTextCell("subject"))));
+		String json = new LazyTreeTable(table, Lists.newArrayList(row), Lists.newArrayList(-1), ImmutableSet.of(BACKGROUND)).getRowsJSON();
+
+		Assert.assertTrue(json, json.contains("\"flags\":[[\"S\",\"Part of the summary set\"]]"));
+		Assert.assertTrue(json, json.contains("\"rows\":[[\"2\",9,0,\"subject\",\"Observation.subject\",\"Who the observation is about\",1,\"0\",\"1..1\",1,"
+			+ "[[\"Reference\",\"reference.html\",[[\"Patient\",\"patient.html\"]]]],1,\"Subject\","
+			+ "[[\"Fixed value: \",\"\",\"http:\\/\\/example.org\\/system\"],[\"Binding: \",\"Codes\",\"http:\\/\\/example.org\\/vs\",\"vs.html\"]]]]}"));
+	}
+
+	@Test
+	public void testShortClassNamesInJSON() {
+		String json = makeTable().getRowsJSON(HTMLOutputMode.MINIFIED_SHORT_CLASS_NAMES);
+
+		Assert.assertTrue(json, json.contains("\"cell\":\"" + CSSClassNames.shorten(FhirCSS.TREE_CELL) + "\""));
+		Assert.assertTrue(json, json.contains("\"tabLink\":\"" + FhirCSS.TAB_LINK + "\""));
+		Assert.assertTrue(json, json.contains("\"backgrounds\":[\"" + BACKGROUND + "\"]"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testParentForEachRow() {
+		Table table = new Table(Lists.newArrayList(), Lists.newArrayList(new TableRow(new SimpleTextCell("root"))));
+		new LazyTreeTable(table, Lists.newArrayList(makeRow("root", Lists.newArrayList())), Lists.newArrayList(), ImmutableSet.of());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFieldsForEachRow() {
+		Table table = new Table(Lists.newArrayList(), Lists.newArrayList(new TableRow(new SimpleTextCell("root"))));
+		new LazyTreeTable(table, Lists.newArrayList(), Lists.newArrayList(-1), ImmutableSet.of());
+	}
+}
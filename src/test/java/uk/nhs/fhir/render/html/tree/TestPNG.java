@@ -6,6 +6,7 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import org.jdom2.Attribute;
 import org.jdom2.Document;
+import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -22,6 +23,47 @@ import uk.nhs.fhir.render.html.tree.TablePNGGenerator;
 
 public class TestPNG {
 	
+	// encoded by the original (pre-caching) encoder
+	private static final boolean[] ONE_LINE = new boolean[]{true};
+	private static final boolean[] MIXED_LINES = new boolean[]{true, false, true, true};
+	private static final boolean[] LEADING_GAPS = new boolean[]{false, false, false, true, false};
+	
+	private static final String SOLID_ONE_LINE = "iVBORw0KGgoAAAANSUhEUgAAAyAAAAABCAYAAAAmaMpmAAAAJklEQVR4nO3KsQ0AMAgEMXb9/WcgKSmh90nurpLU1q8vPwAAwPQAwQqgJFS+lZoAAAAASUVORK5CYII=";
+	private static final String SOLID_MIXED_LINES = "iVBORw0KGgoAAAANSUhEUgAAAyAAAAABCAYAAAAmaMpmAAAALUlEQVR4nGNITk5mIBYDwX9S1FMbU2r/QLt/FI/iUTyKR/EoHsWjeBSP4pGOAeYWn9D5US0DAAAAAElFTkSuQmCC";
+	private static final String SOLID_LEADING_GAPS = "iVBORw0KGgoAAAANSUhEUgAAAyAAAAABCAYAAAAmaMpmAAAAJUlEQVR4nO3OMQ0AAAgEMby+fw2ACwZ6SferJPXF1tcPAADw2QDgiqAkZoq+YgAAAABJRU5ErkJggg==";
+	private static final String DOTTED_ONE_LINE = "iVBORw0KGgoAAAANSUhEUgAAAyAAAAACCAYAAACg/LjIAAAAL0lEQVR4nO3OIRIAIAwDwf41/38DRSJBIbqZWRdxlaRu7a2XPwAAwOl7AAAAMEcDVN1AgPyAV0EAAAAASUVORK5CYII=";
+	private static final String DOTTED_MIXED_LINES = "iVBORw0KGgoAAAANSUhEUgAAAyAAAAACCAYAAACg/LjIAAAANUlEQVR4nO3OwQkAIAwDwO7a/WdQR1Aq9NEL3C+QRGbGrZP10v+tut/9HwAApms/AAAAzLEBX1lALOx0o7sAAAAASUVORK5CYII=";
+	private static final String DOTTED_LEADING_GAPS = "iVBORw0KGgoAAAANSUhEUgAAAyAAAAACCAYAAACg/LjIAAAAK0lEQVR4nO3OsQ0AMAzDsPzq/29o+kUGUwB3TZJp8XvXDwAA0Ox8AAAA6LF0XUCA3kx9agAAAABJRU5ErkJggg==";
+	private static final String DASHED_ONE_LINE = "iVBORw0KGgoAAAANSUhEUgAAAyAAAAADCAYAAABroGttAAAAN0lEQVR4nO3XoQ0AIBADwN+1+88ASCQfBIJrcq6itpWkTq2MTh8AAGDXKzsgAADAhecDAACAf0yr5+CjRH0qWAAAAABJRU5ErkJggg==";
+	private static final String DASHED_MIXED_LINES = "iVBORw0KGgoAAAANSUhEUgAAAyAAAAADCAYAAABroGttAAAAPUlEQVR4nO3XsQkAMAgEQHd1/xmSjJBgwMITrnv4b43MjFvn1kv+t2p/934AAJjuLewBAQAACtoHAAAAc2ymT9/7KaXKNQAAAABJRU5ErkJggg==";
+	private static final String DASHED_LEADING_GAPS = "iVBORw0KGgoAAAANSUhEUgAAAyAAAAADCAYAAABroGttAAAAN0lEQVR4nO3XsREAIAwDseya/WcApsCFlTv17zKzu9Pi3Uk3AABAs3jA17EeEAAAiIoHAAAAPS7q5+CjRy5GFQAAAABJRU5ErkJggg==";
+	
+	private void assertEncodedAs(String expected, Style style, boolean[] vlinesRequired) {
+		Assert.assertEquals(expected, new TablePNGGenerator().getBase64(style, vlinesRequired));
+		Assert.assertEquals(expected, new TablePNGGenerator().getBase64(TablePNGGenerator.getCSSClass(style, vlinesRequired)));
+	}
+	
+	@Test
+	public void testSolidMatchesOriginalEncoder() {
+		assertEncodedAs(SOLID_ONE_LINE, Style.SOLID, ONE_LINE);
+		assertEncodedAs(SOLID_MIXED_LINES, Style.SOLID, MIXED_LINES);
+		assertEncodedAs(SOLID_LEADING_GAPS, Style.SOLID, LEADING_GAPS);
+	}
+	
+	@Test
+	public void testDottedMatchesOriginalEncoder() {
+		assertEncodedAs(DOTTED_ONE_LINE, Style.DOTTED, ONE_LINE);
+		assertEncodedAs(DOTTED_MIXED_LINES, Style.DOTTED, MIXED_LINES);
+		assertEncodedAs(DOTTED_LEADING_GAPS, Style.DOTTED, LEADING_GAPS);
+	}
+	
+	@Test
+	public void testDashedMatchesOriginalEncoder() {
+		assertEncodedAs(DASHED_ONE_LINE, Style.DASHED, ONE_LINE);
+		assertEncodedAs(DASHED_MIXED_LINES, Style.DASHED, MIXED_LINES);
+		assertEncodedAs(DASHED_LEADING_GAPS, Style.DASHED, LEADING_GAPS);
+	}
+	
 	@Ignore
 	@Test
 	public void testWritePNG() {
@@ -0,0 +1,37 @@
+package uk.nhs.fhir.render.html.tree;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uk.nhs.fhir.render.html.style.CSSRule;
+import uk.nhs.fhir.render.html.style.CSSTag;
+
+public class TestTableCSSLineGenerator {
+
+	@Test
+	public void testLinesPositionedByDepth() {
+		String key = TablePNGGenerator.getCSSClass(Style.DOTTED, new boolean[]{true, false, true});
+
+		List<CSSRule> rules = new TableCSSLineGenerator().getRules(key);
+
+		Assert.assertEquals(4, rules.size());
+		Assert.assertEquals(
+			new CSSRule(CSSTag.BACKGROUND_IMAGE, 
+				"linear-gradient(#000 0px, #000 1px, transparent 1px, transparent 2px), linear-gradient(#000 0px, #000 1px, transparent 1px, transparent 2px)"), 
+			rules.get(0));
+		Assert.assertEquals(new CSSRule(CSSTag.BACKGROUND_POSITION, "11px 0, 43px 0"), rules.get(1));
+		Assert.assertEquals(new CSSRule(CSSTag.BACKGROUND_SIZE, "1px 2px"), rules.get(2));
+	}
+
+	@Test
+	public void testNoLines() {
+		String key = TablePNGGenerator.getCSSClass(Style.SOLID, new boolean[]{false, false});
+
+		List<CSSRule> rules = new TableCSSLineGenerator().getRules(key);
+
+		Assert.assertEquals(1, rules.size());
+		Assert.assertEquals(new CSSRule(CSSTag.BACKGROUND_IMAGE, "none"), rules.get(0));
+	}
+}
@@ -11,6 +11,7 @@ import com.google.common.collect.Sets;
 
 import uk.nhs.fhir.render.RendererCliArgs;
 import uk.nhs.fhir.render.RendererCliArgsParser;
+import uk.nhs.fhir.render.format.NarrativeProfile;
 
 public class TestArgsParser {
 	@Test
@@ -48,7 +49,7 @@ public class TestArgsParser {
 	public void testNullForUnrecognisedFlag() {
 		RendererCliArgsParser rendererCliArgsParser = new RendererCliArgsParser();
 
-		String unrecognisedFlag = "-a";
+		String unrecognisedFlag = "-q";
 		String[] args = new String[] {"my_input", "my_output", unrecognisedFlag};
 		
 		Assert.assertEquals(null, rendererCliArgsParser.parseArgs(args));
@@ -110,4 +111,73 @@ public class TestArgsParser {
 		Set<String> expected = Sets.newHashSet("domain1", "http://some.domain", "https://my.other.domain");
 		Assert.assertEquals(Optional.of(expected), parsedArgs.getLocalDomains());
 	}
+	
+	@Test
+	public void testParseThreads() {
+		RendererCliArgsParser rendererCliArgsParser = new RendererCliArgsParser();
+		
+		String[] args = new String[] {"my_input", "my_output", "--threads", "4"};
+		RendererCliArgs parsedArgs = rendererCliArgsParser.parseArgs(args);
+		
+		Assert.assertEquals(Optional.of(4), parsedArgs.getThreads());
+	}
+	
+	@Test
+	public void testNullForNonPositiveThreads() {
+		RendererCliArgsParser rendererCliArgsParser = new RendererCliArgsParser();
+		
+		String[] args = new String[] {"my_input", "my_output", "-t", "0"};
+		
+		Assert.assertEquals(null, rendererCliArgsParser.parseArgs(args));
+	}
+	
+	@Test
+	public void testParseIncrementalFlag() {
+		RendererCliArgsParser rendererCliArgsParser = new RendererCliArgsParser();
+		
+		String[] args = new String[] {"my_input", "my_output", "--incremental", "-t", "2"};
+		RendererCliArgs parsedArgs = rendererCliArgsParser.parseArgs(args);
+		
+		Assert.assertTrue(parsedArgs.isIncremental());
+		Assert.assertEquals(Optional.of(2), parsedArgs.getThreads());
+		
+		Assert.assertFalse(rendererCliArgsParser.parseArgs(new String[] {"my_input", "my_output"}).isIncremental());
+	}
+	
+	@Test
+	public void testParseOnly() {
+		RendererCliArgsParser rendererCliArgsParser = new RendererCliArgsParser();
+		
+		String[] args = new String[] {"my_input", "my_output", "--only", "https://fhir.hl7.org.uk/STU3/ValueSet/vs;**/Extension-*.xml"};
+		RendererCliArgs parsedArgs = rendererCliArgsParser.parseArgs(args);
+		
+		Assert.assertEquals(Optional.of(Sets.newHashSet("https://fhir.hl7.org.uk/STU3/ValueSet/vs", "**/Extension-*.xml")), parsedArgs.getOnly());
+	}
+	
+	@Test
+	public void testParseNarrativeProfile() {
+		RendererCliArgsParser rendererCliArgsParser = new RendererCliArgsParser();
+		
+		Assert.assertEquals(NarrativeProfile.FULL, rendererCliArgsParser.parseArgs(new String[] {"my_input", "my_output"}).getNarrativeProfile());
+		Assert.assertEquals(NarrativeProfile.SUMMARY, rendererCliArgsParser.parseArgs(new String[] {"my_input", "my_output", "--narrative", "summary"}).getNarrativeProfile());
+		Assert.assertEquals(NarrativeProfile.MAIN, rendererCliArgsParser.parseArgs(new String[] {"my_input", "my_output", "-r", "MAIN"}).getNarrativeProfile());
+	}
+	
+	@Test
+	public void testParsePagesBaseUrl() {
+		RendererCliArgsParser rendererCliArgsParser = new RendererCliArgsParser();
+		
+		Assert.assertEquals(Optional.empty(), rendererCliArgsParser.parseArgs(new String[] {"my_input", "my_output"}).getPagesBaseUrl());
+		Assert.assertEquals(Optional.of("https://example.org/pages"), 
+			rendererCliArgsParser.parseArgs(new String[] {"my_input", "my_output", "--narrative", "summary", "--pages-url", "https://example.org/pages"}).getPagesBaseUrl());
+	}
+	
+	@Test
+	public void testNullForUnknownNarrativeProfile() {
+		RendererCliArgsParser rendererCliArgsParser = new RendererCliArgsParser();
+		
+		String[] args = new String[] {"my_input", "my_output", "--narrative", "tiny"};
+		
+		Assert.assertEquals(null, rendererCliArgsParser.parseArgs(args));
+	}
 }